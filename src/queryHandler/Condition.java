@@ -0,0 +1,241 @@
+package queryHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parsed WHERE condition. The parser pushes NOT down to the predicates (e.g. NOT (a = 1 OR b IN (2, 3))
+ * becomes a != 1 AND b NOT IN (2, 3)), so a condition is a tree of AND and OR over predicates on one column.
+ */
+sealed interface Condition permits Condition.Comparison, Condition.In, Condition.Between, Condition.And, Condition.Or {
+
+    /**
+     * Replaces the parameters of the condition with their bound values.
+     */
+    Condition bind(List<Literal> parameters);
+
+    /**
+     * Counts the parameter placeholders of the condition.
+     */
+    int parameterCount();
+
+    /**
+     * Returns the condition that holds where this one does not, for rows that have the tested values.
+     */
+    Condition negate();
+
+    /**
+     * Splits a condition into the operands of its top-level AND; any other condition is its only conjunct.
+     */
+    static List<Condition> conjuncts(Condition condition) {
+        return condition instanceof And and ? and.operands() : List.of(condition);
+    }
+
+    /**
+     * A comparison of a column with a constant, e.g. "gpa >= 3.8".
+     *
+     * @param column   The column name.
+     * @param operator One of =, !=, <, <=, > and >= ("<>" is read as "!=").
+     * @param value    The constant or parameter.
+     */
+    record Comparison(String column, String operator, Literal value) implements Condition {
+        @Override
+        public Condition bind(List<Literal> parameters) {
+            return value.isParameter() ? new Comparison(column, operator, value.bind(parameters)) : this;
+        }
+
+        @Override
+        public int parameterCount() {
+            return value.isParameter() ? 1 : 0;
+        }
+
+        @Override
+        public Condition negate() {
+            String negated = switch (operator) {
+                case "=" -> "!=";
+                case "!=" -> "=";
+                case "<" -> ">=";
+                case ">=" -> "<";
+                case ">" -> "<=";
+                default -> ">"; // <=
+            };
+            return new Comparison(column, negated, value);
+        }
+
+        @Override
+        public String toString() {
+            return column + " " + operator + " " + value;
+        }
+    }
+
+    /**
+     * A test of a column against a list of constants, e.g. "dept IN ('CS', 'EE')".
+     *
+     * @param column  The column name.
+     * @param values  The constants or parameters.
+     * @param negated True for NOT IN.
+     */
+    record In(String column, List<Literal> values, boolean negated) implements Condition {
+        @Override
+        public Condition bind(List<Literal> parameters) {
+            if (parameterCount() == 0) {
+                return this;
+            }
+            List<Literal> bound = new ArrayList<>(values.size());
+            for (Literal value : values) {
+                bound.add(value.bind(parameters));
+            }
+            return new In(column, bound, negated);
+        }
+
+        @Override
+        public int parameterCount() {
+            return (int) values.stream().filter(Literal::isParameter).count();
+        }
+
+        @Override
+        public Condition negate() {
+            return new In(column, values, !negated);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(column).append(negated ? " NOT IN (" : " IN (");
+            for (int i = 0; i < values.size(); i++) {
+                text.append(i > 0 ? ", " : "").append(values.get(i));
+            }
+            return text.append(')').toString();
+        }
+    }
+
+    /**
+     * A test of a column against an inclusive range, e.g. "gpa BETWEEN 3.0 AND 3.5".
+     *
+     * @param column  The column name.
+     * @param low     The lower bound.
+     * @param high    The upper bound.
+     * @param negated True for NOT BETWEEN.
+     */
+    record Between(String column, Literal low, Literal high, boolean negated) implements Condition {
+        @Override
+        public Condition bind(List<Literal> parameters) {
+            return parameterCount() == 0 ? this : new Between(column, low.bind(parameters), high.bind(parameters), negated);
+        }
+
+        @Override
+        public int parameterCount() {
+            return (low.isParameter() ? 1 : 0) + (high.isParameter() ? 1 : 0);
+        }
+
+        @Override
+        public Condition negate() {
+            return new Between(column, low, high, !negated);
+        }
+
+        @Override
+        public String toString() {
+            return column + (negated ? " NOT BETWEEN " : " BETWEEN ") + low + " AND " + high;
+        }
+    }
+
+    /**
+     * Holds where every operand holds.
+     *
+     * @param operands Two or more conditions, none of them an And.
+     */
+    record And(List<Condition> operands) implements Condition {
+        @Override
+        public Condition bind(List<Literal> parameters) {
+            return parameterCount() == 0 ? this : new And(bindAll(operands, parameters));
+        }
+
+        @Override
+        public int parameterCount() {
+            return operands.stream().mapToInt(Condition::parameterCount).sum();
+        }
+
+        @Override
+        public Condition negate() {
+            return new Or(negateAll(operands));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (Condition operand : operands) {
+                text.append(text.length() > 0 ? " AND " : "");
+                text.append(operand instanceof Or ? "(" + operand + ")" : operand);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Holds where any operand holds.
+     *
+     * @param operands Two or more conditions, none of them an Or.
+     */
+    record Or(List<Condition> operands) implements Condition {
+        @Override
+        public Condition bind(List<Literal> parameters) {
+            return parameterCount() == 0 ? this : new Or(bindAll(operands, parameters));
+        }
+
+        @Override
+        public int parameterCount() {
+            return operands.stream().mapToInt(Condition::parameterCount).sum();
+        }
+
+        @Override
+        public Condition negate() {
+            return new And(negateAll(operands));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (Condition operand : operands) {
+                text.append(text.length() > 0 ? " OR " : "").append(operand);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Combines conditions with AND, flattening nested ANDs.
+     */
+    static Condition and(List<Condition> conditions) {
+        List<Condition> operands = new ArrayList<>();
+        for (Condition condition : conditions) {
+            operands.addAll(conjuncts(condition));
+        }
+        return operands.size() == 1 ? operands.get(0) : new And(List.copyOf(operands));
+    }
+
+    /**
+     * Combines conditions with OR, flattening nested ORs.
+     */
+    static Condition or(List<Condition> conditions) {
+        List<Condition> operands = new ArrayList<>();
+        for (Condition condition : conditions) {
+            operands.addAll(condition instanceof Or or ? or.operands() : List.of(condition));
+        }
+        return operands.size() == 1 ? operands.get(0) : new Or(List.copyOf(operands));
+    }
+
+    private static List<Condition> bindAll(List<Condition> conditions, List<Literal> parameters) {
+        List<Condition> bound = new ArrayList<>(conditions.size());
+        for (Condition condition : conditions) {
+            bound.add(condition.bind(parameters));
+        }
+        return bound;
+    }
+
+    private static List<Condition> negateAll(List<Condition> conditions) {
+        List<Condition> negated = new ArrayList<>(conditions.size());
+        for (Condition condition : conditions) {
+            negated.add(condition.negate());
+        }
+        return negated;
+    }
+}
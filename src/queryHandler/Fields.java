@@ -0,0 +1,171 @@
+package queryHandler;
+
+import java.io.IOException;
+import java.util.BitSet;
+import storage.ColumnarTable;
+import storage.RecordCursor;
+import storage.Row;
+import storage.TableSchema;
+
+/**
+ * The fields of the row being filtered or projected, read one at a time so a query decodes only the
+ * columns it uses. Adapters present decoded rows, cursor records, stored record text and columnar rows.
+ */
+interface Fields {
+
+    boolean has(int ordinal);
+
+    /**
+     * @throws NumberFormatException if the field is not a number.
+     */
+    double number(int ordinal);
+
+    /**
+     * Returns a value as text, unquoted; for row-format tables, exactly as stored.
+     *
+     * @return The value, or null if the row has no such field.
+     */
+    String text(int ordinal);
+
+    /**
+     * Presents decoded rows; set the row before each use.
+     */
+    final class RowFields implements Fields {
+        Row row;
+
+        @Override
+        public boolean has(int ordinal) {
+            return !row.isMissing(ordinal);
+        }
+
+        @Override
+        public double number(int ordinal) {
+            return row.getDouble(ordinal);
+        }
+
+        @Override
+        public String text(int ordinal) {
+            return row.getSchema().getColumnType(ordinal) == TableSchema.ColumnType.STRING
+                    ? row.getString(ordinal) : row.getField(ordinal);
+        }
+    }
+
+    /**
+     * Presents the current record of a cursor, decoding only the fields asked for.
+     */
+    final class CursorFields implements Fields {
+        private final RecordCursor cursor;
+        private final TableSchema schema;
+
+        CursorFields(RecordCursor cursor, TableSchema schema) {
+            this.cursor = cursor;
+            this.schema = schema;
+        }
+
+        @Override
+        public boolean has(int ordinal) {
+            return cursor.hasField(ordinal);
+        }
+
+        @Override
+        public double number(int ordinal) {
+            return cursor.getNumber(ordinal, schema.getColumnType(ordinal));
+        }
+
+        @Override
+        public String text(int ordinal) {
+            return cursor.getField(ordinal);
+        }
+    }
+
+    /**
+     * Presents stored record text, e.g. records read through an index, extracting only the fields asked for.
+     * Set the record before each use.
+     */
+    final class RecordFields implements Fields {
+        private final TableSchema schema;
+        String record;
+
+        RecordFields(TableSchema schema) {
+            this.schema = schema;
+        }
+
+        @Override
+        public boolean has(int ordinal) {
+            return Row.field(record, ordinal) != null;
+        }
+
+        @Override
+        public double number(int ordinal) {
+            String value = Row.field(record, ordinal);
+            if (value == null) {
+                throw new NumberFormatException("Missing value for column " + ordinal);
+            }
+            return Row.parseNumber(schema.getColumnType(ordinal), value);
+        }
+
+        @Override
+        public String text(int ordinal) {
+            return Row.field(record, ordinal);
+        }
+    }
+
+    /**
+     * Presents a row of a columnar table. Only the given columns are loaded, up front; set the row number
+     * before each use.
+     */
+    final class ColumnFields implements Fields {
+        private final int[][] ints;
+        private final double[][] doubles;
+        private final String[][] strings;
+        int row;
+
+        ColumnFields(ColumnarTable table, BitSet columns) throws IOException {
+            TableSchema schema = table.getSchema();
+            int count = schema.getColumnCount();
+            ints = new int[count][];
+            doubles = new double[count][];
+            strings = new String[count][];
+
+            for (int ordinal = columns.nextSetBit(0); ordinal >= 0; ordinal = columns.nextSetBit(ordinal + 1)) {
+                switch (schema.getColumnType(ordinal)) {
+                    case INT -> ints[ordinal] = table.getIntColumn(ordinal);
+                    case FLOAT -> doubles[ordinal] = table.getDoubleColumn(ordinal);
+                    case STRING -> strings[ordinal] = table.getStringColumn(ordinal);
+                }
+            }
+        }
+
+        /**
+         * Returns the values of an INT column, or null if the column is not an INT column or was not loaded.
+         */
+        int[] ints(int ordinal) {
+            return ints[ordinal];
+        }
+
+        /**
+         * Returns the values of a FLOAT column, or null if the column is not a FLOAT column or was not loaded.
+         */
+        double[] doubles(int ordinal) {
+            return doubles[ordinal];
+        }
+
+        @Override
+        public boolean has(int ordinal) {
+            return true; // Columnar tables store a value for every column of every row
+        }
+
+        @Override
+        public double number(int ordinal) {
+            return ints[ordinal] != null ? ints[ordinal][row] : doubles[ordinal][row];
+        }
+
+        @Override
+        public String text(int ordinal) {
+            if (ints[ordinal] != null) {
+                return Integer.toString(ints[ordinal][row]);
+            }
+            return doubles[ordinal] != null ? Double.toString(doubles[ordinal][row]) : strings[ordinal][row];
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package queryHandler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import storage.TableSchema;
+
+/**
+ * A WHERE condition resolved against a table schema, ready to test rows.
+ * - Columns are resolved to ordinals, constants are parsed and each predicate is compiled to a lambda once,
+ *   when the filter is built.
+ * - AND and OR stop at the first operand that decides the result, so a row is tested in a single pass
+ *   that reads only the fields it needs.
+ * - A predicate on a field that is missing or not a number does not hold, nor does its negation.
+ * - On columnar tables, rows are tested in batches: predicates on numeric columns loop over the column
+ *   arrays and narrow a selection vector of matching row numbers, without reading them through Fields.
+ */
+abstract class Filter {
+
+    /**
+     * Tests the current row.
+     *
+     * @param fields The row's fields.
+     * @return True if the condition holds for the row.
+     */
+    abstract boolean test(Fields fields);
+
+    /**
+     * Adds the ordinals of the columns the filter reads.
+     */
+    abstract void addColumns(BitSet columns);
+
+    /**
+     * Tests a batch of rows of a columnar table. This implementation tests the rows one at a time;
+     * predicates on numeric columns override it with a loop over the column array.
+     *
+     * @param columns   The loaded columns of the table, including those the filter reads.
+     * @param selection The row numbers to test, ascending; those that match are moved to the front, in order.
+     * @param count     The number of row numbers to test.
+     * @return The number of rows that match.
+     */
+    int select(Fields.ColumnFields columns, int[] selection, int count) {
+        int selected = 0;
+        for (int i = 0; i < count; i++) {
+            columns.row = selection[i];
+            if (test(columns)) {
+                selection[selected++] = selection[i];
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Resolves a condition against a schema, compiling each predicate into a test bound to its constants:
+     * a {@link DoublePredicate} and an {@link IntPredicate} for numeric columns, a {@link Predicate} for STRING
+     * columns. The operator is chosen here, once, so testing a row is one call to a small lambda.
+     *
+     * @param condition The condition, with its parameters bound.
+     * @param schema    The schema of the table.
+     * @return The filter.
+     * @throws IllegalArgumentException if a column does not exist or a constant compared with a numeric column is not a number.
+     */
+    static Filter resolve(Condition condition, TableSchema schema) {
+        if (condition instanceof Condition.And and) {
+            return new And(resolveAll(and.operands(), schema));
+        } else if (condition instanceof Condition.Or or) {
+            return new Or(resolveAll(or.operands(), schema));
+        }
+
+        String column = condition instanceof Condition.Comparison comparison ? comparison.column()
+                : condition instanceof Condition.In in ? in.column() : ((Condition.Between) condition).column();
+        int ordinal = schema.indexOf(column);
+        if (ordinal < 0) {
+            throw new IllegalArgumentException("Column '" + column + "' not found in table.");
+        }
+        if (!schema.getColumnType(ordinal).isNumeric()) {
+            return new TextTest(ordinal, textPredicate(condition));
+        }
+
+        if (condition instanceof Condition.Comparison comparison) {
+            double number = number(column, comparison.value());
+            return switch (comparison.operator()) {
+                case "=" -> new NumberTest(ordinal, value -> value == number, value -> value == number);
+                case "!=" -> new NumberTest(ordinal, value -> value != number, value -> value != number);
+                case "<" -> new NumberTest(ordinal, value -> value < number, value -> value < number);
+                case "<=" -> new NumberTest(ordinal, value -> value <= number, value -> value <= number);
+                case ">" -> new NumberTest(ordinal, value -> value > number, value -> value > number);
+                default -> new NumberTest(ordinal, value -> value >= number, value -> value >= number);
+            };
+        } else if (condition instanceof Condition.In in) {
+            // Sorted for binary search, without NaN, which equals nothing, and with -0.0 as 0.0
+            double[] numbers = in.values().stream().mapToDouble(value -> number(column, value))
+                    .filter(number -> !Double.isNaN(number)).map(number -> number + 0.0).sorted().distinct().toArray();
+            boolean negated = in.negated();
+            return new NumberTest(ordinal,
+                    value -> (!Double.isNaN(value) && Arrays.binarySearch(numbers, value + 0.0) >= 0) != negated,
+                    value -> (Arrays.binarySearch(numbers, value) >= 0) != negated);
+        } else {
+            Condition.Between between = (Condition.Between) condition;
+            double low = number(column, between.low());
+            double high = number(column, between.high());
+            boolean negated = between.negated();
+            if (Double.isNaN(low) || Double.isNaN(high)) {
+                return new NumberTest(ordinal, value -> false, value -> false); // NaN is neither inside nor outside a range
+            }
+            return new NumberTest(ordinal,
+                    value -> !Double.isNaN(value) && (value >= low && value <= high) != negated,
+                    value -> (value >= low && value <= high) != negated);
+        }
+    }
+
+    /**
+     * Compiles a predicate on a STRING column, which compares values as text.
+     */
+    private static Predicate<String> textPredicate(Condition condition) {
+        if (condition instanceof Condition.Comparison comparison) {
+            String text = comparison.value().value();
+            return switch (comparison.operator()) {
+                case "=" -> value -> value.equals(text);
+                case "!=" -> value -> !value.equals(text);
+                case "<" -> value -> value.compareTo(text) < 0;
+                case "<=" -> value -> value.compareTo(text) <= 0;
+                case ">" -> value -> value.compareTo(text) > 0;
+                default -> value -> value.compareTo(text) >= 0;
+            };
+        } else if (condition instanceof Condition.In in) {
+            Set<String> texts = new HashSet<>();
+            for (Literal value : in.values()) {
+                texts.add(value.value());
+            }
+            boolean negated = in.negated();
+            return value -> texts.contains(value) != negated;
+        } else {
+            Condition.Between between = (Condition.Between) condition;
+            String low = between.low().value();
+            String high = between.high().value();
+            boolean negated = between.negated();
+            return value -> (value.compareTo(low) >= 0 && value.compareTo(high) <= 0) != negated;
+        }
+    }
+
+    private static Filter[] resolveAll(List<Condition> conditions, TableSchema schema) {
+        Filter[] filters = new Filter[conditions.size()];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = resolve(conditions.get(i), schema);
+        }
+        return filters;
+    }
+
+    private static double number(String column, Literal value) {
+        try {
+            return Double.parseDouble(value.value());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Column '" + column + "' is numeric; '" + value.value() + "' is not a number.");
+        }
+    }
+
+    /**
+     * A comparison, IN or BETWEEN on a numeric column. INT column arrays are tested without widening each
+     * value through the double test.
+     */
+    private static final class NumberTest extends Filter {
+        private final int ordinal;
+        private final DoublePredicate test;
+        private final IntPredicate intTest; // Same test, for the values of INT column arrays
+
+        NumberTest(int ordinal, DoublePredicate test, IntPredicate intTest) {
+            this.ordinal = ordinal;
+            this.test = test;
+            this.intTest = intTest;
+        }
+
+        @Override
+        boolean test(Fields fields) {
+            if (!fields.has(ordinal)) {
+                return false;
+            }
+            try {
+                return test.test(fields.number(ordinal));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        @Override
+        int select(Fields.ColumnFields columns, int[] selection, int count) {
+            int selected = 0;
+            int[] ints = columns.ints(ordinal);
+            if (ints != null) {
+                for (int i = 0; i < count; i++) {
+                    int row = selection[i];
+                    selection[selected] = row;
+                    selected += intTest.test(ints[row]) ? 1 : 0;
+                }
+                return selected;
+            }
+            double[] doubles = columns.doubles(ordinal);
+            for (int i = 0; i < count; i++) {
+                int row = selection[i];
+                selection[selected] = row;
+                selected += test.test(doubles[row]) ? 1 : 0;
+            }
+            return selected;
+        }
+
+        @Override
+        void addColumns(BitSet columns) {
+            columns.set(ordinal);
+        }
+    }
+
+    /**
+     * A comparison, IN or BETWEEN on a STRING column.
+     */
+    private static final class TextTest extends Filter {
+        private final int ordinal;
+        private final Predicate<String> test;
+
+        TextTest(int ordinal, Predicate<String> test) {
+            this.ordinal = ordinal;
+            this.test = test;
+        }
+
+        @Override
+        boolean test(Fields fields) {
+            return fields.has(ordinal) && test.test(fields.text(ordinal));
+        }
+
+        @Override
+        void addColumns(BitSet columns) {
+            columns.set(ordinal);
+        }
+    }
+
+    private static final class And extends Filter {
+        private final Filter[] operands;
+
+        And(Filter[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        boolean test(Fields fields) {
+            for (Filter operand : operands) {
+                if (!operand.test(fields)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int select(Fields.ColumnFields columns, int[] selection, int count) {
+            for (Filter operand : operands) {
+                count = operand.select(columns, selection, count); // Each operand tests only the rows still selected
+                if (count == 0) {
+                    break;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        void addColumns(BitSet columns) {
+            for (Filter operand : operands) {
+                operand.addColumns(columns);
+            }
+        }
+    }
+
+    private static final class Or extends Filter {
+        private final Filter[] operands;
+
+        Or(Filter[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        boolean test(Fields fields) {
+            for (Filter operand : operands) {
+                if (operand.test(fields)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        void addColumns(BitSet columns) {
+            for (Filter operand : operands) {
+                operand.addColumns(columns);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package queryHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a SQL-like statement into tokens in a single pass.
+ * - Quoted literals are read whole, so keywords, commas and parentheses inside them are plain text;
+ *   a doubled quote ('') stands for one quote.
+ * - Operators and punctuation are symbols, so conditions need no spaces (e.g. "gpa>=3.8"); "?" marks
+ *   a parameter.
+ * - Any other run of characters is a word: a keyword, a name or an unquoted value such as a@x.com.
+ *   Words that read as numbers are numeric literals.
+ */
+final class Lexer {
+    private static final String SYMBOL_CHARACTERS = "(),;*=<>!'?";
+    private static final Pattern NUMBER = Pattern.compile("[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?");
+
+    private Lexer() {
+    }
+
+    /**
+     * Tokenizes a statement.
+     *
+     * @param statement The statement text.
+     * @return The tokens, ending with an EOF token.
+     * @throws IllegalArgumentException if a quoted literal is not closed or a character is not allowed.
+     */
+    static List<Token> tokenize(String statement) {
+        List<Token> tokens = new ArrayList<>();
+        int length = statement.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = statement.charAt(i);
+            int start = i;
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'') {
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i == length) {
+                        throw new IllegalArgumentException("Unterminated string literal starting at position " + (start + 1) + ".");
+                    }
+                    char next = statement.charAt(i++);
+                    if (next == '\'') {
+                        if (i < length && statement.charAt(i) == '\'') {
+                            i++; // An escaped quote
+                        } else {
+                            break;
+                        }
+                    }
+                    value.append(next);
+                }
+                tokens.add(new Token(Token.Type.STRING, value.toString(), start));
+            } else if (c == '<' || c == '>' || c == '!') {
+                char next = i + 1 < length ? statement.charAt(i + 1) : 0;
+                String symbol = next == '=' || (c == '<' && next == '>') ? "" + c + next : String.valueOf(c);
+                if (symbol.equals("!")) {
+                    throw new IllegalArgumentException("Unexpected '!' at position " + (start + 1) + ". Use '!=' for not equal.");
+                }
+                i += symbol.length();
+                tokens.add(new Token(Token.Type.SYMBOL, symbol, start));
+            } else if (SYMBOL_CHARACTERS.indexOf(c) >= 0) {
+                i++;
+                tokens.add(new Token(Token.Type.SYMBOL, String.valueOf(c), start));
+            } else {
+                while (i < length && !Character.isWhitespace(statement.charAt(i))
+                        && SYMBOL_CHARACTERS.indexOf(statement.charAt(i)) < 0) {
+                    i++;
+                }
+                String word = statement.substring(start, i);
+                Token.Type type = NUMBER.matcher(word).matches() ? Token.Type.NUMBER : Token.Type.WORD;
+                tokens.add(new Token(type, word, start));
+            }
+        }
+
+        tokens.add(new Token(Token.Type.EOF, "", length));
+        return tokens;
+    }
+}
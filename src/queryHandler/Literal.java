@@ -0,0 +1,63 @@
+package queryHandler;
+
+import java.math.BigDecimal;
+import java.util.List;
+import storage.Row;
+
+/**
+ * A constant value in a statement, or a parameter placeholder ("?") to be bound before execution.
+ *
+ * @param value     The value, without quotes; null for a parameter.
+ * @param quoted    True if the value was written as a quoted string literal.
+ * @param parameter The zero-based position of a parameter, or -1 for a constant.
+ */
+record Literal(String value, boolean quoted, int parameter) {
+
+    Literal(String value, boolean quoted) {
+        this(value, quoted, -1);
+    }
+
+    static Literal parameter(int position) {
+        return new Literal(null, false, position);
+    }
+
+    /**
+     * Converts a parameter value passed through the Java API: strings are bound as quoted literals,
+     * numbers as numeric ones.
+     *
+     * @throws IllegalArgumentException if the value is null.
+     */
+    static Literal of(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Parameter values cannot be null.");
+        }
+        if (value instanceof BigDecimal decimal) {
+            return new Literal(decimal.toPlainString(), false);
+        }
+        return new Literal(value.toString(), !(value instanceof Number));
+    }
+
+    boolean isParameter() {
+        return parameter >= 0;
+    }
+
+    /**
+     * Replaces a parameter with its bound value; constants are returned unchanged.
+     */
+    Literal bind(List<Literal> parameters) {
+        return isParameter() ? parameters.get(parameter) : this;
+    }
+
+    /**
+     * Renders the value as it is stored in a record: quoted strings keep their quotes, with any quote
+     * inside them doubled.
+     */
+    String toRecordText() {
+        return quoted ? Row.quote(value) : value;
+    }
+
+    @Override
+    public String toString() {
+        return isParameter() ? "?" : value;
+    }
+}
@@ -0,0 +1,715 @@
+package queryHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import storage.ColumnarTable;
+import storage.LongList;
+import storage.RecordCursor;
+import storage.Row;
+import storage.StorageManager;
+import storage.TableSchema;
+
+/**
+ * An operator of a SELECT pipeline. Operators pull rows from their input one at a time (Scan -> Where ->
+ * Sort -> Project -> Limit), so a query holds only the current row, except to sort, and a consumer can stop early.
+ * - next() advances to the next row; fields() and record() then read the current row.
+ * - fields() presents the row's stored columns by ordinal, decoding only the fields asked for.
+ * - close() releases the operator and its input.
+ */
+abstract class Operator implements AutoCloseable {
+
+    /**
+     * Advances to the next row.
+     *
+     * @return True if there is a current row, false when the input is exhausted.
+     * @throws IOException if the table cannot be read.
+     */
+    abstract boolean next() throws IOException;
+
+    /**
+     * Returns the fields of the current row; the same object is reused for every row.
+     */
+    abstract Fields fields();
+
+    /**
+     * Returns the current row as text: the stored record, or the selected fields after a projection.
+     *
+     * @throws IOException if the table cannot be read.
+     */
+    abstract String record() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * Scans a range of decoded rows, e.g. one part of a snapshot of a cached table.
+     */
+    static final class RowScan extends Operator {
+        private final List<Row> rows;
+        private final int end;
+        private final Fields.RowFields fields = new Fields.RowFields();
+        private int position;
+
+        /**
+         * @param rows  The rows, which must not change while they are scanned.
+         * @param first The first row to scan.
+         * @param end   The row past the last one to scan.
+         */
+        RowScan(List<Row> rows, int first, int end) {
+            this.rows = rows;
+            this.position = first;
+            this.end = end;
+        }
+
+        @Override
+        boolean next() {
+            if (position == end) {
+                return false;
+            }
+            fields.row = rows.get(position++);
+            return true;
+        }
+
+        @Override
+        Fields fields() {
+            return fields;
+        }
+
+        @Override
+        String record() {
+            return fields.row.getRaw();
+        }
+    }
+
+    /**
+     * Streams the records of a table file.
+     */
+    static final class CursorScan extends Operator {
+        private final RecordCursor cursor;
+        private final Fields.CursorFields fields;
+
+        CursorScan(RecordCursor cursor, TableSchema schema) {
+            this.cursor = cursor;
+            this.fields = new Fields.CursorFields(cursor, schema);
+        }
+
+        @Override
+        boolean next() throws IOException {
+            return cursor.next();
+        }
+
+        @Override
+        Fields fields() {
+            return fields;
+        }
+
+        @Override
+        String record() {
+            return cursor.getRecord();
+        }
+    }
+
+    /**
+     * Scans the rows of a columnar table in batches. For each batch of rows the filter narrows a selection
+     * vector of row numbers, testing numeric predicates in loops over the column arrays; the selected rows
+     * are then passed on one at a time.
+     */
+    static final class ColumnScan extends Operator {
+        static final int BATCH_SIZE = 1024;
+
+        private final ColumnarTable table;
+        private final Filter filter;
+        private final Fields.ColumnFields fields;
+        private final int endRow;
+        private final int[] selection = new int[BATCH_SIZE]; // Row numbers of the batch that matched the filter
+        private int selected; // Number of row numbers in the selection
+        private int position; // Next row number in the selection to pass on
+        private int nextRow; // First row of the next batch
+        private Fields.ColumnFields allColumns; // Every column, loaded when a whole record is first read
+
+        /**
+         * @param columns  The columns read through fields(), loaded up front, including those the filter reads.
+         * @param filter   The condition, or null to pass on every row.
+         * @param firstRow The first row to scan.
+         * @param endRow   The row past the last one to scan.
+         */
+        ColumnScan(ColumnarTable table, BitSet columns, Filter filter, int firstRow, int endRow) throws IOException {
+            this.table = table;
+            this.filter = filter;
+            this.fields = new Fields.ColumnFields(table, columns);
+            this.nextRow = firstRow;
+            this.endRow = endRow;
+        }
+
+        @Override
+        boolean next() {
+            while (position == selected) {
+                if (nextRow >= endRow) {
+                    return false;
+                }
+                int count = Math.min(BATCH_SIZE, endRow - nextRow);
+                for (int i = 0; i < count; i++) {
+                    selection[i] = nextRow + i;
+                }
+                nextRow += count;
+                selected = filter == null ? count : filter.select(fields, selection, count);
+                position = 0;
+            }
+            fields.row = selection[position++];
+            return true;
+        }
+
+        @Override
+        Fields fields() {
+            return fields;
+        }
+
+        /**
+         * Formats the record like {@link ColumnarTable#getRecord}, from the column arrays, so scans of parts
+         * of a table in parallel do not contend for the table.
+         */
+        @Override
+        String record() throws IOException {
+            TableSchema schema = table.getSchema();
+            if (allColumns == null) {
+                BitSet all = new BitSet();
+                all.set(0, schema.getColumnCount());
+                allColumns = new Fields.ColumnFields(table, all);
+            }
+            allColumns.row = fields.row;
+            StringBuilder record = new StringBuilder();
+            for (int ordinal = 0; ordinal < schema.getColumnCount(); ordinal++) {
+                if (ordinal > 0) {
+                    record.append(", ");
+                }
+                String value = allColumns.text(ordinal);
+                if (schema.getColumnType(ordinal) == TableSchema.ColumnType.STRING) {
+                    record.append(Row.quote(value));
+                } else {
+                    record.append(value);
+                }
+            }
+            return record.toString();
+        }
+    }
+
+    /**
+     * Reads the records an index lookup returned, one at a time; records deleted since are skipped.
+     */
+    static final class IndexScan extends Operator {
+        private final StorageManager storageManager;
+        private final String tableName;
+        private final LongList recordIds;
+        private final Fields.RecordFields fields;
+        private int position;
+
+        IndexScan(StorageManager storageManager, String tableName, TableSchema schema, LongList recordIds) {
+            this.storageManager = storageManager;
+            this.tableName = tableName;
+            this.recordIds = recordIds;
+            this.fields = new Fields.RecordFields(schema);
+        }
+
+        @Override
+        boolean next() throws IOException {
+            while (position < recordIds.size()) {
+                fields.record = storageManager.readRecord(tableName, recordIds.get(position++));
+                if (fields.record != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        Fields fields() {
+            return fields;
+        }
+
+        @Override
+        String record() {
+            return fields.record;
+        }
+    }
+
+    /**
+     * Runs the parts of a scan in parallel on the fork-join pool and passes on their rows in the order of the
+     * parts, so the rows come out as a serial scan would return them. Each part is a pipeline of its own (a
+     * scan of a range of the table, with its filter and projection), run to completion by one task. A bounded
+     * number of parts run ahead of the consumer, so memory stays bounded and closing the scan, e.g. once a
+     * limit is reached, cancels the parts not yet needed. fields() presents the output records.
+     */
+    static final class ParallelScan extends Operator {
+
+        /**
+         * Opens the pipeline of one part of the scan.
+         */
+        interface Part {
+            Operator open() throws IOException;
+        }
+
+        private final List<Part> parts;
+        private final int maxRunning = 2 * ForkJoinPool.getCommonPoolParallelism(); // Parts run ahead of the consumer
+        private final ArrayDeque<ForkJoinTask<List<String>>> running = new ArrayDeque<>();
+        private final Fields.RecordFields fields;
+        private int nextPart;
+        private List<String> records = List.of(); // Output of the part being passed on
+        private int position;
+
+        ParallelScan(List<Part> parts, TableSchema schema) {
+            this.parts = parts;
+            this.fields = new Fields.RecordFields(schema);
+        }
+
+        @Override
+        boolean next() throws IOException {
+            while (position == records.size()) {
+                while (running.size() < maxRunning && nextPart < parts.size()) {
+                    Part part = parts.get(nextPart++);
+                    running.add(ForkJoinPool.commonPool().submit(() -> run(part)));
+                }
+                if (running.isEmpty()) {
+                    return false;
+                }
+                records = await(running.poll());
+                position = 0;
+            }
+            fields.record = records.get(position++);
+            return true;
+        }
+
+        private static List<String> run(Part part) throws IOException {
+            List<String> records = new ArrayList<>();
+            try (Operator operator = part.open()) {
+                while (operator.next()) {
+                    records.add(operator.record());
+                }
+            }
+            return records;
+        }
+
+        private static List<String> await(ForkJoinTask<List<String>> task) throws IOException {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while scanning in parallel.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+
+        @Override
+        Fields fields() {
+            return fields;
+        }
+
+        @Override
+        String record() {
+            return fields.record;
+        }
+
+        @Override
+        public void close() {
+            for (ForkJoinTask<List<String>> task : running) {
+                task.cancel(false);
+            }
+            running.clear();
+            nextPart = parts.size();
+        }
+    }
+
+    /**
+     * Passes on the rows of its input that match a condition.
+     */
+    static final class Where extends Operator {
+        private final Operator input;
+        private final Filter filter;
+
+        Where(Operator input, Filter filter) {
+            this.input = input;
+            this.filter = filter;
+        }
+
+        @Override
+        boolean next() throws IOException {
+            while (input.next()) {
+                if (filter.test(input.fields())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        Fields fields() {
+            return input.fields();
+        }
+
+        @Override
+        String record() throws IOException {
+            return input.record();
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    /**
+     * Sorts the rows of its input, which it reads completely on the first call to next().
+     * - With a limit of n, only the first n rows in sort order are kept, in a bounded heap.
+     * - Otherwise rows are sorted in memory up to a budget of bytes; beyond it, sorted runs are spilled to
+     *   temporary files and merged as the rows are pulled. At most {@value #MERGE_FAN_IN} runs are open at
+     *   once; more are first merged into longer runs in passes. The files are deleted when the sort is closed.
+     * The input must pass on stored records, so the sort precedes any projection; fields() presents the
+     * sorted records.
+     */
+    static final class Sort extends Operator {
+        static final int MAX_HEAP_ROWS = 65_536; // Larger limits sort all rows and stop after the limit
+        static final int MERGE_FAN_IN = 64; // Runs merged at once, each holding an open file
+
+        private final Operator input;
+        private final SortOrder order;
+        private final long limit;
+        private final long memoryBudget;
+        private final File directory;
+        private final Fields.RecordFields fields;
+        private final List<File> runs = new ArrayList<>();
+        private List<SortOrder.Entry> sorted; // Rows sorted in memory, or null before the input is read
+        private int position;
+        private PriorityQueue<RunReader> merge; // Readers of the spilled runs, by their current entry
+
+        /**
+         * @param limit        The number of rows the query returns, or -1 for all.
+         * @param memoryBudget The bytes of rows to hold before spilling a sorted run.
+         * @param directory    The directory for spilled runs.
+         */
+        Sort(Operator input, SortOrder order, long limit, long memoryBudget, File directory) {
+            this.input = input;
+            this.order = order;
+            this.limit = limit;
+            this.memoryBudget = memoryBudget;
+            this.directory = directory;
+            this.fields = new Fields.RecordFields(order.getSchema());
+        }
+
+        @Override
+        boolean next() throws IOException {
+            if (sorted == null) {
+                if (limit >= 0 && limit <= MAX_HEAP_ROWS) {
+                    sortTop();
+                } else {
+                    sortAll();
+                }
+            }
+            if (merge != null) {
+                RunReader reader = merge.poll();
+                if (reader == null) {
+                    return false;
+                }
+                fields.record = reader.current.record();
+                if (reader.advance()) {
+                    merge.add(reader);
+                } else {
+                    reader.close();
+                }
+                return true;
+            }
+            if (position == sorted.size()) {
+                return false;
+            }
+            fields.record = sorted.get(position++).record();
+            return true;
+        }
+
+        /**
+         * Keeps the first rows in sort order in a heap whose root is the last of them, so each further row
+         * costs one comparison, or a replacement in O(log n).
+         */
+        private void sortTop() throws IOException {
+            PriorityQueue<SortOrder.Entry> heap = new PriorityQueue<>((a, b) -> order.compare(b, a));
+            long sequence = 0;
+            while (limit > 0 && input.next()) {
+                SortOrder.Entry entry = order.entry(sequence++, input.record());
+                if (heap.size() < limit) {
+                    heap.add(entry);
+                } else if (order.compare(entry, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(entry);
+                }
+            }
+            sorted = new ArrayList<>(heap);
+            sorted.sort(order::compare);
+        }
+
+        /**
+         * Sorts all rows, spilling sorted runs whenever the rows held exceed the memory budget.
+         */
+        private void sortAll() throws IOException {
+            List<SortOrder.Entry> buffer = new ArrayList<>();
+            long bytes = 0;
+            long sequence = 0;
+            while (input.next()) {
+                SortOrder.Entry entry = order.entry(sequence++, input.record());
+                buffer.add(entry);
+                bytes += entry.size();
+                if (bytes > memoryBudget) {
+                    spill(buffer);
+                    buffer.clear();
+                    bytes = 0;
+                }
+            }
+            if (runs.isEmpty()) {
+                buffer.sort(order::compare);
+                sorted = buffer;
+                return;
+            }
+            if (!buffer.isEmpty()) {
+                spill(buffer); // The last rows are merged with the runs on disk
+            }
+            while (runs.size() > MERGE_FAN_IN) {
+                mergeRuns(new ArrayList<>(runs.subList(0, MERGE_FAN_IN)));
+            }
+            sorted = List.of();
+            merge = new PriorityQueue<>((a, b) -> order.compare(a.current, b.current));
+            openRuns(runs, merge);
+        }
+
+        /**
+         * Writes rows to a new run file in sort order.
+         */
+        private void spill(List<SortOrder.Entry> buffer) throws IOException {
+            buffer.sort(order::compare);
+            try (DataOutputStream out = createRun()) {
+                for (SortOrder.Entry entry : buffer) {
+                    writeEntry(out, entry);
+                }
+            }
+        }
+
+        /**
+         * Merges runs into one new run at the end of the list, then deletes them. Entries keep their sequence
+         * numbers, so rows with equal keys still come out in scan order.
+         */
+        private void mergeRuns(List<File> group) throws IOException {
+            PriorityQueue<RunReader> readers = new PriorityQueue<>((a, b) -> order.compare(a.current, b.current));
+            try (DataOutputStream out = createRun()) {
+                openRuns(group, readers);
+                while (!readers.isEmpty()) {
+                    RunReader reader = readers.poll();
+                    writeEntry(out, reader.current);
+                    if (reader.advance()) {
+                        readers.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+            } finally {
+                for (RunReader reader : readers) {
+                    reader.close();
+                }
+            }
+            for (File run : group) {
+                if (!run.delete()) {
+                    System.err.println("Warning: Could not delete sort file '" + run + "'.");
+                }
+            }
+            runs.removeAll(group);
+        }
+
+        /**
+         * Opens readers on runs, adding those that are not empty to a merge queue.
+         */
+        private void openRuns(List<File> group, PriorityQueue<RunReader> readers) throws IOException {
+            for (File run : group) {
+                RunReader reader = new RunReader(run, order);
+                if (reader.advance()) {
+                    readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        }
+
+        /**
+         * Creates a run file, registered so the sort deletes it when closed.
+         */
+        private DataOutputStream createRun() throws IOException {
+            File run = File.createTempFile("sort-", ".run", directory);
+            runs.add(run);
+            return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)));
+        }
+
+        /**
+         * Writes one row of a run: its sequence number and its record.
+         */
+        private static void writeEntry(DataOutputStream out, SortOrder.Entry entry) throws IOException {
+            byte[] record = entry.record().getBytes(StandardCharsets.UTF_8);
+            out.writeLong(entry.sequence());
+            out.writeInt(record.length);
+            out.write(record);
+        }
+
+        @Override
+        Fields fields() {
+            return fields;
+        }
+
+        @Override
+        String record() {
+            return fields.record;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                input.close();
+            } finally {
+                if (merge != null) {
+                    for (RunReader reader : merge) {
+                        reader.close();
+                    }
+                    merge.clear();
+                }
+                for (File run : runs) {
+                    if (run.exists() && !run.delete()) {
+                        System.err.println("Warning: Could not delete sort file '" + run + "'.");
+                    }
+                }
+                runs.clear();
+            }
+        }
+
+        /**
+         * Reads the entries of a spilled run in order.
+         */
+        private static final class RunReader {
+            private final DataInputStream in;
+            private final SortOrder order;
+            private SortOrder.Entry current;
+
+            RunReader(File run, SortOrder order) throws IOException {
+                this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+                this.order = order;
+            }
+
+            /**
+             * Reads the next entry of the run.
+             *
+             * @return False at the end of the run.
+             */
+            boolean advance() throws IOException {
+                long sequence;
+                try {
+                    sequence = in.readLong();
+                } catch (EOFException e) {
+                    return false;
+                }
+                byte[] record = new byte[in.readInt()];
+                in.readFully(record);
+                current = order.entry(sequence, new String(record, StandardCharsets.UTF_8));
+                return true;
+            }
+
+            void close() throws IOException {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Reduces the rows of its input to the selected columns. The fields of the stored row stay readable.
+     */
+    static final class Project extends Operator {
+        private final Operator input;
+        private final Projection projection;
+
+        Project(Operator input, Projection projection) {
+            this.input = input;
+            this.projection = projection;
+        }
+
+        @Override
+        boolean next() throws IOException {
+            return input.next();
+        }
+
+        @Override
+        Fields fields() {
+            return input.fields();
+        }
+
+        @Override
+        String record() {
+            return projection.project(input.fields());
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    /**
+     * Passes on at most a given number of rows, then stops pulling from its input.
+     */
+    static final class Limit extends Operator {
+        private final Operator input;
+        private final long limit;
+        private long count;
+
+        Limit(Operator input, long limit) {
+            this.input = input;
+            this.limit = limit;
+        }
+
+        @Override
+        boolean next() throws IOException {
+            if (count == limit || !input.next()) {
+                return false;
+            }
+            count++;
+            return true;
+        }
+
+        @Override
+        Fields fields() {
+            return input.fields();
+        }
+
+        @Override
+        String record() throws IOException {
+            return input.record();
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
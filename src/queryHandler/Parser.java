@@ -0,0 +1,427 @@
+package queryHandler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import storage.IndexType;
+
+/**
+ * A recursive-descent parser for the SQL-like statements of the DBMS.
+ * Each statement is tokenized and parsed once into a {@link Statement}; keywords are matched ignoring case,
+ * and names and values keep the case they were written in.
+ */
+final class Parser {
+    private static final String COMPARISON_OPERATORS = "= != <> < <= > >=";
+
+    private final String query;
+    private final List<Token> tokens;
+    private int position;
+    private int parameters; // Parameter placeholders read so far
+
+    private Parser(String query, List<Token> tokens) {
+        this.query = query;
+        this.tokens = tokens;
+    }
+
+    /**
+     * Parses one statement, optionally ending with a semicolon.
+     *
+     * @param query The statement text.
+     * @return The parsed statement.
+     * @throws IllegalArgumentException if the statement is malformed; the message says what was expected.
+     */
+    static Statement parse(String query) {
+        Parser parser = new Parser(query, Lexer.tokenize(query));
+        Statement statement = parser.statement();
+        if (parser.peek().isSymbol(";")) {
+            parser.position++;
+        }
+        if (parser.peek().type() != Token.Type.EOF) {
+            throw new IllegalArgumentException("Unexpected " + parser.peek().describe() + " at position "
+                    + (parser.peek().position() + 1) + " after the end of the statement.");
+        }
+        return statement;
+    }
+
+    private Statement statement() {
+        Token command = next();
+        if (command.is("SHOW")) {
+            keyword("DATABASES", "SHOW", "SHOW DATABASES");
+            return new Statement.ShowDatabases();
+        } else if (command.is("USE")) {
+            return new Statement.UseDatabase(name("USE", "USE database_name"));
+        } else if (command.is("CREATE")) {
+            return create();
+        } else if (command.is("DROP")) {
+            return dropIndex();
+        } else if (command.is("DESCRIBE")) {
+            return new Statement.Describe(name("DESCRIBE", "DESCRIBE table_name"));
+        } else if (command.is("INSERT")) {
+            return insert();
+        } else if (command.is("SELECT")) {
+            return select();
+        } else if (command.is("BEGIN")) {
+            keyword("TRANSACTION", "BEGIN", "BEGIN TRANSACTION");
+            return new Statement.Begin();
+        } else if (command.is("COMMIT")) {
+            return new Statement.Commit();
+        } else if (command.is("ROLLBACK")) {
+            return new Statement.Rollback();
+        } else if (command.is("PREPARE")) {
+            return prepare();
+        } else if (command.is("EXECUTE")) {
+            return execute();
+        } else if (command.is("DEALLOCATE")) {
+            accept("PREPARE");
+            return new Statement.Deallocate(name("DEALLOCATE", "DEALLOCATE [PREPARE] name"));
+        }
+        throw new IllegalArgumentException("Unsupported command. Supported commands: SHOW, USE, CREATE, DROP, DESCRIBE, INSERT, SELECT, BEGIN, COMMIT, ROLLBACK, PREPARE, EXECUTE, DEALLOCATE.");
+    }
+
+    /**
+     * PREPARE name AS statement
+     */
+    private Statement prepare() {
+        String usage = "PREPARE name AS statement";
+        String name = name("PREPARE", usage);
+        keyword("AS", "PREPARE", usage);
+        Token start = peek();
+        if (start.is("PREPARE") || start.is("EXECUTE") || start.is("DEALLOCATE")) {
+            throw new IllegalArgumentException(start.text().toUpperCase() + " statements cannot be prepared.");
+        }
+        Statement statement = statement();
+        return new Statement.Prepare(name, statement, query.substring(start.position()));
+    }
+
+    /**
+     * EXECUTE name [(value, ...)]
+     */
+    private Statement execute() {
+        String usage = "EXECUTE name [(value1, value2, ...)]";
+        String name = name("EXECUTE", usage);
+        List<Literal> arguments = new ArrayList<>();
+        if (acceptSymbol("(")) {
+            do {
+                arguments.add(literal("EXECUTE", usage));
+            } while (acceptSymbol(","));
+            symbol(")", "EXECUTE", usage);
+        }
+        return new Statement.Execute(name, arguments);
+    }
+
+    private Statement create() {
+        if (accept("DATABASE")) {
+            return new Statement.CreateDatabase(name("CREATE DATABASE", "CREATE DATABASE db_name"));
+        } else if (accept("TABLE")) {
+            return createTable();
+        } else if (accept("INDEX")) {
+            return createIndex();
+        }
+        throw error("CREATE", "CREATE DATABASE db_name', 'CREATE TABLE table_name (columns)' or 'CREATE INDEX index_name ON table_name (columns)");
+    }
+
+    /**
+     * CREATE TABLE name (column type [PRIMARY KEY], ...) [WITH (option=value, ...)]
+     */
+    private Statement createTable() {
+        String usage = "CREATE TABLE table_name (column1 type, column2 type, ...) [WITH (format=row|columnar)]";
+        String table = name("CREATE TABLE", usage);
+
+        List<Statement.ColumnDefinition> columns = new ArrayList<>();
+        symbol("(", "CREATE TABLE", usage);
+        do {
+            String column = name("CREATE TABLE", usage);
+            String type = name("CREATE TABLE", usage);
+            boolean primaryKey = accept("PRIMARY");
+            if (primaryKey) {
+                keyword("KEY", "CREATE TABLE", usage);
+            }
+            columns.add(new Statement.ColumnDefinition(column, type, primaryKey));
+        } while (acceptSymbol(","));
+        symbol(")", "CREATE TABLE", usage);
+
+        Map<String, String> options = new LinkedHashMap<>();
+        if (accept("WITH")) {
+            symbol("(", "CREATE TABLE", usage);
+            do {
+                String option = name("CREATE TABLE", usage).toLowerCase();
+                symbol("=", "CREATE TABLE", usage);
+                if (options.put(option, literal("CREATE TABLE", usage).value()) != null) {
+                    throw new IllegalArgumentException("Table option '" + option + "' is given more than once.");
+                }
+            } while (acceptSymbol(","));
+            symbol(")", "CREATE TABLE", usage);
+        }
+        return new Statement.CreateTable(table, columns, options);
+    }
+
+    /**
+     * CREATE INDEX name ON table [USING type] (column, ...) [USING type]
+     */
+    private Statement createIndex() {
+        String usage = "CREATE INDEX index_name ON table_name (column1, column2, ...) [USING BTREE|HASH|BITMAP]";
+        String index = name("CREATE INDEX", usage);
+        keyword("ON", "CREATE INDEX", usage);
+        String table = name("CREATE INDEX", usage);
+
+        String typeName = accept("USING") ? name("CREATE INDEX", usage) : null;
+        List<String> columns = new ArrayList<>();
+        symbol("(", "CREATE INDEX", usage);
+        do {
+            columns.add(name("CREATE INDEX", usage));
+        } while (acceptSymbol(","));
+        symbol(")", "CREATE INDEX", usage);
+        if (accept("USING")) {
+            if (typeName != null) {
+                throw new IllegalArgumentException("Specify USING only once.");
+            }
+            typeName = name("CREATE INDEX", usage);
+        }
+
+        IndexType type = typeName != null ? IndexType.parse(typeName) : IndexType.BTREE;
+        return new Statement.CreateIndex(index, table, columns, type);
+    }
+
+    /**
+     * DROP INDEX name [ON table]
+     */
+    private Statement dropIndex() {
+        String usage = "DROP INDEX index_name [ON table_name]";
+        keyword("INDEX", "DROP", usage);
+        String index = name("DROP INDEX", usage);
+        String table = accept("ON") ? name("DROP INDEX", usage) : null;
+        return new Statement.DropIndex(index, table);
+    }
+
+    /**
+     * INSERT INTO table VALUES (value, ...)
+     */
+    private Statement insert() {
+        String usage = "INSERT INTO table_name VALUES (value1, value2, ...)";
+        keyword("INTO", "INSERT", usage);
+        String table = name("INSERT", usage);
+        keyword("VALUES", "INSERT", usage);
+
+        List<Literal> values = new ArrayList<>();
+        symbol("(", "INSERT", usage);
+        do {
+            values.add(value("INSERT", usage));
+        } while (acceptSymbol(","));
+        symbol(")", "INSERT", usage);
+        return new Statement.Insert(table, values);
+    }
+
+    /**
+     * SELECT * | column, ... FROM table [WHERE condition] [ORDER BY column [ASC | DESC], ...] [LIMIT count]
+     */
+    private Statement select() {
+        String usage = "SELECT columns FROM table_name [WHERE condition] [ORDER BY column [ASC|DESC], ...] [LIMIT count]";
+        List<String> columns = new ArrayList<>();
+        if (!acceptSymbol("*")) {
+            do {
+                columns.add(name("SELECT", usage));
+            } while (acceptSymbol(","));
+        }
+        keyword("FROM", "SELECT", usage);
+        String table = name("SELECT", usage);
+
+        Condition where = accept("WHERE") ? condition() : null;
+        List<Statement.SortKey> orderBy = new ArrayList<>();
+        if (accept("ORDER")) {
+            keyword("BY", "SELECT", usage);
+            do {
+                String column = name("SELECT", usage);
+                boolean descending = accept("DESC");
+                if (!descending) {
+                    accept("ASC");
+                }
+                orderBy.add(new Statement.SortKey(column, descending));
+            } while (acceptSymbol(","));
+        }
+        long limit = -1;
+        if (accept("LIMIT")) {
+            Token count = next();
+            try {
+                limit = count.type() == Token.Type.NUMBER ? Long.parseLong(count.text()) : -1;
+            } catch (NumberFormatException e) {
+                limit = -1;
+            }
+            if (limit < 0) {
+                throw error("SELECT", usage, count);
+            }
+        }
+        return new Statement.Select(columns, table, where, orderBy, limit);
+    }
+
+    /**
+     * condition := and {OR and}
+     */
+    private Condition condition() {
+        List<Condition> operands = new ArrayList<>();
+        do {
+            operands.add(conjunction());
+        } while (accept("OR"));
+        return Condition.or(operands);
+    }
+
+    /**
+     * and := not {AND not}
+     */
+    private Condition conjunction() {
+        List<Condition> operands = new ArrayList<>();
+        do {
+            operands.add(negation());
+        } while (accept("AND"));
+        return Condition.and(operands);
+    }
+
+    /**
+     * not := NOT not | (condition) | predicate
+     */
+    private Condition negation() {
+        if (accept("NOT")) {
+            return negation().negate();
+        }
+        if (acceptSymbol("(")) {
+            Condition condition = condition();
+            if (!acceptSymbol(")")) {
+                throw conditionError(peek());
+            }
+            return condition;
+        }
+        return predicate();
+    }
+
+    /**
+     * predicate := column operator value | column [NOT] IN (value, ...) | column [NOT] BETWEEN value AND value
+     */
+    private Condition predicate() {
+        Token column = next();
+        if (column.type() != Token.Type.WORD) {
+            throw conditionError(column);
+        }
+
+        boolean negated = accept("NOT");
+        if (accept("IN")) {
+            if (!acceptSymbol("(")) {
+                throw conditionError(peek());
+            }
+            List<Literal> values = new ArrayList<>();
+            do {
+                values.add(conditionValue());
+            } while (acceptSymbol(","));
+            if (!acceptSymbol(")")) {
+                throw conditionError(peek());
+            }
+            return new Condition.In(column.text(), values, negated);
+        }
+        if (accept("BETWEEN")) {
+            Literal low = conditionValue();
+            if (!accept("AND")) {
+                throw conditionError(peek());
+            }
+            return new Condition.Between(column.text(), low, conditionValue(), negated);
+        }
+
+        Token operator = next();
+        if (negated || operator.type() != Token.Type.SYMBOL
+                || !(" " + COMPARISON_OPERATORS + " ").contains(" " + operator.text() + " ")) {
+            throw conditionError(operator);
+        }
+        return new Condition.Comparison(column.text(), operator.text().equals("<>") ? "!=" : operator.text(), conditionValue());
+    }
+
+    private Literal conditionValue() {
+        Token value = peek();
+        if ((value.type() == Token.Type.SYMBOL && !value.isSymbol("?")) || value.type() == Token.Type.EOF) {
+            throw conditionError(value);
+        }
+        return value("SELECT", "");
+    }
+
+    private static IllegalArgumentException conditionError(Token token) {
+        return new IllegalArgumentException("Invalid condition format near " + token.describe()
+                + ". Use 'column operator value', 'column [NOT] IN (values)' or 'column [NOT] BETWEEN low AND high',"
+                + " combined with AND, OR, NOT and parentheses.");
+    }
+
+    /**
+     * Reads a constant or a parameter placeholder.
+     */
+    private Literal value(String statement, String usage) {
+        if (acceptSymbol("?")) {
+            return Literal.parameter(parameters++);
+        }
+        return literal(statement, usage);
+    }
+
+    /**
+     * Reads a constant: a quoted string, a number or an unquoted word.
+     */
+    private Literal literal(String statement, String usage) {
+        Token token = next();
+        if (token.type() == Token.Type.SYMBOL || token.type() == Token.Type.EOF) {
+            throw error(statement, usage, token);
+        }
+        return new Literal(token.text(), token.type() == Token.Type.STRING);
+    }
+
+    private String name(String statement, String usage) {
+        Token token = next();
+        if (token.type() != Token.Type.WORD) {
+            throw error(statement, usage, token);
+        }
+        return token.text();
+    }
+
+    private void keyword(String keyword, String statement, String usage) {
+        Token token = next();
+        if (!token.is(keyword)) {
+            throw error(statement, usage, token);
+        }
+    }
+
+    private void symbol(String symbol, String statement, String usage) {
+        Token token = next();
+        if (!token.isSymbol(symbol)) {
+            throw error(statement, usage, token);
+        }
+    }
+
+    private boolean accept(String keyword) {
+        if (peek().is(keyword)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptSymbol(String symbol) {
+        if (peek().isSymbol(symbol)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private Token peek() {
+        return tokens.get(position);
+    }
+
+    private Token next() {
+        Token token = tokens.get(position);
+        if (token.type() != Token.Type.EOF) {
+            position++;
+        }
+        return token;
+    }
+
+    private IllegalArgumentException error(String statement, String usage) {
+        return error(statement, usage, peek());
+    }
+
+    private static IllegalArgumentException error(String statement, String usage, Token token) {
+        return new IllegalArgumentException("Invalid " + statement + " syntax near " + token.describe() + ". Use '" + usage + "'.");
+    }
+}
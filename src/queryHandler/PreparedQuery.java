@@ -0,0 +1,89 @@
+package queryHandler;
+
+/**
+ * A statement parsed once and executed any number of times with different parameter values.
+ * Obtain one from {@link Query#prepare(String)} and run it with {@link Query#execute(PreparedQuery, Object...)}.
+ * A SELECT also keeps the plan it was last executed with, so repeated executions skip planning.
+ */
+public final class PreparedQuery {
+    private final String sql;
+    private final Statement statement;
+    private final int parameterCount;
+    private volatile SelectPlan plan; // Plan of a SELECT, made on first execution
+
+    PreparedQuery(String sql, Statement statement) {
+        this.sql = sql;
+        this.statement = statement;
+        this.parameterCount = statement.parameterCount();
+    }
+
+    /**
+     * Returns the normalized statement text the query is cached under.
+     *
+     * @return The statement text.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Returns the number of "?" parameters to bind on execution.
+     *
+     * @return The parameter count.
+     */
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    Statement statement() {
+        return statement;
+    }
+
+    SelectPlan plan() {
+        return plan;
+    }
+
+    void setPlan(SelectPlan plan) {
+        this.plan = plan;
+    }
+
+    /**
+     * Normalizes statement text for the plan cache: runs of whitespace outside quoted literals become one
+     * space, and surrounding whitespace and a trailing semicolon are dropped.
+     *
+     * @param sql The statement text.
+     * @return The normalized text.
+     */
+    static String normalize(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        boolean quoted = false;
+        boolean space = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (!quoted && Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+                continue;
+            }
+            if (space) {
+                normalized.append(' ');
+                space = false;
+            }
+            if (c == '\'') {
+                quoted = !quoted; // An escaped quote ('') toggles twice
+            }
+            normalized.append(c);
+        }
+        if (!quoted && normalized.length() > 0 && normalized.charAt(normalized.length() - 1) == ';') {
+            normalized.setLength(normalized.length() - 1);
+            if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) == ' ') {
+                normalized.setLength(normalized.length() - 1);
+            }
+        }
+        return normalized.toString();
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
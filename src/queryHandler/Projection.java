@@ -0,0 +1,71 @@
+package queryHandler;
+
+import java.util.BitSet;
+import java.util.List;
+import storage.Row;
+import storage.TableSchema;
+
+/**
+ * The columns a SELECT returns, resolved against the table schema. A row is projected field by field,
+ * so columns that are not selected are never decoded. Projected rows are printed like stored records:
+ * values separated by commas, strings quoted.
+ */
+final class Projection {
+    private final int[] ordinals;
+    private final boolean[] quoted; // Per selected column: true for STRING columns
+
+    private Projection(int[] ordinals, boolean[] quoted) {
+        this.ordinals = ordinals;
+        this.quoted = quoted;
+    }
+
+    /**
+     * Resolves the selected columns.
+     *
+     * @param columns The selected column names; empty for "*".
+     * @param schema  The schema of the table.
+     * @return The projection, or null to return whole records.
+     * @throws IllegalArgumentException if a column does not exist.
+     */
+    static Projection resolve(List<String> columns, TableSchema schema) {
+        if (columns.isEmpty()) {
+            return null;
+        }
+        int[] ordinals = new int[columns.size()];
+        boolean[] quoted = new boolean[columns.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = schema.indexOf(columns.get(i));
+            if (ordinals[i] < 0) {
+                throw new IllegalArgumentException("Column '" + columns.get(i) + "' not found in table.");
+            }
+            quoted[i] = schema.getColumnType(ordinals[i]) == TableSchema.ColumnType.STRING;
+        }
+        return new Projection(ordinals, quoted);
+    }
+
+    /**
+     * Adds the ordinals of the selected columns.
+     */
+    void addColumns(BitSet columns) {
+        for (int ordinal : ordinals) {
+            columns.set(ordinal);
+        }
+    }
+
+    /**
+     * Formats the selected fields of a row; a field the row lacks is left empty.
+     */
+    String project(Fields fields) {
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < ordinals.length; i++) {
+            if (i > 0) {
+                row.append(", ");
+            }
+            String value = fields.text(ordinals[i]);
+            if (value != null) {
+                row.append(quoted[i] ? Row.quote(value) : value);
+            }
+        }
+        return row.toString();
+    }
+}
@@ -1,31 +1,60 @@
 package queryHandler;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import storage.Catalog;
+import storage.ColumnarTable;
 import storage.IndexManager;
+import storage.IndexType;
+import storage.LongList;
+import storage.RecordBitmap;
+import storage.RecordCursor;
+import storage.Row;
 import storage.StorageManager;
+import storage.TableFormat;
+import storage.TableSchema;
 import transactionHandling.TransactionManager;
 
 /**
  * Handles SQL-like queries for the lightweight DBMS.
- * Implements SHOW, USE, CREATE, DESCRIBE, INSERT, SELECT, and transaction operations.
+ * Implements SHOW, USE, CREATE, DROP INDEX, DESCRIBE, INSERT, SELECT, and transaction operations.
+ * Queries are parsed by {@link Parser} into {@link Statement} trees, which are executed here.
  */
 public class Query {
+    private static final int PLAN_CACHE_SIZE = 256; // Parsed statements kept for reuse
+    private static final long DEFAULT_PARALLEL_SCAN_THRESHOLD = 100_000; // Rows from which a scan runs in parallel
+    private static final int ROWS_PER_SCAN_PART = 16_384;  // Rows scanned by each part of a parallel scan
+    private static final int PAGES_PER_SCAN_PART = 64;     // Pages scanned by each part of a parallel streaming scan
+    private static final int MIN_ROWS_PER_PAGE = 16;       // Lower bound on the records of a full page, to size streamed tables
+    private static final long DEFAULT_SORT_MEMORY_BUDGET = 64L << 20; // Bytes of rows a sort holds before spilling runs to disk
+
     private final StorageManager storageManager;
     private final TransactionManager transactionManager;
-    private final IndexManager indexManager;
     private String activeDatabase = null; // Stores the selected database
 
+    // Parsed statements by normalized text, least recently used first
+    private final Map<String, PreparedQuery> planCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedQuery> eldest) {
+            return size() > PLAN_CACHE_SIZE;
+        }
+    };
+    private final Map<String, PreparedQuery> preparedStatements = new HashMap<>(); // Statements named by PREPARE
+    private long parallelScanThreshold = DEFAULT_PARALLEL_SCAN_THRESHOLD;
+    private long sortMemoryBudget = DEFAULT_SORT_MEMORY_BUDGET;
+
     /**
      * Constructor initializes the Query Processor with StorageManager and TransactionManager instances.
      */
     public Query() {
         this.storageManager = new StorageManager();
-        this.indexManager = new IndexManager();
         this.transactionManager = new TransactionManager(storageManager);
     }
 
     /**
      * Processes a SQL-like query entered by the user.
+     * The query is parsed once and cached by its text, so a repeated query is not parsed again.
      * 
      * @param query The SQL query to process.
      */
@@ -35,122 +64,156 @@ public class Query {
             return;
         }
 
-        // Remove trailing semicolon if present
-        if (query.trim().endsWith(";")) {
-            query = query.trim().substring(0, query.trim().length() - 1);
+        PreparedQuery prepared;
+        try {
+            prepared = prepare(query);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
         }
+        if (prepared.getParameterCount() > 0) {
+            System.out.println("Error: The statement has " + prepared.getParameterCount() + " parameter(s). Use 'PREPARE name AS statement' and 'EXECUTE name (values)' to bind them.");
+            return;
+        }
+        execute(prepared, List.of());
+    }
 
-        String[] tokens = query.trim().split("\\s+", 3);
-        String command = tokens[0].toUpperCase();
-
-        switch (command) {
-            case "SHOW" -> {
-                if (tokens.length > 1 && tokens[1].equalsIgnoreCase("DATABASES")) {
-                    showDatabases();
-                } else {
-                    System.out.println("Error: Invalid SHOW command. Use 'SHOW DATABASES'.");
-                }
-            }
-
-            case "USE" -> {
-                if (tokens.length > 1) {
-                    useDatabase(tokens[1]);
-                } else {
-                    System.out.println("Error: Database name required. Use 'USE database_name'.");
-                }
-            }
-
-            case "CREATE" -> {
-                if (tokens.length > 1) {
-                    if (tokens[1].equalsIgnoreCase("DATABASE") && tokens.length > 2) {
-                        createDatabase(tokens[2]);
-                    } else if (tokens[1].equalsIgnoreCase("TABLE") && tokens.length > 2) {
-                        String tableInfo = tokens[2];
-                        int openParenIndex = tableInfo.indexOf('(');
-                        if (openParenIndex > 0) {
-                            String tableName = tableInfo.substring(0, openParenIndex).trim();
-                            String columns = tableInfo.substring(openParenIndex).trim();
-                            createTable(tableName, columns);
-                        } else {
-                            System.out.println("Error: Invalid CREATE TABLE syntax. Use 'CREATE TABLE table_name (column1 type, column2 type, ...)'.");
-                        }
-                    } else {
-                        System.out.println("Error: Invalid CREATE command. Use 'CREATE DATABASE db_name' or 'CREATE TABLE table_name (columns)'.");
-                    }
-                } else {
-                    System.out.println("Error: Invalid CREATE command. Use 'CREATE DATABASE db_name' or 'CREATE TABLE table_name (columns)'.");
-                }
-            }
-
-            case "DESCRIBE" -> {
-                if (tokens.length > 1) {
-                    describeTable(tokens[1]);
-                } else {
-                    System.out.println("Error: Table name required. Use 'DESCRIBE table_name'.");
-                }
-            }
+    /**
+     * Parses a statement once for repeated execution. Values written as "?" are parameters, bound by
+     * {@link #execute(PreparedQuery, Object...)}. Parsed statements are kept in a bounded cache keyed by
+     * their normalized text, so preparing the same statement again returns the cached query and its plan.
+     *
+     * @param sql The statement text (e.g., "SELECT * FROM Profile WHERE bannerID = ?").
+     * @return The prepared query.
+     * @throws IllegalArgumentException if the statement is malformed.
+     */
+    public PreparedQuery prepare(String sql) {
+        String normalized = PreparedQuery.normalize(sql);
+        PreparedQuery prepared = planCache.get(normalized);
+        if (prepared == null) {
+            prepared = new PreparedQuery(normalized, Parser.parse(sql));
+            planCache.put(normalized, prepared);
+        }
+        return prepared;
+    }
 
-            case "INSERT" -> {
-                if (tokens.length > 1 && tokens[1].equalsIgnoreCase("INTO") && tokens.length > 2) {
-                    String tableInfo = tokens[2];
-                    int valuesIndex = tableInfo.toUpperCase().indexOf("VALUES");
-                    if (valuesIndex > 0) {
-                        String tableName = tableInfo.substring(0, valuesIndex).trim();
-                        String values = tableInfo.substring(valuesIndex + 6).trim();
-                        // Remove parentheses
-                        values = values.replaceAll("[()]", "").trim();
-                        insertData(tableName, values);
-                    } else {
-                        System.out.println("Error: Invalid INSERT syntax. Use 'INSERT INTO table_name VALUES (value1, value2, ...)'.");
-                    }
-                } else {
-                    System.out.println("Error: Invalid INSERT command. Use 'INSERT INTO table_name VALUES (value1, value2, ...)'.");
-                }
-            }
+    /**
+     * Executes a prepared query with the given parameter values, printing its results like
+     * {@link #processQuery(String)}. Strings are bound as quoted values and numbers as numeric ones.
+     *
+     * @param query      The prepared query.
+     * @param parameters The values of its parameters, in placeholder order.
+     * @throws IllegalArgumentException if the number of values does not match the parameters, or a value is null.
+     */
+    public void execute(PreparedQuery query, Object... parameters) {
+        execute(query, bind(query, parameters));
+    }
 
-            case "SELECT" -> {
-                if (tokens.length > 1) {
-                    String selectQuery = query.substring(7).trim(); // Remove "SELECT "
-                    String fromKeyword = "FROM";
-                    int fromIndex = selectQuery.toUpperCase().indexOf(fromKeyword);
-                    
-                    if (fromIndex > 0) {
-                        String remaining = selectQuery.substring(fromIndex + fromKeyword.length()).trim();
-                        
-                        String tableName;
-                        String condition = "";
-                        
-                        int whereIndex = remaining.toUpperCase().indexOf("WHERE");
-                        if (whereIndex > 0) {
-                            tableName = remaining.substring(0, whereIndex).trim();
-                            condition = remaining.substring(whereIndex + 5).trim();
-                        } else {
-                            tableName = remaining.trim();
-                        }
-                        
-                        selectData(tableName, condition);
-                    } else {
-                        System.out.println("Error: Invalid SELECT syntax. Use 'SELECT columns FROM table_name [WHERE condition]'.");
-                    }
-                } else {
-                    System.out.println("Error: Invalid SELECT command. Use 'SELECT columns FROM table_name [WHERE condition]'.");
-                }
-            }
+    /**
+     * Converts the parameter values passed through the Java API to literals.
+     *
+     * @throws IllegalArgumentException if the number of values does not match the parameters, or a value is null.
+     */
+    private static List<Literal> bind(PreparedQuery query, Object... parameters) {
+        if (parameters.length != query.getParameterCount()) {
+            throw new IllegalArgumentException("The statement has " + query.getParameterCount()
+                    + " parameter(s) but " + parameters.length + " value(s) were given.");
+        }
+        List<Literal> values = new ArrayList<>(parameters.length);
+        for (Object parameter : parameters) {
+            values.add(Literal.of(parameter));
+        }
+        return values;
+    }
 
-            case "BEGIN" -> {
-                if (tokens.length > 1 && tokens[1].equalsIgnoreCase("TRANSACTION")) {
-                    beginTransaction();
-                } else {
-                    System.out.println("Error: Invalid BEGIN command. Use 'BEGIN TRANSACTION'.");
-                }
-            }
+    /**
+     * Binds the parameters of a prepared query and executes its statement.
+     *
+     * @param query      The prepared query.
+     * @param parameters The parameter values, in placeholder order.
+     */
+    private void execute(PreparedQuery query, List<Literal> parameters) {
+        Statement statement = query.statement().bind(parameters);
+        if (statement instanceof Statement.ShowDatabases) {
+            showDatabases();
+        } else if (statement instanceof Statement.UseDatabase use) {
+            useDatabase(use.name());
+        } else if (statement instanceof Statement.CreateDatabase create) {
+            createDatabase(create.name());
+        } else if (statement instanceof Statement.CreateTable create) {
+            createTable(create);
+        } else if (statement instanceof Statement.CreateIndex create) {
+            createIndex(create);
+        } else if (statement instanceof Statement.DropIndex drop) {
+            dropIndex(drop);
+        } else if (statement instanceof Statement.Describe describe) {
+            describeTable(describe.table());
+        } else if (statement instanceof Statement.Insert insert) {
+            insertData(insert);
+        } else if (statement instanceof Statement.Select select) {
+            selectData(select, query);
+        } else if (statement instanceof Statement.Prepare prepare) {
+            prepareStatement(prepare);
+        } else if (statement instanceof Statement.Execute execute) {
+            executeStatement(execute);
+        } else if (statement instanceof Statement.Deallocate deallocate) {
+            deallocateStatement(deallocate.name());
+        } else if (statement instanceof Statement.Begin) {
+            beginTransaction();
+        } else if (statement instanceof Statement.Commit) {
+            commitTransaction();
+        } else if (statement instanceof Statement.Rollback) {
+            rollbackTransaction();
+        }
+    }
 
-            case "COMMIT" -> commitTransaction();
+    /**
+     * Executes the PREPARE command: names a statement of the session for later EXECUTE commands.
+     * The statement shares the plan cache, so a statement prepared under several names is parsed once.
+     *
+     * @param prepare The parsed PREPARE statement.
+     */
+    private void prepareStatement(Statement.Prepare prepare) {
+        String normalized = PreparedQuery.normalize(prepare.sql());
+        PreparedQuery prepared = planCache.get(normalized);
+        if (prepared == null) {
+            prepared = new PreparedQuery(normalized, prepare.statement());
+            planCache.put(normalized, prepared);
+        }
+        preparedStatements.put(prepare.name().toLowerCase(), prepared);
+        System.out.println("Statement '" + prepare.name() + "' prepared with " + prepared.getParameterCount() + " parameter(s).");
+    }
 
-            case "ROLLBACK" -> rollbackTransaction();
+    /**
+     * Executes the EXECUTE command: runs a prepared statement with the given parameter values.
+     *
+     * @param execute The parsed EXECUTE statement.
+     */
+    private void executeStatement(Statement.Execute execute) {
+        PreparedQuery prepared = preparedStatements.get(execute.name().toLowerCase());
+        if (prepared == null) {
+            System.out.println("Error: Prepared statement '" + execute.name() + "' not found.");
+            return;
+        }
+        if (execute.arguments().size() != prepared.getParameterCount()) {
+            System.out.println("Error: Statement '" + execute.name() + "' expects " + prepared.getParameterCount()
+                    + " parameter(s) but got " + execute.arguments().size() + ".");
+            return;
+        }
+        execute(prepared, execute.arguments());
+    }
 
-            default -> System.out.println("Error: Unsupported command. Supported commands: SHOW, USE, CREATE, DESCRIBE, INSERT, SELECT, BEGIN, COMMIT, ROLLBACK.");
+    /**
+     * Executes the DEALLOCATE command: forgets a prepared statement of the session.
+     *
+     * @param name The statement name.
+     */
+    private void deallocateStatement(String name) {
+        if (preparedStatements.remove(name.toLowerCase()) == null) {
+            System.out.println("Error: Prepared statement '" + name + "' not found.");
+            return;
         }
+        System.out.println("Statement '" + name + "' deallocated.");
     }
 
     /**
@@ -167,13 +230,13 @@ public class Query {
      * Displays all available databases in the system.
      */
     public void showDatabases() {
-        Map<String, List<String>> database = storageManager.loadDatabase(); // Load DBs
+        List<String> databases = storageManager.getCatalog().getDatabaseNames();
 
-        if (database.isEmpty()) {
+        if (databases.isEmpty()) {
             System.out.println("No databases found.");
         } else {
             System.out.println("\nAvailable Databases:");
-            for (String dbName : database.keySet()) {
+            for (String dbName : databases) {
                 System.out.println("- " + dbName);
             }
         }
@@ -185,9 +248,7 @@ public class Query {
      * @param dbName The database name to use.
      */
     public void useDatabase(String dbName) {
-        Map<String, List<String>> database = storageManager.loadDatabase();
-
-        if (database.containsKey(dbName)) {
+        if (storageManager.getCatalog().databaseExists(dbName)) {
             activeDatabase = dbName;
             System.out.println("Database '" + dbName + "' is now in use.");
         } else {
@@ -196,37 +257,146 @@ public class Query {
     }
 
     /**
-     * Creates a new table in the selected database.
+     * Creates a new table in the selected database, as "CREATE TABLE tableName columns" would.
      *
      * @param tableName The name of the table to create.
-     * @param columns   The column names (e.g., "id INT, name STRING").
+     * @param columns   The column names (e.g., "(id INT, name STRING)"), optionally followed by
+     *                  table options such as "WITH (format=columnar)".
      */
     public void createTable(String tableName, String columns) {
+        processQuery("CREATE TABLE " + tableName + " " + columns);
+    }
+
+    /**
+     * Creates a new table in the selected database.
+     *
+     * @param create The parsed CREATE TABLE statement, with its columns and table options
+     *               such as "WITH (format=columnar)".
+     */
+    private void createTable(Statement.CreateTable create) {
         if (activeDatabase == null) {
             System.out.println("Error: No database selected. Use 'USE database_name' first.");
             return;
         }
 
-        Map<String, List<String>> database = storageManager.loadDatabase();
-        if (!database.containsKey(activeDatabase)) {
+        Catalog catalog = storageManager.getCatalog();
+        if (!catalog.databaseExists(activeDatabase)) {
             System.out.println("Error: Selected database does not exist.");
             return;
         }
 
-        List<String> tables = database.get(activeDatabase);
-        if (tables.contains(tableName)) {
+        String tableName = create.table();
+        if (catalog.tableExists(activeDatabase, tableName)) {
             System.out.println("Error: Table '" + tableName + "' already exists.");
             return;
         }
 
-        // Store table schema as the first entry in the table data
-        List<String> tableData = new ArrayList<>();
-        tableData.add("SCHEMA: " + columns);
-        storageManager.saveTable(activeDatabase + "." + tableName, tableData);
+        // Build the schema once; it is stored with the table and cached in the catalog
+        TableFormat format = TableFormat.ROW;
+        TableSchema schema;
+        try {
+            for (Map.Entry<String, String> option : create.options().entrySet()) {
+                if (!option.getKey().equals("format")) {
+                    throw new IllegalArgumentException("Unsupported table option '" + option.getKey() + "'. Use 'format=row' or 'format=columnar'.");
+                }
+                format = TableFormat.parse(option.getValue());
+            }
+            schema = TableSchema.parse("SCHEMA: " + create.columnList());
+            if (format == TableFormat.COLUMNAR && schema.getPrimaryKey() >= 0) {
+                throw new IllegalArgumentException("Columnar tables do not support a primary key.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        storageManager.createTable(activeDatabase + "." + tableName, schema, format);
 
         System.out.println("Table '" + tableName + "' created successfully in database '" + activeDatabase + "'.");
     }
 
+    /**
+     * Creates a secondary index of a table in the selected database, as "CREATE INDEX definition" would.
+     *
+     * @param definition The index definition (e.g., "idx_email ON Profile(email) USING HASH" or "idx_name ON Profile(lastName, firstName)").
+     */
+    public void createIndex(String definition) {
+        processQuery("CREATE INDEX " + definition);
+    }
+
+    /**
+     * Creates a secondary index on one or more columns of a table in the selected database.
+     * The index is built from the current records and maintained by every later change.
+     * "USING HASH" builds a hash index, which answers equality conditions only, and "USING BITMAP" a bitmap
+     * index for columns with few distinct values; the default is a B-tree.
+     *
+     * @param create The parsed CREATE INDEX statement (e.g., "CREATE INDEX idx_email ON Profile(email) USING HASH").
+     */
+    private void createIndex(Statement.CreateIndex create) {
+        if (activeDatabase == null) {
+            System.out.println("Error: No database selected. Use 'USE database_name' first.");
+            return;
+        }
+
+        String indexName = create.name();
+        String tableName = create.table();
+        String fullTableName = activeDatabase + "." + tableName;
+        if (storageManager.getTableSchema(fullTableName) == null) {
+            System.out.println("Error: Table '" + tableName + "' not found.");
+            return;
+        }
+        if (storageManager.findIndexTable(activeDatabase, indexName) != null) {
+            System.out.println("Error: Index '" + indexName + "' already exists in database '" + activeDatabase + "'.");
+            return;
+        }
+
+        try {
+            storageManager.getIndexManager().createIndex(fullTableName, indexName, create.columns(), create.type());
+            System.out.println("Index '" + indexName + "' created successfully on table '" + tableName + "'.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error: Could not create index '" + indexName + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops a secondary index of a table in the selected database, as "DROP INDEX reference" would.
+     *
+     * @param reference The index name, optionally followed by "ON table_name".
+     */
+    public void dropIndex(String reference) {
+        processQuery("DROP INDEX " + reference);
+    }
+
+    /**
+     * Drops a secondary index of a table in the selected database.
+     *
+     * @param drop The parsed DROP INDEX statement; without an ON clause the index is looked up by name.
+     */
+    private void dropIndex(Statement.DropIndex drop) {
+        if (activeDatabase == null) {
+            System.out.println("Error: No database selected. Use 'USE database_name' first.");
+            return;
+        }
+
+        String indexName = drop.name();
+        String fullTableName = drop.table() != null
+                ? activeDatabase + "." + drop.table()
+                : storageManager.findIndexTable(activeDatabase, indexName);
+
+        try {
+            if (fullTableName == null || !storageManager.getIndexManager().dropIndex(fullTableName, indexName)) {
+                System.out.println("Error: Index '" + indexName + "' not found.");
+                return;
+            }
+            System.out.println("Index '" + indexName + "' dropped successfully.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error: Could not drop index '" + indexName + "': " + e.getMessage());
+        }
+    }
+
     /**
      * Displays the schema of a specified table.
      *
@@ -239,206 +409,612 @@ public class Query {
         }
 
         String fullTableName = activeDatabase + "." + tableName;
-        List<String> tableData = storageManager.loadTableData(fullTableName);
+        String schema = storageManager.loadTableSchema(fullTableName);
 
-        if (tableData.isEmpty()) {
+        if (schema == null) {
             System.out.println("Error: Table '" + tableName + "' not found in database '" + activeDatabase + "'.");
             return;
         }
 
         System.out.println("\nTable Structure: " + tableName);
-        System.out.println(tableData.get(0)); // Schema information
+        System.out.println(schema); // Schema information
     }
 
     /**
-     * Inserts a new record into a table.
+     * Inserts a new record into a table, as "INSERT INTO tableName VALUES (record)" would.
      *
      * @param tableName The target table.
-     * @param record    The record to insert (comma-separated values).
+     * @param record    The record to insert (comma-separated values, strings quoted).
      */
     public void insertData(String tableName, String record) {
+        processQuery("INSERT INTO " + tableName + " VALUES (" + record + ")");
+    }
+
+    /**
+     * Inserts a new record into a table.
+     *
+     * @param insert The parsed INSERT statement.
+     */
+    private void insertData(Statement.Insert insert) {
         if (activeDatabase == null) {
             System.out.println("Error: No database selected. Use 'USE database_name' first.");
             return;
         }
 
+        String tableName = insert.table();
         String fullTableName = activeDatabase + "." + tableName;
+        String record = insert.recordText();
         String operation = "INSERT INTO " + tableName + " VALUES (" + record + ")";
 
+        TableSchema schema = storageManager.getTableSchema(fullTableName);
+        if (schema == null) {
+            System.out.println("Error: Table '" + tableName + "' not found.");
+            return;
+        }
+
+        // Check the values against the column count and types of the schema, also before queueing the
+        // insert in a transaction, so a bad record is reported when it is entered
+        String[] values = new String[insert.values().size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = insert.values().get(i).value();
+        }
+        String error = schema.validate(values);
+        if (error != null) {
+            System.out.println("Error: " + error);
+            return;
+        }
+
         if (transactionManager.isTransactionActive()) {
             transactionManager.addOperation(operation);
         } else {
-            List<String> tableData = storageManager.loadTableData(fullTableName);
-            
-            if (tableData.isEmpty()) {
-                System.out.println("Error: Table '" + tableName + "' not found.");
+            // Append the record instead of rewriting the whole table file
+            if (!storageManager.appendRow(fullTableName, record)) {
+                System.out.println("Error: Could not insert data into '" + tableName + "'.");
                 return;
             }
             
-            // Check if the number of values matches the schema
-            String schema = tableData.get(0);
-            String[] columnDefs = schema.substring(schema.indexOf(":") + 1).trim().split(",");
-            String[] values = record.split(",");
-            
-            if (columnDefs.length != values.length) {
-                System.out.println("Error: Column mismatch: expected " + columnDefs.length + " values but got " + values.length + ".");
-                return;
-            }
-            
-            tableData.add(record);
-            storageManager.saveTable(fullTableName, tableData);
-            
-            // Update index
-            try {
-                int id = Integer.parseInt(values[0].trim().replace("'", ""));
-                indexManager.addToIndex(fullTableName, id, record);
-            } catch (NumberFormatException e) {
-                // If first column is not an integer, skip indexing
-            }
-            
             System.out.println("Data inserted successfully into '" + tableName + "'.");
         }
     }
 
     /**
-     * Selects data from a table with optional filtering conditions.
+     * Selects data from a table with optional filtering conditions, as "SELECT * FROM tableName WHERE
+     * condition" would.
      *
      * @param tableName The table to retrieve data from.
-     * @param condition The condition for filtering records (e.g., "id=1").
+     * @param condition The condition for filtering records (e.g., "id=1"), or null or empty for all records.
      */
     public void selectData(String tableName, String condition) {
+        boolean filtered = condition != null && !condition.isBlank();
+        processQuery("SELECT * FROM " + tableName + (filtered ? " WHERE " + condition : ""));
+    }
+
+    /**
+     * Selects data from a table with optional filtering conditions and prints the rows of the result.
+     * The access path taken is reported before the results.
+     *
+     * @param select The parsed SELECT statement, with its parameters bound.
+     * @param source The prepared query the statement came from, which caches its plan.
+     * @see #openSelect(Statement.Select, PreparedQuery)
+     */
+    private void selectData(Statement.Select select, PreparedQuery source) {
         if (activeDatabase == null) {
             System.out.println("Error: No database selected. Use 'USE database_name' first.");
             return;
         }
 
-        String fullTableName = activeDatabase + "." + tableName;
-        List<String> tableData = storageManager.loadTableData(fullTableName);
-
-        if (tableData.isEmpty()) {
+        String tableName = select.table();
+        if (storageManager.getTableSchema(activeDatabase + "." + tableName) == null) {
             System.out.println("Error: Table '" + tableName + "' not found.");
             return;
         }
 
         System.out.println("\nData in '" + tableName + "':");
-        
-        // If no condition, return all rows
-        if (condition == null || condition.trim().isEmpty()) {
-            for (int i = 1; i < tableData.size(); i++) { // Skip schema row
-                System.out.println(tableData.get(i));
+
+        try (ResultCursor cursor = openSelect(select, source)) {
+            System.out.println("Access path: " + cursor.getAccessPath());
+            boolean found = false;
+            while (cursor.next()) {
+                System.out.println(cursor.getRecord());
+                found = true;
             }
-            return;
+            if (!found && select.where() != null) {
+                System.out.println("No records found matching the condition.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error: Could not read table '" + tableName + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Executes a prepared SELECT with the given parameter values and returns its rows as a cursor, which
+     * reads them from the table as they are pulled. Values are bound as by {@link #execute(PreparedQuery, Object...)}.
+     *
+     * @param query      The prepared query; must be a SELECT.
+     * @param parameters The values of its parameters, in placeholder order.
+     * @return The cursor over the result rows, positioned before the first.
+     * @throws IllegalArgumentException if the query is not a SELECT, the values do not match the parameters,
+     *                                  or the table or a column does not exist.
+     * @throws IllegalStateException    if no database is selected.
+     * @throws IOException              if the table cannot be read.
+     */
+    public ResultCursor executeQuery(PreparedQuery query, Object... parameters) throws IOException {
+        if (!(query.statement() instanceof Statement.Select)) {
+            throw new IllegalArgumentException("Only SELECT statements return rows.");
+        }
+        if (activeDatabase == null) {
+            throw new IllegalStateException("No database selected. Use 'USE database_name' first.");
+        }
+        Statement.Select select = (Statement.Select) query.statement().bind(bind(query, parameters));
+        return openSelect(select, query);
+    }
+
+    /**
+     * Returns the number of rows from which a table scan is split into parts scanned in parallel.
+     *
+     * @return The threshold, in rows.
+     */
+    public long getParallelScanThreshold() {
+        return parallelScanThreshold;
+    }
+
+    /**
+     * Sets the number of rows from which a table scan is split into parts scanned in parallel on the
+     * fork-join pool; smaller tables are scanned by the calling thread. Row-format tables streamed from
+     * disk are sized by their pages. Long.MAX_VALUE keeps every scan serial.
+     *
+     * @param rows The threshold, in rows.
+     * @throws IllegalArgumentException if the threshold is negative.
+     */
+    public void setParallelScanThreshold(long rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("The parallel scan threshold cannot be negative.");
+        }
+        this.parallelScanThreshold = rows;
+    }
+
+    /**
+     * Returns the bytes of rows an ORDER BY holds in memory before it spills sorted runs to disk.
+     *
+     * @return The budget, in bytes.
+     */
+    public long getSortMemoryBudget() {
+        return sortMemoryBudget;
+    }
+
+    /**
+     * Sets the bytes of rows an ORDER BY holds in memory. Larger sorts write sorted runs to temporary files
+     * in the data directory and merge them; the files are deleted when the result is closed.
+     *
+     * @param bytes The budget, in bytes.
+     * @throws IllegalArgumentException if the budget is not positive.
+     */
+    public void setSortMemoryBudget(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("The sort memory budget must be positive.");
+        }
+        this.sortMemoryBudget = bytes;
+    }
+
+    /**
+     * Builds the operator pipeline of a SELECT: a scan, then a filter for the condition, a sort for ORDER BY,
+     * a projection of the selected columns and a limit, each present only when the query needs it.
+     * When operands of the condition's top-level AND test the leading column of an index (equality, IN,
+     * BETWEEN or a range), the most selective of them is answered from the index and the rest of the condition
+     * is tested on the records it returns; other queries scan the table. Columns are resolved and constants
+     * parsed once, not per row.
+     *
+     * @param select The SELECT statement, with its parameters bound.
+     * @param source The prepared query the statement came from, which caches its plan.
+     * @return The cursor over the result rows.
+     * @throws IllegalArgumentException if the table or a column does not exist, or a constant does not fit its column.
+     * @throws IOException              if the table cannot be read.
+     */
+    private ResultCursor openSelect(Statement.Select select, PreparedQuery source) throws IOException {
+        String tableName = select.table();
+        String fullTableName = activeDatabase + "." + tableName;
+        TableSchema schema = storageManager.getTableSchema(fullTableName);
+        if (schema == null) {
+            throw new IllegalArgumentException("Table '" + tableName + "' not found.");
+        }
+        ColumnarTable columnarTable = storageManager.getColumnarTable(fullTableName);
+
+        Filter filter = select.where() == null ? null : Filter.resolve(select.where(), schema);
+        Projection projection = Projection.resolve(select.columns(), schema);
+        SortOrder order = SortOrder.resolve(select.orderBy(), schema);
+
+        // Reuse the plan of an earlier execution unless the schema or the indexes changed since
+        SelectPlan plan = source.plan();
+        long indexVersion = storageManager.getIndexManager().getDefinitionVersion();
+        if (plan == null || !plan.isCurrent(fullTableName, schema, indexVersion)) {
+            plan = planSelect(select, fullTableName, schema, columnarTable != null, indexVersion);
+            source.setPlan(plan);
+        }
+
+        Operator operator = null;
+        StringBuilder path = new StringBuilder();
+        if (!plan.access().isEmpty()) {
+            operator = indexScan(select, plan, filter, path);
+        }
+
+        // A sort reads stored records, so it precedes the projection; an unsorted scan projects in each part
+        boolean projected = false;
+        if (operator == null) {
+            projected = order == null;
+            operator = tableScan(tableName, fullTableName, schema, columnarTable, filter, projected ? projection : null, path);
         }
-        
-        // Parse the schema to get column names and types
-        String schema = tableData.get(0);
-        String schemaContent = schema.substring(schema.indexOf(":") + 1).trim();
-        String[] columnDefs = schemaContent.split(",");
-        
-        Map<String, Integer> columnIndexMap = new HashMap<>();
-        Map<String, String> columnTypeMap = new HashMap<>();
-        
-        for (int i = 0; i < columnDefs.length; i++) {
-            String[] parts = columnDefs[i].trim().split("\\s+");
-            if (parts.length >= 2) {
-                String colName = parts[0].trim();
-                String colType = parts[1].trim().toUpperCase();
-                columnIndexMap.put(colName, i);
-                columnTypeMap.put(colName, colType);
+        if (order != null) {
+            boolean top = select.limit() >= 0 && select.limit() <= Operator.Sort.MAX_HEAP_ROWS;
+            path.append(", then ").append(top ? "top " + select.limit() + " " : "").append("sort (").append(order).append(')');
+            operator = new Operator.Sort(operator, order, select.limit(), sortMemoryBudget, storageManager.getDataDirectory());
+        }
+        if (projection != null && !projected) {
+            operator = new Operator.Project(operator, projection);
+        }
+        if (select.limit() >= 0) {
+            operator = new Operator.Limit(operator, select.limit());
+        }
+        return new ResultCursor(operator, path.toString());
+    }
+
+    /**
+     * Opens the pipeline of one range of a table: rows, pages or columnar rows, depending on the table.
+     */
+    private interface ScanRange {
+        Operator open(int from, int to) throws IOException;
+    }
+
+    /**
+     * Scans a table and applies the filter and the projection. Columnar tables scan column arrays in
+     * batches, filtering each batch; large row tables stream from the mapped file; other row tables scan
+     * their decoded rows. Tables of at least {@link #getParallelScanThreshold()} rows are split into parts
+     * (runs of pages or of rows) that are scanned, filtered and projected in parallel, and whose rows are
+     * returned in table order.
+     *
+     * @param path Receives the description of the access path.
+     * @return The root of the scan's pipeline.
+     * @throws IllegalArgumentException if the table does not exist.
+     */
+    private Operator tableScan(String tableName, String fullTableName, TableSchema schema, ColumnarTable columnarTable,
+                               Filter filter, Projection projection, StringBuilder path) throws IOException {
+        ScanRange range;
+        int first;
+        int end;
+        int partSize;
+        long rowEstimate;
+        if (columnarTable != null) {
+            BitSet columns = new BitSet();
+            if (filter != null) {
+                filter.addColumns(columns);
             }
+            if (projection != null) {
+                projection.addColumns(columns);
+            }
+            range = (from, to) -> new Operator.ColumnScan(columnarTable, columns, filter, from, to);
+            first = 0;
+            end = columnarTable.getRowCount();
+            partSize = ROWS_PER_SCAN_PART;
+            rowEstimate = end;
+            path.append("columnar scan");
+        } else if (storageManager.shouldStreamScan(fullTableName)) {
+            range = (from, to) -> {
+                RecordCursor cursor = storageManager.openCursor(fullTableName, from, to);
+                if (cursor == null) {
+                    throw new IOException("The table file is no longer open.");
+                }
+                Operator scan = new Operator.CursorScan(cursor, schema);
+                return filter == null ? scan : new Operator.Where(scan, filter);
+            };
+            first = 1; // Page 0 is the header
+            end = storageManager.getPageCount(fullTableName);
+            partSize = PAGES_PER_SCAN_PART;
+            rowEstimate = (long) Math.max(0, end - 1) * MIN_ROWS_PER_PAGE;
+            path.append("streaming table scan");
+        } else {
+            List<Row> rows = storageManager.loadRows(fullTableName); // A snapshot, which inserts do not change
+            if (rows == null) {
+                throw new IllegalArgumentException("Table '" + tableName + "' not found.");
+            }
+            range = (from, to) -> {
+                Operator scan = new Operator.RowScan(rows, from, to);
+                return filter == null ? scan : new Operator.Where(scan, filter);
+            };
+            first = 0;
+            end = rows.size();
+            partSize = ROWS_PER_SCAN_PART;
+            rowEstimate = end;
+            path.append("table scan");
+        }
+
+        if (rowEstimate < parallelScanThreshold || end - first <= partSize || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            Operator scan = range.open(first, end);
+            return projection == null ? scan : new Operator.Project(scan, projection);
         }
-        
-        // Parse the condition
-        String[] operators = {">=", "<=", "!=", "=", ">", "<"};
-        String operator = null;
-        String columnName = null;
-        String value = null;
-        
-        for (String op : operators) {
-            if (condition.contains(op)) {
-                String[] parts = condition.split(op, 2);
-                if (parts.length == 2) {
-                    columnName = parts[0].trim();
-                    value = parts[1].trim();
-                    operator = op;
-                    break;
+        List<Operator.ParallelScan.Part> parts = new ArrayList<>();
+        for (int from = first; from < end; from += partSize) {
+            int partFirst = from;
+            int partEnd = Math.min(end, from + partSize);
+            parts.add(() -> {
+                Operator scan = range.open(partFirst, partEnd);
+                return projection == null ? scan : new Operator.Project(scan, projection);
+            });
+        }
+        path.append(" in ").append(parts.size()).append(" parallel parts");
+        return new Operator.ParallelScan(parts, schema);
+    }
+
+    /**
+     * Plans a SELECT: picks the operand of the condition's top-level AND that an index answers most
+     * selectively. Equality and IN on a unique index come first, then equality and IN on other indexes,
+     * then BETWEEN, then one-sided ranges; ties go to the index kind preferred by {@link #rank}, then to
+     * fewer IN values. When the pick is an equality on a bitmap index, the other such conjuncts with
+     * bitmap indexes join it, so their record sets are intersected.
+     */
+    private SelectPlan planSelect(Statement.Select select, String fullTableName, TableSchema schema,
+                                  boolean columnar, long indexVersion) throws IOException {
+        if (select.where() == null || columnar) {
+            return new SelectPlan(fullTableName, schema, indexVersion, List.of());
+        }
+
+        record Candidate(int position, IndexManager.Definition index, boolean equality, int selectivity, int rank, int values) {
+        }
+        List<Condition> conjuncts = Condition.conjuncts(select.where());
+        List<Candidate> candidates = new ArrayList<>();
+        for (int position = 0; position < conjuncts.size(); position++) {
+            Condition conjunct = conjuncts.get(position);
+            String operator = indexOperator(conjunct);
+            int columnIndex = operator == null ? -1 : schema.indexOf(column(conjunct));
+            IndexManager.Definition index = columnIndex < 0 ? null : chooseIndex(fullTableName, columnIndex, operator);
+            if (index == null) {
+                continue;
+            }
+            boolean equality = operator.equals("=");
+            int selectivity = equality ? (index.unique() ? 0 : 1) : conjunct instanceof Condition.Between ? 2 : 3;
+            int values = conjunct instanceof Condition.In in ? in.values().size() : 1;
+            candidates.add(new Candidate(position, index, equality, selectivity, rank(index, operator), values));
+        }
+        if (candidates.isEmpty()) {
+            return new SelectPlan(fullTableName, schema, indexVersion, List.of());
+        }
+
+        candidates.sort(Comparator.comparingInt(Candidate::selectivity).thenComparingInt(Candidate::rank)
+                .thenComparingInt(Candidate::values).thenComparingInt(candidate -> candidate.index().ordinals().length));
+        Candidate best = candidates.get(0);
+        List<SelectPlan.IndexedConjunct> access = new ArrayList<>();
+        access.add(new SelectPlan.IndexedConjunct(best.position(), best.index()));
+        if (best.equality() && best.index().type() == IndexType.BITMAP) {
+            for (Candidate candidate : candidates.subList(1, candidates.size())) {
+                if (candidate.equality() && candidate.index().type() == IndexType.BITMAP) {
+                    access.add(new SelectPlan.IndexedConjunct(candidate.position(), candidate.index()));
                 }
             }
         }
-        
-        if (columnName == null || operator == null || value == null) {
-            System.out.println("Error: Invalid condition format. Use 'column operator value'.");
-            return;
+        return new SelectPlan(fullTableName, schema, indexVersion, List.copyOf(access));
+    }
+
+    /**
+     * Returns the operator an index must answer for a conjunct: "=" for equality and IN, a range operator for
+     * comparisons and BETWEEN, or null if no index helps (inequality, NOT IN, NOT BETWEEN, OR).
+     */
+    private static String indexOperator(Condition conjunct) {
+        if (conjunct instanceof Condition.Comparison comparison) {
+            return comparison.operator().equals("!=") ? null : comparison.operator();
+        } else if (conjunct instanceof Condition.In in) {
+            return in.negated() ? null : "=";
+        } else if (conjunct instanceof Condition.Between between) {
+            return between.negated() ? null : ">=";
         }
-        
-        // Check if column exists
-        if (!columnIndexMap.containsKey(columnName)) {
-            System.out.println("Error: Column '" + columnName + "' not found in table.");
-            return;
+        return null;
+    }
+
+    private static String column(Condition conjunct) {
+        if (conjunct instanceof Condition.Comparison comparison) {
+            return comparison.column();
+        } else if (conjunct instanceof Condition.In in) {
+            return in.column();
         }
-        
-        int columnIndex = columnIndexMap.get(columnName);
-        String columnType = columnTypeMap.get(columnName);
-        
-        // Process each row
-        boolean found = false;
-        for (int i = 1; i < tableData.size(); i++) { // Skip schema row
-            String row = tableData.get(i);
-            String[] values = row.split(",");
-            
-            if (columnIndex >= values.length) {
-                continue; // Skip rows with insufficient columns
+        return ((Condition.Between) conjunct).column();
+    }
+
+    /**
+     * Picks the index to answer a condition on a column: the primary key if it is the column, then for
+     * equality a hash index on the column alone, then a bitmap index, then a B-tree index; for ranges,
+     * a B-tree index before a bitmap index. Among indexes of one kind, the one with the fewest columns wins.
+     *
+     * @return The index, or null if no index can answer the condition.
+     */
+    private IndexManager.Definition chooseIndex(String fullTableName, int columnIndex, String operator) throws IOException {
+        IndexManager.Definition chosen = null;
+        for (IndexManager.Definition index : storageManager.getIndexManager().getIndexes(fullTableName)) {
+            if (index.ordinals()[0] != columnIndex) {
+                continue;
             }
-            
-            // Clean the cell value - remove quotes and trim
-            String cellValue = values[columnIndex].trim();
-            cellValue = cellValue.replaceAll("^'|'$", ""); // Remove surrounding quotes
-            
-            // Clean the comparison value - remove quotes
-            String cleanValue = value.trim();
-            cleanValue = cleanValue.replaceAll("^'|'$", ""); // Remove surrounding quotes
-            
-            boolean matches = false;
-            
-            // Compare based on column type
-            if (columnType.equals("INT") || columnType.equals("FLOAT")) {
-                try {
-                    double cellNum = Double.parseDouble(cellValue);
-                    double valueNum = Double.parseDouble(cleanValue);
-                    
-                    switch (operator) {
-                        case "=" -> matches = cellNum == valueNum;
-                        case ">" -> matches = cellNum > valueNum;
-                        case "<" -> matches = cellNum < valueNum;
-                        case ">=" -> matches = cellNum >= valueNum;
-                        case "<=" -> matches = cellNum <= valueNum;
-                        case "!=" -> matches = cellNum != valueNum;
-                    }
-                } catch (NumberFormatException e) {
-                    // Skip rows with invalid number format
-                    continue;
+            if (index.type() == IndexType.HASH && (!operator.equals("=") || index.ordinals().length > 1)) {
+                continue; // A hash index finds whole keys only
+            }
+            int rank = rank(index, operator);
+            if (chosen == null || rank < rank(chosen, operator)
+                    || (rank == rank(chosen, operator) && index.ordinals().length < chosen.ordinals().length)) {
+                chosen = index;
+            }
+        }
+        return chosen;
+    }
+
+    private static int rank(IndexManager.Definition index, String operator) {
+        if (index.unique()) {
+            return 0;
+        }
+        return switch (index.type()) {
+            case HASH -> 1;
+            case BITMAP -> operator.equals("=") ? 2 : 4;
+            case BTREE -> 3;
+        };
+    }
+
+    /**
+     * Reads the records of a SELECT from the indexes its plan chose: in key order for a B-tree range, in
+     * table order otherwise. Conjuncts the indexes did not answer are tested on each record.
+     *
+     * @param path Receives the description of the access path.
+     * @return The operator reading the matching records, or null if an index no longer exists and the table must be scanned.
+     */
+    private Operator indexScan(Statement.Select select, SelectPlan plan, Filter filter, StringBuilder path) throws IOException {
+        String fullTableName = plan.fullTableName();
+        IndexManager indexManager = storageManager.getIndexManager();
+        List<Condition> conjuncts = Condition.conjuncts(select.where());
+
+        LongList recordIds;
+        if (plan.access().size() > 1) {
+            RecordBitmap intersection = null;
+            for (SelectPlan.IndexedConjunct access : plan.access()) {
+                List<String> keys = new ArrayList<>();
+                for (KeyRange range : keyRanges(plan.schema(), conjuncts.get(access.position()))) {
+                    keys.add(range.low());
                 }
-            } else {
-                // String comparison
-                switch (operator) {
-                    case "=" -> matches = cellValue.equals(cleanValue);
-                    case "!=" -> matches = !cellValue.equals(cleanValue);
-                    case ">" -> matches = cellValue.compareTo(cleanValue) > 0;
-                    case "<" -> matches = cellValue.compareTo(cleanValue) < 0;
-                    case ">=" -> matches = cellValue.compareTo(cleanValue) >= 0;
-                    case "<=" -> matches = cellValue.compareTo(cleanValue) <= 0;
+                RecordBitmap bitmap = indexManager.findBitmap(fullTableName, access.index().name(), keys);
+                if (bitmap == null) {
+                    return null;
                 }
+                intersection = intersection == null ? bitmap : intersection.and(bitmap);
             }
-            
-            if (matches) {
-                System.out.println(row);
-                found = true;
+            recordIds = intersection.toList();
+        } else {
+            SelectPlan.IndexedConjunct access = plan.access().get(0);
+            recordIds = lookup(fullTableName, access.index(), keyRanges(plan.schema(), conjuncts.get(access.position())));
+            if (recordIds == null) {
+                return null;
             }
         }
-        
-        if (!found) {
-            System.out.println("No records found matching the condition.");
+
+        // Describe the access path: the indexed conjuncts, then the conjuncts left to test on each record
+        List<Condition> indexed = new ArrayList<>();
+        if (plan.access().size() > 1) {
+            path.append("bitmap index intersection on ");
+            for (SelectPlan.IndexedConjunct access : plan.access()) {
+                path.append(indexed.isEmpty() ? "" : ", ").append(access.index().name());
+                indexed.add(conjuncts.get(access.position()));
+            }
+        } else {
+            IndexManager.Definition index = plan.access().get(0).index();
+            Condition conjunct = conjuncts.get(plan.access().get(0).position());
+            boolean lookup = "=".equals(indexOperator(conjunct));
+            path.append("index ").append(lookup ? "lookup" : "range scan").append(" on ").append(index.name())
+                    .append(index.type() != IndexType.BTREE ? " (" + index.type().name().toLowerCase() + ")" : "");
+            indexed.add(conjunct);
+        }
+        path.append(" (").append(Condition.and(indexed)).append(')');
+        List<Condition> residual = new ArrayList<>(conjuncts);
+        residual.removeAll(indexed);
+        if (!residual.isEmpty()) {
+            path.append(", then filter (").append(Condition.and(residual)).append(')');
+        }
+        Operator scan = new Operator.IndexScan(storageManager, fullTableName, plan.schema(), recordIds);
+        return residual.isEmpty() ? scan : new Operator.Where(scan, filter);
+    }
+
+    /**
+     * A range of index keys, as unquoted values.
+     *
+     * @param low  The lower bound, or null for none.
+     * @param high The upper bound, or null for none.
+     */
+    private record KeyRange(String low, boolean lowInclusive, String high, boolean highInclusive) {
+    }
+
+    /**
+     * Converts an indexable conjunct into the ranges of keys it selects: one per IN value, one otherwise.
+     * Bounds on an INT column are rounded to whole numbers, so the index returns the rows a scan would;
+     * ranges that can hold no value are left out.
+     */
+    private static List<KeyRange> keyRanges(TableSchema schema, Condition conjunct) {
+        TableSchema.ColumnType type = schema.getColumnType(schema.indexOf(column(conjunct)));
+        List<KeyRange> ranges = new ArrayList<>();
+        if (conjunct instanceof Condition.Comparison comparison) {
+            String value = comparison.value().value();
+            boolean lower = comparison.operator().startsWith(">") || comparison.operator().equals("=");
+            boolean upper = comparison.operator().startsWith("<") || comparison.operator().equals("=");
+            addRange(ranges, type, lower ? value : null, !comparison.operator().equals(">"),
+                    upper ? value : null, !comparison.operator().equals("<"));
+        } else if (conjunct instanceof Condition.In in) {
+            for (Literal value : in.values()) {
+                addRange(ranges, type, value.value(), true, value.value(), true);
+            }
+        } else {
+            Condition.Between between = (Condition.Between) conjunct;
+            addRange(ranges, type, between.low().value(), true, between.high().value(), true);
+        }
+        return ranges;
+    }
+
+    private static void addRange(List<KeyRange> ranges, TableSchema.ColumnType type, String low, boolean lowInclusive,
+                                 String high, boolean highInclusive) {
+        switch (type) {
+            case INT -> {
+                double lowBound = low == null ? Double.NEGATIVE_INFINITY
+                        : lowInclusive ? Math.ceil(Double.parseDouble(low)) : Math.floor(Double.parseDouble(low)) + 1;
+                double highBound = high == null ? Double.POSITIVE_INFINITY
+                        : highInclusive ? Math.floor(Double.parseDouble(high)) : Math.ceil(Double.parseDouble(high)) - 1;
+                if (Double.isNaN(lowBound) || Double.isNaN(highBound) || lowBound > highBound
+                        || lowBound > Integer.MAX_VALUE || highBound < Integer.MIN_VALUE) {
+                    return; // No value compares equal, less or greater than NaN
+                }
+                ranges.add(new KeyRange(lowBound > Integer.MIN_VALUE ? Integer.toString((int) lowBound) : null, true,
+                        highBound < Integer.MAX_VALUE ? Integer.toString((int) highBound) : null, true));
+            }
+            case FLOAT -> {
+                if ((low != null && Double.isNaN(Double.parseDouble(low))) || (high != null && Double.isNaN(Double.parseDouble(high)))) {
+                    return;
+                }
+                ranges.add(new KeyRange(low, lowInclusive, high, highInclusive));
+            }
+            case STRING -> ranges.add(new KeyRange(low, lowInclusive, high, highInclusive));
+        }
+    }
+
+    /**
+     * Reads the record ids in a set of key ranges from an index. Several ranges (an IN list) are united
+     * into table order; a single range keeps the order of the index.
+     *
+     * @return The record ids, or null if the index no longer exists.
+     */
+    private LongList lookup(String fullTableName, IndexManager.Definition index, List<KeyRange> ranges) throws IOException {
+        IndexManager indexManager = storageManager.getIndexManager();
+        if (index.type() == IndexType.BITMAP && ranges.size() > 1
+                && ranges.stream().allMatch(range -> range.low() != null && range.low().equals(range.high()))) {
+            List<String> keys = new ArrayList<>();
+            for (KeyRange range : ranges) {
+                keys.add(range.low());
+            }
+            RecordBitmap union = indexManager.findBitmap(fullTableName, index.name(), keys);
+            return union == null ? null : union.toList();
+        }
+
+        LongList recordIds = new LongList();
+        for (KeyRange range : ranges) {
+            LongList found = indexManager.find(fullTableName, index.name(), range.low(), range.lowInclusive(),
+                    range.high(), range.highInclusive());
+            if (found == null) {
+                return null;
+            }
+            if (ranges.size() == 1) {
+                return found;
+            }
+            recordIds.addAll(found, 0, found.size());
+        }
+
+        // Unite the ranges: sort into table order and drop ids found by more than one value
+        recordIds.sort();
+        int distinct = 0;
+        for (int i = 0; i < recordIds.size(); i++) {
+            if (distinct == 0 || recordIds.get(i) != recordIds.get(distinct - 1)) {
+                recordIds.set(distinct++, recordIds.get(i));
+            }
         }
+        recordIds.truncate(distinct);
+        return recordIds;
     }
 
     /**
@@ -0,0 +1,52 @@
+package queryHandler;
+
+import java.io.IOException;
+
+/**
+ * The rows of a SELECT, pulled one at a time from its operator pipeline, so a result of any size is read
+ * in constant memory. Obtain one from {@link Query#executeQuery(PreparedQuery, Object...)}; close it when done.
+ */
+public final class ResultCursor implements AutoCloseable {
+    private final Operator root;
+    private final String accessPath;
+
+    ResultCursor(Operator root, String accessPath) {
+        this.root = root;
+        this.accessPath = accessPath;
+    }
+
+    /**
+     * Describes how the rows are read, e.g. "index lookup on primary (id = 2)".
+     *
+     * @return The access path.
+     */
+    public String getAccessPath() {
+        return accessPath;
+    }
+
+    /**
+     * Advances to the next row.
+     *
+     * @return True if there is a current row, false after the last one.
+     * @throws IOException if the table cannot be read.
+     */
+    public boolean next() throws IOException {
+        return root.next();
+    }
+
+    /**
+     * Returns the current row as comma-separated values, strings quoted: the stored record, or the
+     * selected columns in the order they were listed.
+     *
+     * @return The row text.
+     * @throws IOException if the table cannot be read.
+     */
+    public String getRecord() throws IOException {
+        return root.record();
+    }
+
+    @Override
+    public void close() throws IOException {
+        root.close();
+    }
+}
@@ -0,0 +1,32 @@
+package queryHandler;
+
+import java.util.List;
+import storage.IndexManager;
+import storage.TableSchema;
+
+/**
+ * How a SELECT runs: the table it reads and the indexes, if any, that answer conjuncts of its condition.
+ * A plan stays valid while the table keeps its schema and no index is created or dropped; it depends on
+ * the shape of the condition, not on its constants, so it serves every execution of a prepared query.
+ *
+ * @param fullTableName The table (e.g., "db.table").
+ * @param schema        The schema the plan was made for.
+ * @param indexVersion  The index definition version the plan was made at.
+ * @param access        The indexed conjuncts, most selective first; several only when their bitmap
+ *                      indexes are intersected. Empty to scan the table.
+ */
+record SelectPlan(String fullTableName, TableSchema schema, long indexVersion, List<IndexedConjunct> access) {
+
+    /**
+     * An operand of the condition's top-level AND, answered from an index.
+     *
+     * @param position The position of the conjunct in the condition.
+     * @param index    The index.
+     */
+    record IndexedConjunct(int position, IndexManager.Definition index) {
+    }
+
+    boolean isCurrent(String fullTableName, TableSchema schema, long indexVersion) {
+        return this.fullTableName.equals(fullTableName) && this.schema == schema && this.indexVersion == indexVersion;
+    }
+}
@@ -0,0 +1,136 @@
+package queryHandler;
+
+import java.util.List;
+import storage.TableSchema;
+
+/**
+ * The ORDER BY keys of a SELECT, resolved against the table schema. Keys are read from the stored text of
+ * each record, so rows sorted in memory and rows read back from spilled runs compare alike.
+ * - Numeric columns compare as numbers, STRING columns as text.
+ * - A missing value, or one that is not a number in a numeric column, sorts after all values; DESC
+ *   reverses the whole order, so it then sorts first.
+ * - Rows with equal keys keep the order in which the scan returned them.
+ */
+final class SortOrder {
+    private final List<Statement.SortKey> keys;
+    private final int[] ordinals;
+    private final boolean[] numeric;
+    private final boolean[] descending;
+    private final TableSchema schema;
+    private final Fields.RecordFields fields; // Not shared between threads
+
+    private SortOrder(List<Statement.SortKey> keys, TableSchema schema, int[] ordinals, boolean[] numeric, boolean[] descending) {
+        this.keys = keys;
+        this.schema = schema;
+        this.fields = new Fields.RecordFields(schema);
+        this.ordinals = ordinals;
+        this.numeric = numeric;
+        this.descending = descending;
+    }
+
+    /**
+     * Resolves the ORDER BY keys.
+     *
+     * @param keys   The keys, most significant first.
+     * @param schema The schema of the table.
+     * @return The sort order, or null if there are no keys.
+     * @throws IllegalArgumentException if a column does not exist.
+     */
+    static SortOrder resolve(List<Statement.SortKey> keys, TableSchema schema) {
+        if (keys.isEmpty()) {
+            return null;
+        }
+        int[] ordinals = new int[keys.size()];
+        boolean[] numeric = new boolean[keys.size()];
+        boolean[] descending = new boolean[keys.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = schema.indexOf(keys.get(i).column());
+            if (ordinals[i] < 0) {
+                throw new IllegalArgumentException("Column '" + keys.get(i).column() + "' not found in table.");
+            }
+            numeric[i] = schema.getColumnType(ordinals[i]).isNumeric();
+            descending[i] = keys.get(i).descending();
+        }
+        return new SortOrder(keys, schema, ordinals, numeric, descending);
+    }
+
+    TableSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * A record to sort, with its keys extracted.
+     *
+     * @param sequence The position of the record in the scan, which breaks ties.
+     * @param record   The stored record text.
+     * @param keys     The key values: Double for numeric keys, String otherwise, null if missing.
+     */
+    record Entry(long sequence, String record, Object[] keys) {
+
+        /**
+         * Estimates the bytes an entry occupies on the heap, to bound the memory of a sort.
+         */
+        long size() {
+            long size = 96 + 2L * record.length(); // Entry, key array and record string
+            for (Object key : keys) {
+                size += key instanceof String text ? 48 + 2L * text.length() : 16;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Extracts the keys of a record.
+     *
+     * @param sequence The position of the record in the scan.
+     * @param record   The stored record text.
+     * @return The entry to sort.
+     */
+    Entry entry(long sequence, String record) {
+        fields.record = record;
+        Object[] values = new Object[ordinals.length];
+        for (int i = 0; i < ordinals.length; i++) {
+            if (!numeric[i]) {
+                values[i] = fields.text(ordinals[i]);
+            } else if (fields.has(ordinals[i])) {
+                try {
+                    values[i] = fields.number(ordinals[i]) + 0.0; // -0.0 sorts as 0.0
+                } catch (NumberFormatException e) {
+                    values[i] = null;
+                }
+            }
+        }
+        return new Entry(sequence, record, values);
+    }
+
+    /**
+     * Compares two entries in sort order.
+     */
+    int compare(Entry a, Entry b) {
+        for (int i = 0; i < ordinals.length; i++) {
+            Object x = a.keys()[i];
+            Object y = b.keys()[i];
+            int result;
+            if (x == null || y == null) {
+                result = x == null ? (y == null ? 0 : 1) : -1;
+            } else if (numeric[i]) {
+                result = Double.compare((Double) x, (Double) y);
+            } else {
+                result = ((String) x).compareTo((String) y);
+            }
+            if (result != 0) {
+                return descending[i] ? -result : result;
+            }
+        }
+        return Long.compare(a.sequence(), b.sequence());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Statement.SortKey key : keys) {
+            text.append(text.length() > 0 ? ", " : "").append(key);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,181 @@
+package queryHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import storage.IndexType;
+
+/**
+ * A parsed statement. The parser builds one of these per query, and Query executes it without
+ * looking at the query text again. Values written as "?" are parameters, bound before execution.
+ */
+sealed interface Statement {
+
+    /**
+     * Counts the parameter placeholders of the statement.
+     */
+    default int parameterCount() {
+        return 0;
+    }
+
+    /**
+     * Replaces the parameters of the statement with their bound values.
+     *
+     * @param parameters The values, in placeholder order.
+     * @return The bound statement; this statement if it has no parameters.
+     */
+    default Statement bind(List<Literal> parameters) {
+        return this;
+    }
+
+    record ShowDatabases() implements Statement {
+    }
+
+    record UseDatabase(String name) implements Statement {
+    }
+
+    record CreateDatabase(String name) implements Statement {
+    }
+
+    /**
+     * @param table   The table name.
+     * @param columns The column definitions, in order.
+     * @param options The table options of a WITH clause, keyed by lower-case name (e.g. "format" -> "columnar").
+     */
+    record CreateTable(String table, List<ColumnDefinition> columns, Map<String, String> options) implements Statement {
+
+        /**
+         * Renders the column list as stored in the schema row, e.g. "(id INT PRIMARY KEY, name STRING)".
+         */
+        String columnList() {
+            StringBuilder definition = new StringBuilder("(");
+            for (ColumnDefinition column : columns) {
+                if (definition.length() > 1) {
+                    definition.append(", ");
+                }
+                definition.append(column.name()).append(' ').append(column.type());
+                if (column.primaryKey()) {
+                    definition.append(" PRIMARY KEY");
+                }
+            }
+            return definition.append(')').toString();
+        }
+    }
+
+    /**
+     * @param name       The column name.
+     * @param type       The type name as written, e.g. INT.
+     * @param primaryKey True if the column is declared PRIMARY KEY.
+     */
+    record ColumnDefinition(String name, String type, boolean primaryKey) {
+    }
+
+    record CreateIndex(String name, String table, List<String> columns, IndexType type) implements Statement {
+    }
+
+    /**
+     * @param name  The index name.
+     * @param table The table named by an ON clause, or null.
+     */
+    record DropIndex(String name, String table) implements Statement {
+    }
+
+    record Describe(String table) implements Statement {
+    }
+
+    record Insert(String table, List<Literal> values) implements Statement {
+
+        @Override
+        public int parameterCount() {
+            return (int) values.stream().filter(Literal::isParameter).count();
+        }
+
+        @Override
+        public Statement bind(List<Literal> parameters) {
+            if (parameterCount() == 0) {
+                return this;
+            }
+            List<Literal> bound = new ArrayList<>(values.size());
+            for (Literal value : values) {
+                bound.add(value.bind(parameters));
+            }
+            return new Insert(table, bound);
+        }
+
+        /**
+         * Renders the values as a stored record, e.g. "'B001', 'John', 3.8".
+         */
+        String recordText() {
+            StringBuilder record = new StringBuilder();
+            for (Literal value : values) {
+                if (record.length() > 0) {
+                    record.append(", ");
+                }
+                record.append(value.toRecordText());
+            }
+            return record.toString();
+        }
+    }
+
+    /**
+     * @param columns The selected column names; empty for "*".
+     * @param table   The table name.
+     * @param where   The WHERE condition, or null.
+     * @param orderBy The ORDER BY keys, most significant first; empty for none.
+     * @param limit   The maximum number of rows to return, or -1 for no limit.
+     */
+    record Select(List<String> columns, String table, Condition where, List<SortKey> orderBy, long limit) implements Statement {
+
+        @Override
+        public int parameterCount() {
+            return where == null ? 0 : where.parameterCount();
+        }
+
+        @Override
+        public Statement bind(List<Literal> parameters) {
+            return parameterCount() == 0 ? this : new Select(columns, table, where.bind(parameters), orderBy, limit);
+        }
+    }
+
+    /**
+     * @param column     The column to sort by.
+     * @param descending True for DESC.
+     */
+    record SortKey(String column, boolean descending) {
+        @Override
+        public String toString() {
+            return descending ? column + " DESC" : column;
+        }
+    }
+
+    /**
+     * PREPARE name AS statement
+     *
+     * @param name      The name the statement is executed by.
+     * @param statement The prepared statement, with its parameters unbound.
+     * @param sql       The text of the prepared statement.
+     */
+    record Prepare(String name, Statement statement, String sql) implements Statement {
+    }
+
+    /**
+     * EXECUTE name [(value, ...)]
+     *
+     * @param name      The name of a prepared statement.
+     * @param arguments The parameter values, in placeholder order.
+     */
+    record Execute(String name, List<Literal> arguments) implements Statement {
+    }
+
+    record Deallocate(String name) implements Statement {
+    }
+
+    record Begin() implements Statement {
+    }
+
+    record Commit() implements Statement {
+    }
+
+    record Rollback() implements Statement {
+    }
+}
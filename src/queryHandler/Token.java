@@ -0,0 +1,44 @@
+package queryHandler;
+
+/**
+ * A token of a SQL-like statement.
+ *
+ * @param type     The kind of token.
+ * @param text     The token text; for a string literal, its value without quotes.
+ * @param position The offset of the token in the statement.
+ */
+record Token(Type type, String text, int position) {
+
+    enum Type {
+        WORD,   // A keyword, a name or an unquoted value, e.g. SELECT, Profile or a@x.com
+        NUMBER, // A numeric literal, e.g. 42, -3.5 or 1e3
+        STRING, // A quoted literal, e.g. 'O''Brien'
+        SYMBOL, // Punctuation or an operator, e.g. ( , * = <=
+        EOF     // The end of the statement
+    }
+
+    /**
+     * Tells whether this token is the given keyword, ignoring case.
+     */
+    boolean is(String keyword) {
+        return type == Type.WORD && text.equalsIgnoreCase(keyword);
+    }
+
+    /**
+     * Tells whether this token is the given symbol.
+     */
+    boolean isSymbol(String symbol) {
+        return type == Type.SYMBOL && text.equals(symbol);
+    }
+
+    /**
+     * Describes the token for an error message.
+     */
+    String describe() {
+        return switch (type) {
+            case EOF -> "end of statement";
+            case STRING -> "'" + text.replace("'", "''") + "'";
+            default -> "'" + text + "'";
+        };
+    }
+}
@@ -0,0 +1,707 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A B+tree in a page file mapping unique byte-string keys (see IndexKey) to record ids.
+ * - Page 0 holds the key width, the root page number, the entry count and a clean flag; every other page is a node.
+ * - Node layout: [leaf flag][key count][next leaf or first child][page LSN, unused][entries ...]
+ *   Leaf entries are (key, record id); internal entries are (separator key, right child).
+ *   Nodes keep the page LSN field of heap pages at zero, since index pages are not logged.
+ * - Trees over numeric columns have keys of one width (see IndexKey.width): their entries are stored
+ *   without a length at a fixed stride, like a sorted array of ints, longs or doubles, and are binary
+ *   searched in place. Other keys are prefixed with their length and searched by walking the node.
+ * - Lookups and range scans compare keys inside the pinned pages, so they allocate nothing per entry;
+ *   only changes decode a node.
+ * - Leaves are linked left to right for range scans.
+ * - Deletes remove entries without merging nodes; the space is reclaimed when the index is rebuilt.
+ * - A rebuild loads the tree bottom up from sorted keys (see Loader), filling each node to 90%.
+ * - Nodes are read and written through the shared BufferPool.
+ * The tree is not logged: the meta page is marked dirty before the first change after a flush, and an
+ * index found dirty on open must be rebuilt from its table.
+ */
+public class BPlusTree implements Closeable {
+    private static final int MAGIC = 0x43444249; // "CDBI"
+    private static final int VERSION = 2;
+    private static final int META_PAGE = 0;
+    private static final int NODE_HEADER_SIZE = 16;
+
+    /** Largest key the tree accepts, so every node split leaves both halves within a page. */
+    public static final int MAX_KEY_SIZE = 1024;
+
+    private static final int LOAD_FILL = Page.PAGE_SIZE * 9 / 10; // Loaded nodes leave room for later inserts
+
+    private final PageFile pageFile;
+    private final BufferPool bufferPool;
+    private int keyWidth; // Width of every key, or 0 if keys vary in length
+    private int rootPage;
+    private long entryCount;
+    private boolean clean;
+
+    /**
+     * A decoded node.
+     */
+    private class Node {
+        final int pageNo;
+        final boolean leaf;
+        int next = -1; // Leaves: the right sibling, or -1
+        final List<byte[]> keys = new ArrayList<>();
+        final LongList values = new LongList();   // Leaves: record ids
+        final LongList children = new LongList(); // Internal nodes: keys.size() + 1 child page numbers
+
+        Node(int pageNo, boolean leaf) {
+            this.pageNo = pageNo;
+            this.leaf = leaf;
+        }
+
+        int entrySize(int i) {
+            return (keyWidth > 0 ? keyWidth : 2 + keys.get(i).length) + (leaf ? 8 : 4);
+        }
+
+        int size() {
+            int size = NODE_HEADER_SIZE;
+            for (int i = 0; i < keys.size(); i++) {
+                size += entrySize(i);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Builds the tree from keys in ascending order, filling nodes left to right and adding each full node
+     * to its parent, instead of descending from the root for every key.
+     */
+    public final class Loader {
+        private final List<Node> open = new ArrayList<>(); // Node being filled per level, leaves first
+        private int[] sizes = new int[4];                   // Bytes used by each of those nodes
+        private byte[] lastKey;
+
+        private Loader() {
+            markDirty();
+            open.add(readNode(rootPage)); // The empty root leaf becomes the first leaf
+            sizes[0] = NODE_HEADER_SIZE;
+        }
+
+        /**
+         * Appends a key.
+         *
+         * @param key      The encoded key, greater than every key added before.
+         * @param recordId The record id to store.
+         * @throws IllegalArgumentException if the key is out of order or does not fit the tree.
+         */
+        public void add(byte[] key, long recordId) {
+            synchronized (BPlusTree.this) {
+                if (key.length > MAX_KEY_SIZE || (keyWidth > 0 && key.length != keyWidth)) {
+                    throw new IllegalArgumentException("Index key of " + key.length + " bytes does not fit the tree.");
+                }
+                if (lastKey != null && Arrays.compareUnsigned(key, lastKey) <= 0) {
+                    throw new IllegalArgumentException("Keys must be loaded in ascending order.");
+                }
+                lastKey = key;
+
+                Node leaf = open.get(0);
+                int entrySize = (keyWidth > 0 ? keyWidth : 2 + key.length) + 8;
+                if (sizes[0] + entrySize > LOAD_FILL && !leaf.keys.isEmpty()) {
+                    Node next = new Node(allocateNode(), true);
+                    leaf.next = next.pageNo;
+                    writeNode(leaf);
+                    open.set(0, next);
+                    sizes[0] = NODE_HEADER_SIZE;
+                    addChild(1, key, next.pageNo, leaf.pageNo);
+                    leaf = next;
+                }
+                leaf.keys.add(key);
+                leaf.values.add(recordId);
+                sizes[0] += entrySize;
+                entryCount++;
+            }
+        }
+
+        /**
+         * Writes the last node of every level and makes the top one the root.
+         */
+        public void finish() {
+            synchronized (BPlusTree.this) {
+                for (Node node : open) {
+                    writeNode(node);
+                }
+                rootPage = open.get(open.size() - 1).pageNo;
+            }
+        }
+
+        /**
+         * Adds a node to its parent level, starting a new parent when the current one is full.
+         */
+        private void addChild(int level, byte[] separator, int child, int leftSibling) {
+            if (level == open.size()) {
+                Node parent = new Node(allocateNode(), false);
+                parent.children.add(leftSibling);
+                open.add(parent);
+                if (level == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, level * 2);
+                }
+                sizes[level] = NODE_HEADER_SIZE;
+            }
+
+            Node parent = open.get(level);
+            int entrySize = (keyWidth > 0 ? keyWidth : 2 + separator.length) + 4;
+            if (sizes[level] + entrySize > LOAD_FILL && !parent.keys.isEmpty()) {
+                // The separator moves up; the child starts the next node of this level
+                writeNode(parent);
+                Node next = new Node(allocateNode(), false);
+                next.children.add(child);
+                open.set(level, next);
+                sizes[level] = NODE_HEADER_SIZE;
+                addChild(level + 1, separator, next.pageNo, parent.pageNo);
+                return;
+            }
+            parent.keys.add(separator);
+            parent.children.add(child);
+            sizes[level] += entrySize;
+        }
+    }
+
+    /**
+     * The separator and new right node produced by a split.
+     */
+    private record Split(byte[] key, int rightPage) {
+    }
+
+    private BPlusTree(File file, BufferPool bufferPool, int keyWidth) throws IOException {
+        this.pageFile = new PageFile(file);
+        this.bufferPool = bufferPool;
+        this.keyWidth = keyWidth;
+    }
+
+    /**
+     * Opens an index file, creating an empty tree if the file does not exist yet.
+     * A new tree, or one that was changed and not flushed before the process stopped, is not clean.
+     * A file of an older format or another key width is emptied, so it is rebuilt like a dirty tree.
+     *
+     * @param file       The index file (e.g., data/db.table.primary.idx).
+     * @param bufferPool The shared buffer pool.
+     * @param keyWidth   The width of every key, or 0 if keys vary in length.
+     * @return The opened tree.
+     * @throws IOException if the file cannot be read or is not an index file.
+     */
+    public static BPlusTree open(File file, BufferPool bufferPool, int keyWidth) throws IOException {
+        BPlusTree tree = new BPlusTree(file, bufferPool, keyWidth);
+        if (tree.pageFile.getPageCount() == 0) {
+            tree.clear();
+            return tree;
+        }
+
+        ByteBuffer meta = tree.pageFile.readPage(META_PAGE);
+        if (meta.getInt(0) != MAGIC) {
+            tree.pageFile.close();
+            throw new IOException("Not an index file: " + file);
+        }
+        if (meta.getInt(4) != VERSION || meta.getInt(12) != keyWidth) {
+            tree.clear();
+            return tree;
+        }
+        tree.rootPage = meta.getInt(16);
+        tree.entryCount = meta.getLong(24);
+        tree.clean = meta.get(20) == 1;
+        return tree;
+    }
+
+    /**
+     * Tells whether the tree on disk matches every change made to it, i.e. it was flushed after its last change.
+     *
+     * @return True if the tree can be trusted, false if it must be rebuilt.
+     */
+    public synchronized boolean isClean() {
+        return clean;
+    }
+
+    public synchronized long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Removes every entry, leaving an empty tree.
+     *
+     * @throws IOException if the file cannot be rewritten.
+     */
+    public synchronized void clear() throws IOException {
+        bufferPool.discardFile(pageFile);
+        pageFile.truncate();
+        pageFile.allocatePage(); // Meta page
+
+        Node root = new Node(pageFile.allocatePage(), true);
+        ByteBuffer data = ByteBuffer.allocate(Page.PAGE_SIZE);
+        encode(root, data);
+        pageFile.writePage(root.pageNo, data);
+
+        rootPage = root.pageNo;
+        entryCount = 0;
+        clean = false;
+        writeMeta();
+    }
+
+    /**
+     * Finds the record id stored under a key.
+     *
+     * @param key The encoded key.
+     * @return The record id, or -1 if the key is not in the tree.
+     */
+    public synchronized long search(byte[] key) {
+        int pageNo = findLeaf(key);
+        Page page = bufferPool.fetchPage(pageFile, pageNo);
+        try {
+            ByteBuffer data = page.getData();
+            int position = lowerBound(data, key);
+            if (position < count(data)) {
+                int offset = entryOffset(data, position);
+                int keyLength = keyLength(data, offset);
+                if (compare(data, offset, key) == 0) {
+                    return data.getLong(keyOffset(offset) + keyLength);
+                }
+            }
+            return -1;
+        } finally {
+            bufferPool.unpinPage(pageFile, pageNo, false);
+        }
+    }
+
+    /**
+     * Collects the record ids of the keys within a range, in key order.
+     *
+     * @param low           The lower bound, or null for no lower bound.
+     * @param lowInclusive  True if a key equal to the lower bound is included.
+     * @param high          The upper bound, or null for no upper bound.
+     * @param highInclusive True if a key equal to the upper bound is included.
+     * @return The record ids.
+     */
+    public synchronized LongList range(byte[] low, boolean lowInclusive, byte[] high, boolean highInclusive) {
+        LongList recordIds = new LongList();
+        int pageNo = findLeaf(low);
+        boolean first = true;
+
+        while (pageNo >= 0) {
+            Page page = bufferPool.fetchPage(pageFile, pageNo);
+            try {
+                ByteBuffer data = page.getData();
+                int count = count(data);
+                int position = first && low != null ? lowerBound(data, low) : 0;
+                int offset = entryOffset(data, position);
+                for (; position < count; position++, offset = nextEntry(data, offset, true)) {
+                    if (low != null && !lowInclusive && compare(data, offset, low) == 0) {
+                        continue;
+                    }
+                    if (high != null) {
+                        int comparison = compare(data, offset, high);
+                        if (comparison > 0 || (comparison == 0 && !highInclusive)) {
+                            return recordIds;
+                        }
+                    }
+                    recordIds.add(data.getLong(keyOffset(offset) + keyLength(data, offset)));
+                }
+                first = false;
+                pageNo = data.getInt(4);
+            } finally {
+                bufferPool.unpinPage(pageFile, page.getPageNo(), false);
+            }
+        }
+        return recordIds;
+    }
+
+    /**
+     * Starts loading an empty tree from sorted keys, e.g. when an index is rebuilt.
+     *
+     * @return The loader; call finish() once every key is added.
+     * @throws IllegalStateException if the tree is not empty.
+     */
+    public synchronized Loader load() {
+        if (entryCount > 0) {
+            throw new IllegalStateException("Only an empty tree can be loaded.");
+        }
+        return new Loader();
+    }
+
+    /**
+     * Adds a key unless it is already present.
+     *
+     * @param key      The encoded key.
+     * @param recordId The record id to store.
+     * @return True if the key was added, false if it already exists.
+     * @throws IllegalArgumentException if the key is longer than MAX_KEY_SIZE or not of the tree's key width.
+     */
+    public synchronized boolean insert(byte[] key, long recordId) {
+        if (key.length > MAX_KEY_SIZE) {
+            throw new IllegalArgumentException("Index key of " + key.length + " bytes exceeds the maximum of " + MAX_KEY_SIZE + ".");
+        }
+        if (keyWidth > 0 && key.length != keyWidth) {
+            throw new IllegalArgumentException("Index key of " + key.length + " bytes does not match the key width " + keyWidth + ".");
+        }
+        if (search(key) >= 0) {
+            return false;
+        }
+
+        markDirty();
+        Split split = insert(rootPage, key, recordId);
+        if (split != null) {
+            // The root split: grow the tree by one level
+            Node root = new Node(allocateNode(), false);
+            root.children.add(rootPage);
+            root.keys.add(split.key());
+            root.children.add(split.rightPage());
+            writeNode(root);
+            rootPage = root.pageNo;
+        }
+        entryCount++;
+        return true;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The encoded key.
+     * @return True if the key was removed, false if it was not present.
+     */
+    public synchronized boolean delete(byte[] key) {
+        Node leaf = readNode(findLeaf(key));
+        int position = lowerBound(leaf.keys, key);
+        if (position >= leaf.keys.size() || !Arrays.equals(leaf.keys.get(position), key)) {
+            return false;
+        }
+
+        markDirty();
+        leaf.keys.remove(position);
+        leaf.values.remove(position);
+        writeNode(leaf);
+        entryCount--;
+        return true;
+    }
+
+    /**
+     * Writes every changed node back, then marks the tree clean.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    public synchronized void flush() throws IOException {
+        if (clean) {
+            return;
+        }
+        bufferPool.flushFile(pageFile);
+        pageFile.sync();
+        clean = true;
+        writeMeta();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        bufferPool.discardFile(pageFile);
+        pageFile.close();
+    }
+
+    /**
+     * Closes the tree without writing it and deletes its file, e.g. when it no longer matches its table.
+     *
+     * @throws IOException if the file cannot be closed or deleted.
+     */
+    public synchronized void drop() throws IOException {
+        bufferPool.discardFile(pageFile);
+        pageFile.close();
+        Files.deleteIfExists(pageFile.getFile().toPath());
+    }
+
+    private Split insert(int pageNo, byte[] key, long recordId) {
+        Node node = readNode(pageNo);
+        if (node.leaf) {
+            int position = lowerBound(node.keys, key);
+            node.keys.add(position, key);
+            node.values.add(position, recordId);
+        } else {
+            int child = upperBound(node.keys, key);
+            Split split = insert((int) node.children.get(child), key, recordId);
+            if (split == null) {
+                return null;
+            }
+            node.keys.add(child, split.key());
+            node.children.add(child + 1, split.rightPage());
+        }
+
+        if (node.size() <= Page.PAGE_SIZE) {
+            writeNode(node);
+            return null;
+        }
+        return split(node);
+    }
+
+    /**
+     * Splits an overfull node near the middle of its bytes and writes both halves.
+     */
+    private Split split(Node node) {
+        int half = node.size() / 2;
+        int middle = 0;
+        for (int size = NODE_HEADER_SIZE; middle < node.keys.size() - 1 && size < half; middle++) {
+            size += node.entrySize(middle);
+        }
+        middle = Math.max(1, middle);
+
+        Node right = new Node(allocateNode(), node.leaf);
+        byte[] separator;
+        if (node.leaf) {
+            // Leaves copy the first key of the right half up
+            right.keys.addAll(node.keys.subList(middle, node.keys.size()));
+            right.values.addAll(node.values, middle, node.values.size());
+            node.keys.subList(middle, node.keys.size()).clear();
+            node.values.truncate(middle);
+            right.next = node.next;
+            node.next = right.pageNo;
+            separator = right.keys.get(0);
+        } else {
+            // Internal nodes move the middle key up
+            separator = node.keys.get(middle);
+            right.keys.addAll(node.keys.subList(middle + 1, node.keys.size()));
+            right.children.addAll(node.children, middle + 1, node.children.size());
+            node.keys.subList(middle, node.keys.size()).clear();
+            node.children.truncate(middle + 1);
+        }
+        writeNode(node);
+        writeNode(right);
+        return new Split(separator, right.pageNo);
+    }
+
+    /**
+     * Descends to the leaf that holds a key, or to the leftmost leaf for a null key.
+     *
+     * @return The page number of the leaf.
+     */
+    private int findLeaf(byte[] key) {
+        int pageNo = rootPage;
+        while (true) {
+            Page page = bufferPool.fetchPage(pageFile, pageNo);
+            try {
+                ByteBuffer data = page.getData();
+                if (data.get(0) == 1) {
+                    return pageNo;
+                }
+                int child = key == null ? 0 : upperBound(data, key);
+                pageNo = child == 0 ? data.getInt(4) : data.getInt(nextEntry(data, entryOffset(data, child - 1), false) - 4);
+            } finally {
+                bufferPool.unpinPage(pageFile, page.getPageNo(), false);
+            }
+        }
+    }
+
+    private static int count(ByteBuffer data) {
+        return data.getShort(2) & 0xFFFF;
+    }
+
+    private int keyOffset(int entryOffset) {
+        return keyWidth > 0 ? entryOffset : entryOffset + 2;
+    }
+
+    private int keyLength(ByteBuffer data, int entryOffset) {
+        return keyWidth > 0 ? keyWidth : data.getShort(entryOffset) & 0xFFFF;
+    }
+
+    /**
+     * Returns the offset of the entry that follows the one at the given offset.
+     */
+    private int nextEntry(ByteBuffer data, int entryOffset, boolean leaf) {
+        return keyOffset(entryOffset) + keyLength(data, entryOffset) + (leaf ? 8 : 4);
+    }
+
+    /**
+     * Returns the offset of an entry within a node: computed for fixed-width keys, walked to otherwise.
+     */
+    private int entryOffset(ByteBuffer data, int position) {
+        boolean leaf = data.get(0) == 1;
+        if (keyWidth > 0) {
+            return NODE_HEADER_SIZE + position * (keyWidth + (leaf ? 8 : 4));
+        }
+        int offset = NODE_HEADER_SIZE;
+        for (int i = 0; i < position; i++) {
+            offset = nextEntry(data, offset, leaf);
+        }
+        return offset;
+    }
+
+    /**
+     * Compares the key of the entry at the given offset with a key, in place.
+     */
+    private int compare(ByteBuffer data, int entryOffset, byte[] key) {
+        int from = keyOffset(entryOffset);
+        return Arrays.compareUnsigned(data.array(), from, from + keyLength(data, entryOffset), key, 0, key.length);
+    }
+
+    /**
+     * Returns the position of the first entry of a node whose key is not less than the given key.
+     */
+    private int lowerBound(ByteBuffer data, byte[] key) {
+        return bound(data, key, false);
+    }
+
+    /**
+     * Returns the position of the first entry of a node whose key is greater than the given key.
+     */
+    private int upperBound(ByteBuffer data, byte[] key) {
+        return bound(data, key, true);
+    }
+
+    private int bound(ByteBuffer data, byte[] key, boolean upper) {
+        int count = count(data);
+        if (keyWidth > 0) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compare(data, entryOffset(data, middle), key);
+                if (comparison < 0 || (upper && comparison == 0)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        boolean leaf = data.get(0) == 1;
+        int offset = NODE_HEADER_SIZE;
+        for (int position = 0; position < count; position++, offset = nextEntry(data, offset, leaf)) {
+            int comparison = compare(data, offset, key);
+            if (comparison > 0 || (!upper && comparison == 0)) {
+                return position;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the position of the first key that is not less than the given key.
+     */
+    private static int lowerBound(List<byte[]> keys, byte[] key) {
+        int low = 0;
+        int high = keys.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Arrays.compareUnsigned(keys.get(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the position of the first key that is greater than the given key.
+     */
+    private static int upperBound(List<byte[]> keys, byte[] key) {
+        int low = 0;
+        int high = keys.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Arrays.compareUnsigned(keys.get(middle), key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int allocateNode() {
+        Page page = bufferPool.newPage(pageFile);
+        bufferPool.unpinPage(pageFile, page.getPageNo(), true);
+        return page.getPageNo();
+    }
+
+    private Node readNode(int pageNo) {
+        Page page = bufferPool.fetchPage(pageFile, pageNo);
+        try {
+            ByteBuffer data = page.getData();
+            Node node = new Node(pageNo, data.get(0) == 1);
+            int count = data.getShort(2) & 0xFFFF;
+            int link = data.getInt(4);
+            data.position(NODE_HEADER_SIZE);
+            if (node.leaf) {
+                node.next = link;
+            } else {
+                node.children.add(link);
+            }
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[keyWidth > 0 ? keyWidth : data.getShort() & 0xFFFF];
+                data.get(key);
+                node.keys.add(key);
+                if (node.leaf) {
+                    node.values.add(data.getLong());
+                } else {
+                    node.children.add(data.getInt());
+                }
+            }
+            return node;
+        } finally {
+            bufferPool.unpinPage(pageFile, pageNo, false);
+        }
+    }
+
+    private void writeNode(Node node) {
+        Page page = bufferPool.fetchPage(pageFile, node.pageNo);
+        try {
+            encode(node, page.getData());
+        } finally {
+            bufferPool.unpinPage(pageFile, node.pageNo, true);
+        }
+    }
+
+    private void encode(Node node, ByteBuffer data) {
+        data.put(0, (byte) (node.leaf ? 1 : 0));
+        data.putShort(2, (short) node.keys.size());
+        data.putInt(4, node.leaf ? node.next : (int) node.children.get(0));
+        data.putLong(8, 0); // Page LSN
+        data.position(NODE_HEADER_SIZE);
+        for (int i = 0; i < node.keys.size(); i++) {
+            byte[] key = node.keys.get(i);
+            if (keyWidth == 0) {
+                data.putShort((short) key.length);
+            }
+            data.put(key);
+            if (node.leaf) {
+                data.putLong(node.values.get(i));
+            } else {
+                data.putInt((int) node.children.get(i + 1));
+            }
+        }
+    }
+
+    /**
+     * Records a change in the meta page before any changed node can reach disk.
+     */
+    private void markDirty() {
+        if (!clean) {
+            return;
+        }
+        clean = false;
+        try {
+            writeMeta();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing index " + pageFile.getFile(), e);
+        }
+    }
+
+    private void writeMeta() throws IOException {
+        ByteBuffer meta = ByteBuffer.allocate(Page.PAGE_SIZE);
+        meta.putInt(0, MAGIC);
+        meta.putInt(4, VERSION);
+        meta.putInt(12, keyWidth);
+        meta.putInt(16, rootPage);
+        meta.put(20, (byte) (clean ? 1 : 0));
+        meta.putLong(24, entryCount);
+        pageFile.writePage(META_PAGE, meta);
+        pageFile.sync();
+    }
+}
@@ -0,0 +1,174 @@
+package storage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * An in-memory bitmap index for columns with few distinct values, filled from its table when first used.
+ * Each distinct key maps to the set of its record ids (see RecordBitmap), so equality reads one set, and
+ * IN, AND and OR over indexed values are unions and intersections of sets instead of row-by-row checks.
+ * Keys are kept in encoded order, so a range of values is the union of their sets.
+ */
+class BitmapIndex implements RecordIndex {
+    private final TableSchema schema;
+    private final int[] ordinals;
+    private final NavigableMap<byte[], RecordBitmap> bitmaps = new TreeMap<>(Arrays::compareUnsigned); // Key -> Rows
+    private long size;
+    private boolean filled;
+
+    /**
+     * Creates an empty bitmap index; it must be filled from its table before use.
+     *
+     * @param schema   The table schema.
+     * @param ordinals The key columns, in key order.
+     */
+    BitmapIndex(TableSchema schema, int[] ordinals) {
+        this.schema = schema;
+        this.ordinals = ordinals;
+    }
+
+    @Override
+    public void validate(Row row) {
+        // Any row can be added
+    }
+
+    @Override
+    public synchronized boolean add(Row row, long recordId) {
+        byte[] key = IndexKey.of(row, ordinals);
+        if (key == null) {
+            return false;
+        }
+        RecordBitmap bitmap = bitmaps.computeIfAbsent(key, k -> new RecordBitmap());
+        if (!bitmap.contains(recordId)) {
+            bitmap.add(recordId);
+            size++;
+        }
+        return true;
+    }
+
+    /**
+     * Collects the bitmaps of a run of rows; runs hold distinct rows, so they merge with OR.
+     */
+    private final class BitmapBuilder implements Builder {
+        final Map<byte[], RecordBitmap> bitmaps = new TreeMap<>(Arrays::compareUnsigned);
+        long count;
+
+        @Override
+        public boolean add(Row row, long recordId) {
+            byte[] key = IndexKey.of(row, ordinals);
+            if (key == null) {
+                return false;
+            }
+            bitmaps.computeIfAbsent(key, k -> new RecordBitmap()).add(recordId);
+            count++;
+            return true;
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    @Override
+    public Builder newBuilder() {
+        return new BitmapBuilder();
+    }
+
+    @Override
+    public synchronized long load(List<Builder> builders) {
+        for (Builder builder : builders) {
+            BitmapBuilder run = (BitmapBuilder) builder;
+            run.bitmaps.forEach((key, bitmap) -> bitmaps.merge(key, bitmap, RecordBitmap::or));
+            size += run.count;
+        }
+        return 0;
+    }
+
+    @Override
+    public synchronized void remove(Row row, long recordId) {
+        byte[] key = IndexKey.of(row, ordinals);
+        RecordBitmap bitmap = key == null ? null : bitmaps.get(key);
+        if (bitmap == null || !bitmap.contains(recordId)) {
+            return;
+        }
+        bitmap.remove(recordId);
+        size--;
+        if (bitmap.isEmpty()) {
+            bitmaps.remove(key);
+        }
+    }
+
+    @Override
+    public LongList findEqual(String... values) {
+        return find(values).toList();
+    }
+
+    @Override
+    public synchronized LongList findRange(String low, boolean lowInclusive, String high, boolean highInclusive) {
+        IndexKey.Range range = IndexKey.range(schema, ordinals, low, lowInclusive, high, highInclusive);
+        return range == null ? new LongList() : union(range.low(), range.high()).toList();
+    }
+
+    /**
+     * Returns the rows whose leading key columns equal the given values.
+     *
+     * @param values The unquoted values of the first key columns.
+     * @return A new set of record ids, which the caller may combine with others.
+     * @throws NumberFormatException if a value does not parse as its column type.
+     */
+    synchronized RecordBitmap find(String... values) {
+        byte[] prefix = IndexKey.of(schema, ordinals, values);
+        return union(prefix, IndexKey.successor(prefix));
+    }
+
+    @Override
+    public synchronized boolean isClean() {
+        return filled;
+    }
+
+    @Override
+    public synchronized void clear() {
+        bitmaps.clear();
+        size = 0;
+        filled = false;
+    }
+
+    /**
+     * Nothing is stored; marks the index filled.
+     */
+    @Override
+    public synchronized void flush() {
+        filled = true;
+    }
+
+    @Override
+    public synchronized void drop() {
+        clear();
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Unites the sets of the keys in [low, high); a null bound is open.
+     */
+    private RecordBitmap union(byte[] low, byte[] high) {
+        NavigableMap<byte[], RecordBitmap> range = bitmaps;
+        if (low != null) {
+            range = range.tailMap(low, true);
+        }
+        if (high != null) {
+            range = range.headMap(high, false);
+        }
+        RecordBitmap union = new RecordBitmap();
+        for (RecordBitmap bitmap : range.values()) {
+            union = union.or(bitmap);
+        }
+        return union;
+    }
+}
@@ -0,0 +1,303 @@
+package storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of pages shared by all page files.
+ * - Pages are pinned while in use and cannot be evicted until unpinned.
+ * - Eviction uses the clock (second-chance) algorithm.
+ * - Only dirty pages are written back to disk, on eviction or on an explicit flush.
+ * - With a write-ahead log, the log is made durable up to a page's LSN before the page is written. The log
+ *   is forced without holding the pool's lock, so page access never waits behind a log sync.
+ */
+public class BufferPool {
+    public static final int DEFAULT_CAPACITY = 1024; // 4 MB of 4 KB pages
+
+    private final Frame[] frames;
+    private final WriteAheadLog log;
+    private final Map<PageId, Integer> pageTable = new HashMap<>(); // Page -> Frame index
+    private int clockHand = 0;
+    private long unloggedLsn = -1; // Highest LSN that kept the last clock sweep from evicting a dirty page
+
+    /**
+     * Identifies a page by its file and page number.
+     */
+    private record PageId(PageFile file, int pageNo) {
+    }
+
+    /**
+     * A buffer slot holding one cached page.
+     */
+    private static class Frame {
+        PageId pageId;
+        Page page;
+        int pinCount;
+        boolean dirty;
+        boolean referenced;
+    }
+
+    /**
+     * Creates a buffer pool with the default capacity.
+     */
+    public BufferPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a buffer pool holding at most the given number of pages.
+     *
+     * @param capacity The number of page frames.
+     */
+    public BufferPool(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * Creates a buffer pool whose page writes follow the write-ahead rule.
+     *
+     * @param capacity The number of page frames.
+     * @param log      The log that must reach disk before the pages it describes, or null.
+     */
+    public BufferPool(int capacity, WriteAheadLog log) {
+        this.log = log;
+        this.frames = new Frame[capacity];
+        for (int i = 0; i < capacity; i++) {
+            frames[i] = new Frame();
+        }
+    }
+
+    /**
+     * Fetches and pins a page, reading it from disk on a miss.
+     *
+     * @param file   The page file.
+     * @param pageNo The page number.
+     * @return The pinned page.
+     */
+    public Page fetchPage(PageFile file, int pageNo) {
+        PageId pageId = new PageId(file, pageNo);
+        while (true) {
+            long lsn;
+            synchronized (this) {
+                Integer index = pageTable.get(pageId);
+                if (index != null) {
+                    Frame frame = frames[index];
+                    frame.pinCount++;
+                    frame.referenced = true;
+                    return frame.page;
+                }
+
+                Frame frame = claimFrame(pageId);
+                if (frame != null) {
+                    try {
+                        frame.page = new Page(pageNo, file.readPage(pageNo));
+                        return frame.page;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Error reading page " + pageNo + " of " + file.getFile(), e);
+                    }
+                }
+                lsn = unloggedLsn;
+            }
+            forceLog(lsn); // Every unpinned page was dirty and not yet logged; retry once the log covers them
+        }
+    }
+
+    /**
+     * Allocates, initializes and pins a new empty page at the end of a file.
+     *
+     * @param file The page file.
+     * @return The pinned new page, already marked dirty.
+     */
+    public Page newPage(PageFile file) {
+        int pageNo = file.allocatePage();
+        PageId pageId = new PageId(file, pageNo);
+        while (true) {
+            long lsn;
+            synchronized (this) {
+                Frame frame = claimFrame(pageId);
+                if (frame != null) {
+                    frame.page = Page.empty(pageNo);
+                    frame.dirty = true;
+                    return frame.page;
+                }
+                lsn = unloggedLsn;
+            }
+            forceLog(lsn);
+        }
+    }
+
+    /**
+     * Returns a private copy of a page for a reader that bypasses the pool, e.g. a memory-mapped scan:
+     * the cached page if it has changes not yet written to disk, otherwise the page as mapped.
+     * Pages are written back under the pool's lock, so the copy never sees a page half-written.
+     *
+     * @param file   The page file.
+     * @param pageNo The page number.
+     * @param mapped The page's bytes in a mapping of the file, or null if the page lies past the mapping.
+     * @return A copy of the page; an empty page if it is neither cached dirty nor mapped.
+     */
+    public synchronized Page copyPage(PageFile file, int pageNo, ByteBuffer mapped) {
+        Integer index = pageTable.get(new PageId(file, pageNo));
+        ByteBuffer source;
+        if (index != null && frames[index].dirty) {
+            source = frames[index].page.getData();
+        } else if (mapped != null) {
+            source = mapped.duplicate();
+        } else {
+            return Page.empty(pageNo); // Allocated but never written
+        }
+        ByteBuffer copy = ByteBuffer.allocate(Page.PAGE_SIZE);
+        copy.put(source);
+        return new Page(pageNo, copy.clear());
+    }
+
+    /**
+     * Releases a pin on a page.
+     *
+     * @param file   The page file.
+     * @param pageNo The page number.
+     * @param dirty  True if the caller modified the page.
+     */
+    public synchronized void unpinPage(PageFile file, int pageNo, boolean dirty) {
+        Integer index = pageTable.get(new PageId(file, pageNo));
+        if (index == null) return;
+
+        Frame frame = frames[index];
+        if (frame.pinCount > 0) frame.pinCount--;
+        frame.dirty |= dirty;
+    }
+
+    /**
+     * Writes a single page back to disk if it is dirty.
+     *
+     * @param file   The page file.
+     * @param pageNo The page number.
+     */
+    public void flushPage(PageFile file, int pageNo) {
+        long lsn = -1;
+        do {
+            forceLog(lsn);
+            synchronized (this) {
+                Integer index = pageTable.get(new PageId(file, pageNo));
+                lsn = index == null ? -1 : writeBack(frames[index]);
+            }
+        } while (lsn >= 0);
+    }
+
+    /**
+     * Writes all dirty pages of a file back to disk.
+     *
+     * @param file The page file.
+     */
+    public void flushFile(PageFile file) {
+        long lsn = -1;
+        do {
+            forceLog(lsn); // Once for all pages the log did not cover yet, outside the pool's lock
+            synchronized (this) {
+                lsn = -1;
+                for (Frame frame : frames) {
+                    if (frame.pageId != null && frame.pageId.file() == file) {
+                        lsn = Math.max(lsn, writeBack(frame));
+                    }
+                }
+            }
+        } while (lsn >= 0);
+    }
+
+    /**
+     * Drops every cached page of a file without writing it, e.g. before the file is rewritten.
+     *
+     * @param file The page file.
+     */
+    public synchronized void discardFile(PageFile file) {
+        for (Frame frame : frames) {
+            if (frame.pageId != null && frame.pageId.file() == file) {
+                pageTable.remove(frame.pageId);
+                frame.pageId = null;
+                frame.page = null;
+                frame.pinCount = 0;
+                frame.dirty = false;
+                frame.referenced = false;
+            }
+        }
+    }
+
+    /**
+     * Finds a frame for a page using the clock algorithm, evicting its previous occupant if needed.
+     * The returned frame is pinned and registered for the given page. Dirty pages whose changes the log
+     * does not cover yet are passed over; if only such pages could be evicted, returns null and leaves
+     * the LSN the log must reach in {@link #unloggedLsn}.
+     */
+    private Frame claimFrame(PageId pageId) {
+        unloggedLsn = -1;
+        for (int scanned = 0; scanned < frames.length * 2; scanned++) {
+            Frame frame = frames[clockHand];
+            int index = clockHand;
+            clockHand = (clockHand + 1) % frames.length;
+
+            if (frame.pinCount > 0) continue;
+            if (frame.referenced) {
+                frame.referenced = false; // Second chance
+                continue;
+            }
+
+            if (frame.pageId != null) {
+                long lsn = writeBack(frame);
+                if (lsn >= 0) {
+                    unloggedLsn = Math.max(unloggedLsn, lsn);
+                    continue;
+                }
+                pageTable.remove(frame.pageId);
+            }
+
+            frame.pageId = pageId;
+            frame.pinCount = 1;
+            frame.dirty = false;
+            frame.referenced = true;
+            pageTable.put(pageId, index);
+            return frame;
+        }
+        if (unloggedLsn >= 0) {
+            return null;
+        }
+        throw new IllegalStateException("Buffer pool exhausted: all " + frames.length + " pages are pinned.");
+    }
+
+    /**
+     * Writes a dirty page back to disk if the log already covers its changes.
+     *
+     * @return -1 if the page is clean now, or the LSN the log must reach before the page can be written.
+     */
+    private long writeBack(Frame frame) {
+        if (!frame.dirty) return -1;
+        long pageLsn = frame.page.getPageLsn();
+        if (log != null && !log.isFlushed(pageLsn)) {
+            return pageLsn;
+        }
+        try {
+            frame.pageId.file().writePage(frame.pageId.pageNo(), frame.page.getData());
+            frame.dirty = false;
+            return -1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing page " + frame.pageId.pageNo() + " of " + frame.pageId.file().getFile(), e);
+        }
+    }
+
+    /**
+     * Makes the log durable up to an LSN. Called without the pool's lock, so a log sync does not stall
+     * other threads' page access.
+     *
+     * @param lsn The LSN, or -1 if nothing needs to be forced.
+     */
+    private void forceLog(long lsn) {
+        if (log == null || lsn < 0) return;
+        try {
+            log.flush(lsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error flushing the log", e);
+        }
+    }
+}
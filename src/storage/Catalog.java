@@ -0,0 +1,200 @@
+package storage;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory system catalog of databases, tables and table schemas.
+ * - Loaded once from 'data/database.json' when storage starts up.
+ * - Lookups are served from concurrent maps without touching the file.
+ * - The file is rewritten (atomically and durably) only when DDL changes the catalog.
+ */
+public class Catalog {
+    private static final Pattern DATABASE_ENTRY = Pattern.compile("\"([^\"]*)\"\\s*:\\s*\\[([^\\]]*)\\]");
+
+    private final File catalogFile;
+    private final Map<String, List<String>> databases = new ConcurrentHashMap<>(); // Database -> Tables
+    private final Map<String, TableSchema> schemas = new ConcurrentHashMap<>(); // db.table -> Parsed schema
+
+    /**
+     * Creates the catalog and loads it from disk.
+     *
+     * @param catalogFile The JSON file holding the database structure.
+     */
+    public Catalog(File catalogFile) {
+        this.catalogFile = catalogFile;
+        load();
+    }
+
+    /**
+     * Checks whether a database exists.
+     *
+     * @param dbName The database name.
+     * @return True if the database exists.
+     */
+    public boolean databaseExists(String dbName) {
+        return databases.containsKey(dbName);
+    }
+
+    /**
+     * Checks whether a table exists in a database.
+     *
+     * @param dbName    The database name.
+     * @param tableName The table name (without database prefix).
+     * @return True if the table exists.
+     */
+    public boolean tableExists(String dbName, String tableName) {
+        List<String> tables = databases.get(dbName);
+        return tables != null && tables.contains(tableName);
+    }
+
+    /**
+     * Returns the names of all databases, sorted.
+     *
+     * @return Database names.
+     */
+    public List<String> getDatabaseNames() {
+        List<String> names = new ArrayList<>(databases.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Returns the tables of a database in creation order.
+     *
+     * @param dbName The database name.
+     * @return Table names, or an empty list if the database does not exist.
+     */
+    public List<String> getTables(String dbName) {
+        List<String> tables = databases.get(dbName);
+        return tables == null ? new ArrayList<>() : new ArrayList<>(tables);
+    }
+
+    /**
+     * Adds a database and persists the catalog.
+     *
+     * @param dbName The database name.
+     * @return True if the database was added, false if it already exists.
+     */
+    public synchronized boolean addDatabase(String dbName) {
+        if (databases.putIfAbsent(dbName, new CopyOnWriteArrayList<>()) != null) {
+            return false;
+        }
+        save();
+        return true;
+    }
+
+    /**
+     * Registers a table (creating its database entry if needed) and persists the catalog.
+     *
+     * @param dbName    The database name.
+     * @param tableName The table name (without database prefix).
+     * @return True if the table was added, false if it was already registered.
+     */
+    public synchronized boolean addTable(String dbName, String tableName) {
+        List<String> tables = databases.computeIfAbsent(dbName, k -> new CopyOnWriteArrayList<>());
+        if (tables.contains(tableName)) {
+            return false;
+        }
+        tables.add(tableName);
+        save();
+        return true;
+    }
+
+    /**
+     * Returns the cached schema of a table.
+     *
+     * @param fullTableName The table name including database prefix.
+     * @return The parsed schema, or null if it has not been cached.
+     */
+    public TableSchema getSchema(String fullTableName) {
+        return schemas.get(fullTableName);
+    }
+
+    /**
+     * Caches the parsed schema of a table.
+     *
+     * @param fullTableName The table name including database prefix.
+     * @param schema        The parsed schema.
+     */
+    public void putSchema(String fullTableName, TableSchema schema) {
+        schemas.put(fullTableName, schema);
+    }
+
+    /**
+     * Loads the database structure from the catalog file.
+     */
+    private void load() {
+        if (!catalogFile.exists() || catalogFile.length() == 0) {
+            System.out.println("No database found. Initializing a new database.");
+            return;
+        }
+
+        try {
+            String json = Files.readString(catalogFile.toPath());
+            Matcher matcher = DATABASE_ENTRY.matcher(json);
+            while (matcher.find()) {
+                List<String> tables = new CopyOnWriteArrayList<>();
+                for (String tableName : matcher.group(2).split(",")) {
+                    tableName = tableName.replace("\"", "").trim();
+                    if (!tableName.isEmpty()) {
+                        tables.add(tableName);
+                    }
+                }
+                databases.put(matcher.group(1).trim(), tables);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading database: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the database structure to a temporary file, syncs it, and atomically replaces the catalog file.
+     */
+    private void save() {
+        File parent = catalogFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        File tempFile = new File(catalogFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out))) {
+            writer.write("{\n");
+            List<String> names = getDatabaseNames();
+
+            for (int d = 0; d < names.size(); d++) {
+                writer.write("  \"" + names.get(d) + "\": [");
+
+                List<String> tables = databases.get(names.get(d));
+                for (int i = 0; i < tables.size(); i++) {
+                    writer.write("\"" + tables.get(i) + "\"");
+                    if (i < tables.size() - 1) writer.write(", ");
+                }
+
+                writer.write("]");
+                if (d < names.size() - 1) writer.write(",");
+                writer.write("\n");
+            }
+            writer.write("}");
+            writer.flush();
+            out.getFD().sync();
+        } catch (IOException e) {
+            System.err.println("Error saving database: " + e.getMessage());
+            return;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), catalogFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error saving database: " + e.getMessage());
+        }
+    }
+}
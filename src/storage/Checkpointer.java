@@ -0,0 +1,76 @@
+package storage;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes changed table pages back in the background so commits only have to sync the log.
+ * - Checks every second and checkpoints once LOG_THRESHOLD bytes were logged since the last checkpoint,
+ *   or MAX_INTERVAL_MS has passed with changes pending. A final checkpoint runs at shutdown.
+ * - Checkpoints are fuzzy: transactions keep running while pages are written. Everything logged before
+ *   the checkpoint started is on disk afterwards, so recovery starts there (or at the first record of a
+ *   transaction still running) and the log before that point is discarded.
+ */
+class Checkpointer {
+    private static final long LOG_THRESHOLD = 16L * 1024 * 1024;
+    private static final long MAX_INTERVAL_MS = 30_000;
+
+    private final WriteAheadLog log;
+    private final StorageManager storageManager;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpointer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long lastCheckpointTime = System.currentTimeMillis();
+    private long lastCheckpointEnd; // End of the log right after the last checkpoint
+
+    Checkpointer(WriteAheadLog log, StorageManager storageManager) {
+        this.log = log;
+        this.storageManager = storageManager;
+        this.lastCheckpointEnd = log.getEndLsn();
+    }
+
+    /**
+     * Starts the background checks and registers the shutdown checkpoint.
+     */
+    void start() {
+        executor.scheduleWithFixedDelay(this::checkpointIfDue, 1, 1, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::checkpointQuietly, "checkpointer-shutdown"));
+    }
+
+    /**
+     * Writes all changed pages back, logs a checkpoint record and discards the log before its start point.
+     *
+     * @throws IOException if pages or the log cannot be written.
+     */
+    synchronized void checkpoint() throws IOException {
+        long beginLsn = log.getEndLsn();
+        storageManager.flushTables();
+
+        long startLsn = Math.min(beginLsn, storageManager.getOldestActiveLsn());
+        LogRecord checkpoint = log.append(LogRecord.checkpoint(startLsn));
+        log.flush(checkpoint.lsn());
+        log.setCheckpoint(checkpoint.lsn());
+        log.truncateBefore(startLsn);
+        lastCheckpointTime = System.currentTimeMillis();
+        lastCheckpointEnd = log.getEndLsn();
+    }
+
+    private synchronized void checkpointIfDue() {
+        long logged = log.getEndLsn() - lastCheckpointEnd;
+        if (logged >= LOG_THRESHOLD || (logged > 0 && System.currentTimeMillis() - lastCheckpointTime >= MAX_INTERVAL_MS)) {
+            checkpointQuietly();
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Warning: Checkpoint failed: " + e.getMessage());
+        }
+    }
+}
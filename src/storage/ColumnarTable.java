@@ -0,0 +1,333 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores a table column by column for analytic scans.
+ * - Each column lives in its own segment file: INT as 4-byte ints, FLOAT as 8-byte doubles,
+ *   STRING as length-prefixed UTF-8.
+ * - A small metadata file holds the schema, the row count and the valid length of every segment,
+ *   and is rewritten after each append so a partially written append is ignored on reopen.
+ * - Columns are loaded into primitive arrays only when a query first references them.
+ */
+public class ColumnarTable implements Closeable {
+    private static final int MAGIC = 0x43444243; // "CDBC"
+    private static final int VERSION = 1;
+    private static final String META_FILE = "meta";
+
+    private final TableSchema schema;
+    private final FileChannel metaChannel;
+    private final FileChannel[] segments;
+    private final long[] segmentLengths;
+    private final Object[] columns; // Ordinal -> int[], double[] or String[] once loaded
+    private int rowCount;
+
+    private ColumnarTable(File directory, TableSchema schema) throws IOException {
+        this.schema = schema;
+        this.metaChannel = FileChannel.open(new File(directory, META_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.segments = new FileChannel[schema.getColumnCount()];
+        this.segmentLengths = new long[schema.getColumnCount()];
+        this.columns = new Object[schema.getColumnCount()];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = FileChannel.open(new File(directory, "c" + i + ".bin").toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+    }
+
+    /**
+     * Creates an empty columnar table, replacing any existing one in the directory.
+     *
+     * @param directory The table directory (e.g., data/db.table.col).
+     * @param schema    The table schema.
+     * @return The created table.
+     * @throws IOException if the files cannot be written.
+     */
+    public static ColumnarTable create(File directory, TableSchema schema) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        ColumnarTable table = new ColumnarTable(directory, schema);
+        for (FileChannel segment : table.segments) {
+            segment.truncate(0);
+        }
+        table.writeMeta();
+        return table;
+    }
+
+    /**
+     * Opens an existing columnar table, discarding any segment bytes past the last complete append.
+     *
+     * @param directory The table directory.
+     * @return The opened table.
+     * @throws IOException if the metadata cannot be read.
+     */
+    public static ColumnarTable open(File directory) throws IOException {
+        ByteBuffer meta;
+        try (FileChannel channel = FileChannel.open(new File(directory, META_FILE).toPath(), StandardOpenOption.READ)) {
+            meta = ByteBuffer.allocate((int) channel.size());
+            while (meta.hasRemaining() && channel.read(meta) >= 0) { }
+            meta.flip();
+        }
+
+        if (meta.remaining() < 16 || meta.getInt() != MAGIC) {
+            throw new IOException("Not a columnar table: " + directory);
+        }
+        if (meta.getInt() != VERSION) {
+            throw new IOException("Unsupported columnar table version: " + directory);
+        }
+        int rowCount = meta.getInt();
+        long[] lengths = new long[meta.getInt()];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = meta.getLong();
+        }
+        byte[] schemaBytes = new byte[meta.getInt()];
+        meta.get(schemaBytes);
+
+        ColumnarTable table = new ColumnarTable(directory, TableSchema.parse(new String(schemaBytes, StandardCharsets.UTF_8)));
+        table.rowCount = rowCount;
+        for (int i = 0; i < lengths.length; i++) {
+            table.segmentLengths[i] = lengths[i];
+            if (table.segments[i].size() > lengths[i]) {
+                table.segments[i].truncate(lengths[i]);
+            }
+        }
+        return table;
+    }
+
+    public TableSchema getSchema() {
+        return schema;
+    }
+
+    public synchronized int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Appends a record, writing one value to the end of each column segment.
+     *
+     * @param record The record text (comma-separated values).
+     * @throws IllegalArgumentException if the values do not match the schema.
+     * @throws IOException if a segment cannot be written.
+     */
+    public synchronized void append(String record) throws IOException {
+        String[] values = Row.split(record);
+        String error = schema.validate(values);
+        if (error != null) {
+            throw new IllegalArgumentException(error);
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            ByteBuffer encoded = encode(i, values[i]);
+            segmentLengths[i] += writeFully(segments[i], encoded, segmentLengths[i]);
+            appendToLoadedColumn(i, values[i]);
+        }
+        rowCount++;
+        writeMeta();
+    }
+
+    /**
+     * Replaces the contents of the table, writing each segment in one pass.
+     *
+     * @param records The records to store.
+     * @throws IllegalArgumentException if a record does not match the schema.
+     * @throws IOException if a segment cannot be written.
+     */
+    public synchronized void rewrite(List<String> records) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[segments.length];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.allocate(Math.max(64, records.size() * 8));
+        }
+
+        for (String record : records) {
+            String[] values = Row.split(record);
+            String error = schema.validate(values);
+            if (error != null) {
+                throw new IllegalArgumentException(error);
+            }
+            for (int i = 0; i < values.length; i++) {
+                ByteBuffer encoded = encode(i, values[i]);
+                if (buffers[i].remaining() < encoded.remaining()) {
+                    buffers[i] = grow(buffers[i], encoded.remaining());
+                }
+                buffers[i].put(encoded);
+            }
+        }
+
+        for (int i = 0; i < segments.length; i++) {
+            segments[i].truncate(0);
+            buffers[i].flip();
+            segmentLengths[i] = writeFully(segments[i], buffers[i], 0);
+            columns[i] = null;
+        }
+        rowCount = records.size();
+        writeMeta();
+    }
+
+    /**
+     * Returns the values of an INT column, loading the segment on first use.
+     * The array may be longer than the row count.
+     *
+     * @param ordinal The column ordinal.
+     * @return The column values.
+     */
+    public synchronized int[] getIntColumn(int ordinal) throws IOException {
+        return (int[]) loadColumn(ordinal);
+    }
+
+    /**
+     * Returns the values of a FLOAT column, loading the segment on first use.
+     * The array may be longer than the row count.
+     *
+     * @param ordinal The column ordinal.
+     * @return The column values.
+     */
+    public synchronized double[] getDoubleColumn(int ordinal) throws IOException {
+        return (double[]) loadColumn(ordinal);
+    }
+
+    /**
+     * Returns the values of a STRING column, loading the segment on first use.
+     * The array may be longer than the row count.
+     *
+     * @param ordinal The column ordinal.
+     * @return The column values.
+     */
+    public synchronized String[] getStringColumn(int ordinal) throws IOException {
+        return (String[]) loadColumn(ordinal);
+    }
+
+    /**
+     * Rebuilds the text of a record from its column values (strings quoted, values comma-separated).
+     *
+     * @param row The row number.
+     * @return The record text.
+     */
+    public synchronized String getRecord(int row) throws IOException {
+        StringBuilder record = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) record.append(", ");
+            Object column = loadColumn(i);
+            switch (schema.getColumnType(i)) {
+                case INT -> record.append(((int[]) column)[row]);
+                case FLOAT -> record.append(((double[]) column)[row]);
+                case STRING -> record.append(Row.quote(((String[]) column)[row]));
+            }
+        }
+        return record.toString();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        metaChannel.close();
+        for (FileChannel segment : segments) {
+            segment.close();
+        }
+    }
+
+    private Object loadColumn(int ordinal) throws IOException {
+        if (columns[ordinal] != null) {
+            return columns[ordinal];
+        }
+
+        // Decode straight from a mapping of the segment instead of copying it onto the heap first
+        ByteBuffer buffer = segments[ordinal].map(FileChannel.MapMode.READ_ONLY, 0, segmentLengths[ordinal]);
+
+        int capacity = Math.max(16, rowCount);
+        Object column = switch (schema.getColumnType(ordinal)) {
+            case INT -> {
+                int[] values = new int[capacity];
+                buffer.asIntBuffer().get(values, 0, rowCount);
+                yield values;
+            }
+            case FLOAT -> {
+                double[] values = new double[capacity];
+                buffer.asDoubleBuffer().get(values, 0, rowCount);
+                yield values;
+            }
+            case STRING -> {
+                String[] values = new String[capacity];
+                for (int row = 0; row < rowCount; row++) {
+                    byte[] bytes = new byte[buffer.getInt()];
+                    buffer.get(bytes);
+                    values[row] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                yield values;
+            }
+        };
+        columns[ordinal] = column;
+        return column;
+    }
+
+    private void appendToLoadedColumn(int ordinal, String value) {
+        Object column = columns[ordinal];
+        if (column == null) return;
+
+        switch (schema.getColumnType(ordinal)) {
+            case INT -> {
+                int[] values = (int[]) column;
+                if (rowCount == values.length) values = Arrays.copyOf(values, values.length * 2);
+                values[rowCount] = Integer.parseInt(value);
+                columns[ordinal] = values;
+            }
+            case FLOAT -> {
+                double[] values = (double[]) column;
+                if (rowCount == values.length) values = Arrays.copyOf(values, values.length * 2);
+                values[rowCount] = Double.parseDouble(value);
+                columns[ordinal] = values;
+            }
+            case STRING -> {
+                String[] values = (String[]) column;
+                if (rowCount == values.length) values = Arrays.copyOf(values, values.length * 2);
+                values[rowCount] = value;
+                columns[ordinal] = values;
+            }
+        }
+    }
+
+    private ByteBuffer encode(int ordinal, String value) {
+        return switch (schema.getColumnType(ordinal)) {
+            case INT -> ByteBuffer.allocate(4).putInt(0, Integer.parseInt(value));
+            case FLOAT -> ByteBuffer.allocate(8).putDouble(0, Double.parseDouble(value));
+            case STRING -> {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                yield ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).flip();
+            }
+        };
+    }
+
+    private void writeMeta() throws IOException {
+        byte[] schemaBytes = schema.getDefinition().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer meta = ByteBuffer.allocate(20 + segments.length * 8 + schemaBytes.length);
+        meta.putInt(MAGIC).putInt(VERSION).putInt(rowCount).putInt(segments.length);
+        for (long length : segmentLengths) {
+            meta.putLong(length);
+        }
+        meta.putInt(schemaBytes.length).put(schemaBytes).flip();
+
+        int length = writeFully(metaChannel, meta, 0);
+        metaChannel.truncate(length);
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        return larger.put(buffer);
+    }
+}
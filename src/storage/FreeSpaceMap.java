@@ -0,0 +1,103 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Tracks the approximate free space of every page in a heap file, one byte per page.
+ * Each byte stores the free space in 16-byte units, so it never overstates what a page can hold.
+ * The map is only a hint: inserts still verify the page and correct the map when it is stale.
+ */
+public class FreeSpaceMap implements Closeable {
+    private static final int UNIT = 16;
+
+    private final FileChannel channel;
+    private byte[] categories;
+    private int searchHint = 0;
+
+    /**
+     * Opens (or creates) the free-space map stored alongside a heap file.
+     *
+     * @param file The map file on disk.
+     * @throws IOException if the file cannot be opened.
+     */
+    public FreeSpaceMap(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.categories = new byte[(int) channel.size()];
+        channel.read(ByteBuffer.wrap(categories), 0);
+    }
+
+    /**
+     * Returns the number of pages the map has entries for.
+     *
+     * @return The page count known to the map.
+     */
+    public synchronized int size() {
+        return categories.length;
+    }
+
+    /**
+     * Finds a page that has at least the requested free space.
+     *
+     * @param needed The number of bytes required.
+     * @return A candidate page number, or -1 if no page is known to have enough space.
+     */
+    public synchronized int findPage(int needed) {
+        int category = (needed + UNIT - 1) / UNIT;
+        for (int i = 0; i < categories.length; i++) {
+            int pageNo = (searchHint + i) % categories.length;
+            if ((categories[pageNo] & 0xFF) >= category) {
+                searchHint = pageNo;
+                return pageNo;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records the free space of a page, growing the map if the page is new.
+     *
+     * @param pageNo    The page number.
+     * @param freeBytes The free space on the page.
+     */
+    public synchronized void update(int pageNo, int freeBytes) {
+        boolean grown = pageNo >= categories.length;
+        if (grown) {
+            categories = Arrays.copyOf(categories, pageNo + 1);
+        }
+
+        byte category = (byte) Math.min(255, freeBytes / UNIT);
+        if (categories[pageNo] == category && !grown) {
+            return;
+        }
+        categories[pageNo] = category;
+
+        try {
+            channel.write(ByteBuffer.wrap(new byte[]{category}), pageNo);
+        } catch (IOException e) {
+            System.err.println("Warning: Could not persist free space map: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Discards all entries, e.g. when the heap file is rewritten.
+     *
+     * @throws IOException if the map file cannot be truncated.
+     */
+    public synchronized void clear() throws IOException {
+        channel.truncate(0);
+        categories = new byte[0];
+        searchHint = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
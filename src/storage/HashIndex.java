@@ -0,0 +1,352 @@
+package storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An in-memory hash index for equality lookups, filled from its table when first used.
+ * - Open addressing with linear probing over parallel arrays. A single INT or FLOAT key column is stored
+ *   as its value bits in a long, so probes compare primitives; other keys keep their encoded bytes
+ *   (see IndexKey) next to a 64-bit hash.
+ * - Rows with equal keys occupy separate slots; a lookup collects every match up to the next empty slot.
+ * - The table doubles once half full. Entries move to the larger table a few slots per change, so no
+ *   single insert pays for the whole resize; lookups probe both tables until the move is complete.
+ */
+class HashIndex implements RecordIndex {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MOVES_PER_CHANGE = 16;
+    private static final long EMPTY = 0;    // Record ids are never 0: page 0 of a table is its header
+    private static final long REMOVED = -1; // Removed from the old table while its entries are moved
+
+    private final TableSchema schema;
+    private final int[] ordinals;
+    private final boolean primitive; // A single INT or FLOAT column: the hash is the value itself
+    private Table table;
+    private Table old;                // Table being emptied into the current one, or null
+    private int moved;                // Slots of the old table already moved
+    private long size;
+    private boolean filled;
+
+    /**
+     * One open-addressing table.
+     */
+    private final class Table {
+        final int mask;
+        final long[] hashes;
+        final long[] recordIds;
+        final byte[][] keys; // Encoded keys, or null if the index is primitive
+        int count;
+
+        Table(int capacity) {
+            this.mask = capacity - 1;
+            this.hashes = new long[capacity];
+            this.recordIds = new long[capacity];
+            this.keys = primitive ? null : new byte[capacity][];
+        }
+
+        boolean matches(int slot, long hash, byte[] key) {
+            return hashes[slot] == hash && (keys == null || Arrays.equals(keys[slot], key));
+        }
+
+        void put(long hash, byte[] key, long recordId) {
+            int slot = home(hash, mask);
+            while (recordIds[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            recordIds[slot] = recordId;
+            if (keys != null) {
+                keys[slot] = key;
+            }
+            count++;
+        }
+
+        /**
+         * Removes an entry by shifting later entries of the same probe run back, so no tombstone is left.
+         */
+        boolean delete(long hash, byte[] key, long recordId) {
+            int slot = home(hash, mask);
+            while (recordIds[slot] != EMPTY) {
+                if (recordIds[slot] == recordId && matches(slot, hash, key)) {
+                    int hole = slot;
+                    for (int next = (hole + 1) & mask; recordIds[next] != EMPTY; next = (next + 1) & mask) {
+                        int target = home(hashes[next], mask);
+                        // The entry at next may fill the hole only if its home is not between the hole and next
+                        boolean movable = hole <= next ? (target <= hole || target > next) : (target <= hole && target > next);
+                        if (movable) {
+                            hashes[hole] = hashes[next];
+                            recordIds[hole] = recordIds[next];
+                            if (keys != null) {
+                                keys[hole] = keys[next];
+                            }
+                            hole = next;
+                        }
+                    }
+                    recordIds[hole] = EMPTY;
+                    if (keys != null) {
+                        keys[hole] = null;
+                    }
+                    count--;
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        void collect(long hash, byte[] key, LongList recordIds) {
+            for (int slot = home(hash, mask); this.recordIds[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (this.recordIds[slot] != REMOVED && matches(slot, hash, key)) {
+                    recordIds.add(this.recordIds[slot]);
+                }
+            }
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+    }
+
+    /**
+     * Creates an empty hash index; it must be filled from its table before use.
+     *
+     * @param schema   The table schema.
+     * @param ordinals The key columns.
+     */
+    HashIndex(TableSchema schema, int[] ordinals) {
+        this.schema = schema;
+        this.ordinals = ordinals;
+        this.primitive = ordinals.length == 1 && schema.getColumnType(ordinals[0]).isNumeric();
+        this.table = new Table(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public void validate(Row row) {
+        // Any row can be added
+    }
+
+    /**
+     * Collects the hashes and keys of a run of rows.
+     */
+    private final class HashBuilder implements Builder {
+        final LongList hashes = new LongList();
+        final List<byte[]> keys = new ArrayList<>();
+        final LongList recordIds = new LongList();
+
+        @Override
+        public boolean add(Row row, long recordId) {
+            byte[] key = primitive ? null : IndexKey.of(row, ordinals);
+            if (primitive ? row.isMissing(ordinals[0]) : key == null) {
+                return false;
+            }
+            hashes.add(primitive ? valueBits(row) : hash(key));
+            keys.add(key);
+            recordIds.add(recordId);
+            return true;
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    @Override
+    public Builder newBuilder() {
+        return new HashBuilder();
+    }
+
+    /**
+     * Sizes the table for every collected entry at once, so the fill never resizes.
+     */
+    @Override
+    public synchronized long load(List<Builder> builders) {
+        long total = size;
+        for (Builder builder : builders) {
+            total += ((HashBuilder) builder).recordIds.size();
+        }
+        int capacity = table.capacity();
+        while ((total + 1) * 2 > capacity) {
+            capacity *= 2;
+        }
+        if (capacity > table.capacity()) {
+            Table larger = new Table(capacity);
+            for (int slot = 0; slot < table.capacity(); slot++) {
+                if (table.recordIds[slot] != EMPTY) {
+                    larger.put(table.hashes[slot], table.keys == null ? null : table.keys[slot], table.recordIds[slot]);
+                }
+            }
+            table = larger;
+        }
+
+        for (Builder builder : builders) {
+            HashBuilder run = (HashBuilder) builder;
+            for (int i = 0; i < run.recordIds.size(); i++) {
+                table.put(run.hashes.get(i), run.keys.get(i), run.recordIds.get(i));
+            }
+        }
+        size = total;
+        return 0;
+    }
+
+    @Override
+    public synchronized boolean add(Row row, long recordId) {
+        byte[] key = primitive ? null : IndexKey.of(row, ordinals);
+        if (primitive ? row.isMissing(ordinals[0]) : key == null) {
+            return false;
+        }
+
+        moveSome();
+        if (old == null && (table.count + 1) * 2 > table.capacity()) {
+            old = table;
+            moved = 0;
+            table = new Table(old.capacity() * 2);
+        }
+        table.put(primitive ? valueBits(row) : hash(key), key, recordId);
+        size++;
+        return true;
+    }
+
+    @Override
+    public synchronized void remove(Row row, long recordId) {
+        byte[] key = primitive ? null : IndexKey.of(row, ordinals);
+        if (primitive ? row.isMissing(ordinals[0]) : key == null) {
+            return;
+        }
+
+        long hash = primitive ? valueBits(row) : hash(key);
+        if (table.delete(hash, key, recordId)) {
+            size--;
+        } else if (old != null && markRemoved(hash, key, recordId)) {
+            size--;
+        }
+        moveSome();
+    }
+
+    @Override
+    public synchronized LongList findEqual(String... values) {
+        if (values.length != ordinals.length) {
+            throw new IllegalArgumentException("A hash index is looked up by all of its " + ordinals.length + " columns.");
+        }
+
+        long hash;
+        byte[] key = null;
+        if (primitive) {
+            hash = switch (schema.getColumnType(ordinals[0])) {
+                case INT -> Integer.parseInt(values[0].trim());
+                default -> Double.doubleToLongBits(Double.parseDouble(values[0].trim()) + 0.0);
+            };
+        } else {
+            key = IndexKey.of(schema, ordinals, values);
+            hash = hash(key);
+        }
+
+        LongList recordIds = new LongList();
+        table.collect(hash, key, recordIds);
+        if (old != null) {
+            old.collect(hash, key, recordIds);
+        }
+        recordIds.sort(); // Table order, as a scan returns the rows
+        return recordIds;
+    }
+
+    /**
+     * Answers single-value ranges only, i.e. equality on a single-column index.
+     */
+    @Override
+    public LongList findRange(String low, boolean lowInclusive, String high, boolean highInclusive) {
+        if (low == null || !low.equals(high) || !lowInclusive || !highInclusive || ordinals.length > 1) {
+            return null;
+        }
+        return findEqual(low);
+    }
+
+    @Override
+    public synchronized boolean isClean() {
+        return filled;
+    }
+
+    @Override
+    public synchronized void clear() {
+        table = new Table(INITIAL_CAPACITY);
+        old = null;
+        size = 0;
+        filled = false;
+    }
+
+    /**
+     * Nothing is stored; marks the index filled.
+     */
+    @Override
+    public synchronized void flush() {
+        filled = true;
+    }
+
+    @Override
+    public synchronized void drop() {
+        clear();
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Moves a few entries of the old table into the current one, dropping the old table once empty.
+     */
+    private void moveSome() {
+        if (old == null) {
+            return;
+        }
+        for (int i = 0; i < MOVES_PER_CHANGE && moved < old.capacity(); i++, moved++) {
+            long recordId = old.recordIds[moved];
+            if (recordId != EMPTY && recordId != REMOVED) {
+                table.put(old.hashes[moved], old.keys == null ? null : old.keys[moved], recordId);
+                old.recordIds[moved] = REMOVED;
+            }
+        }
+        if (moved == old.capacity()) {
+            old = null;
+        }
+    }
+
+    /**
+     * Removes an entry of the old table that has not been moved yet. The slot keeps a marker so the
+     * probe runs through it stay intact until the whole table is moved.
+     */
+    private boolean markRemoved(long hash, byte[] key, long recordId) {
+        for (int slot = home(hash, old.mask); old.recordIds[slot] != EMPTY; slot = (slot + 1) & old.mask) {
+            if (old.recordIds[slot] == recordId && old.matches(slot, hash, key)) {
+                old.recordIds[slot] = REMOVED;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long valueBits(Row row) {
+        return schema.getColumnType(ordinals[0]) == TableSchema.ColumnType.INT
+                ? row.getInt(ordinals[0])
+                : Double.doubleToLongBits(row.getDouble(ordinals[0]) + 0.0); // Adding 0.0 folds -0.0 into 0.0
+    }
+
+    /**
+     * Hashes an encoded key with 64-bit FNV-1a.
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the first slot to probe for a hash, mixing its bits so sequential values spread out.
+     */
+    private static int home(long hash, int mask) {
+        long mixed = hash * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,462 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores the records of one table in a binary page file.
+ * - Page 0 is a header page holding a format marker and the table schema.
+ * - Every other page is a slotted data page; records are UTF-8 encoded rows.
+ * - Page access goes through the shared BufferPool, and a FreeSpaceMap picks the page for each insert.
+ * - Record changes are logged to the WriteAheadLog and stamped with their LSN; the changed pages stay
+ *   in the buffer pool until evicted or written back by a checkpoint.
+ */
+public class HeapFile implements Closeable {
+    private static final int MAGIC = 0x43444254; // "CDBT"
+    private static final int VERSION = 2; // Version 2 added the page LSN to the page header
+    private static final int VERSION_1_PAGE_HEADER_SIZE = 8; // Slot count and record area start, no LSN
+    private static final int HEADER_PAGE = 0;
+    private static final int SLOT_OVERHEAD = 4;
+
+    private final String tableName;
+    private final PageFile pageFile;
+    private final FreeSpaceMap freeSpaceMap;
+    private final BufferPool bufferPool;
+    private final WriteAheadLog log;
+    private String schema;
+
+    private HeapFile(String tableName, File file, BufferPool bufferPool, WriteAheadLog log) throws IOException {
+        this.tableName = tableName;
+        this.pageFile = new PageFile(file);
+        this.freeSpaceMap = new FreeSpaceMap(fsmFileFor(file));
+        this.bufferPool = bufferPool;
+        this.log = log;
+    }
+
+    /**
+     * Opens an existing heap file, rebuilding its free-space map if it is missing or out of date.
+     *
+     * @param tableName  The name of the table (e.g., "db.table"), used in its log records.
+     * @param file       The table file (e.g., data/db.table.tbl).
+     * @param bufferPool The shared buffer pool.
+     * @param log        The write-ahead log for record changes.
+     * @return The opened heap file.
+     * @throws IOException if the file cannot be read or is not a table file.
+     */
+    public static HeapFile open(String tableName, File file, BufferPool bufferPool, WriteAheadLog log) throws IOException {
+        HeapFile heapFile = new HeapFile(tableName, file, bufferPool, log);
+        heapFile.readHeader();
+        if (heapFile.freeSpaceMap.size() != heapFile.pageFile.getPageCount()) {
+            heapFile.rebuildFreeSpaceMap();
+        }
+        return heapFile;
+    }
+
+    /**
+     * Upgrades a table file written in format version 1, whose pages lack the page LSN, to the current format.
+     * Each record moves to the same slot of a page with the current layout, so its record id is kept; a record
+     * that no longer fits its page (each page header is 8 bytes larger) moves to a new page at the end.
+     * The upgraded file is written next to the old one and renamed over it, so a crash leaves one or the other.
+     *
+     * @param file The table file.
+     * @return True if records moved to new pages, so indexes of the table hold stale record ids.
+     * @throws IOException if the file cannot be read or written, or a record is too large for the current format.
+     */
+    static boolean upgrade(File file) throws IOException {
+        File temp = new File(file.getPath() + ".upgrade");
+        List<byte[]> moved = new ArrayList<>();
+        try (PageFile source = new PageFile(file)) {
+            ByteBuffer header = source.readPage(HEADER_PAGE);
+            if (source.getPageCount() == 0 || header.getInt(0) != MAGIC || header.getInt(4) != 1) {
+                return false;
+            }
+
+            Files.deleteIfExists(temp.toPath());
+            try (PageFile target = new PageFile(temp)) {
+                header.putInt(4, VERSION);
+                target.writePage(target.allocatePage(), header);
+
+                for (int pageNo = HEADER_PAGE + 1; pageNo < source.getPageCount(); pageNo++) {
+                    ByteBuffer old = source.readPage(pageNo);
+                    Page page = Page.empty(target.allocatePage());
+                    int slotCount = old.getInt(0);
+                    for (int slot = 0; slot < slotCount; slot++) {
+                        int position = VERSION_1_PAGE_HEADER_SIZE + slot * SLOT_OVERHEAD;
+                        int offset = old.getShort(position) & 0xFFFF;
+                        int length = old.getShort(position + 2) & 0xFFFF;
+                        if (length == 0) {
+                            continue; // A deleted record
+                        }
+                        byte[] record = new byte[length];
+                        old.get(offset, record);
+                        if (!page.insertAt(slot, record)) {
+                            moved.add(record);
+                        }
+                    }
+                    target.writePage(page.getPageNo(), page.getData());
+                }
+
+                Page page = null;
+                for (byte[] record : moved) {
+                    if (record.length > Page.MAX_RECORD_SIZE) {
+                        throw new IOException("Record of " + record.length + " bytes in " + file + " exceeds the maximum of " + Page.MAX_RECORD_SIZE + ".");
+                    }
+                    if (page == null || page.insert(record) < 0) {
+                        if (page != null) target.writePage(page.getPageNo(), page.getData());
+                        page = Page.empty(target.allocatePage());
+                        page.insert(record);
+                    }
+                }
+                if (page != null) target.writePage(page.getPageNo(), page.getData());
+                target.sync();
+            }
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(fsmFileFor(file).toPath()); // Free space changed; rebuilt when the file is opened
+        return !moved.isEmpty();
+    }
+
+    /**
+     * Creates a new heap file containing only the schema, replacing any existing file.
+     *
+     * @param tableName  The name of the table (e.g., "db.table"), used in its log records.
+     * @param file       The table file.
+     * @param schema     The schema row of the table.
+     * @param bufferPool The shared buffer pool.
+     * @param log        The write-ahead log for record changes.
+     * @return The created heap file.
+     * @throws IOException if the file cannot be written.
+     */
+    public static HeapFile create(String tableName, File file, String schema, BufferPool bufferPool, WriteAheadLog log) throws IOException {
+        HeapFile heapFile = new HeapFile(tableName, file, bufferPool, log);
+        heapFile.rewrite(schema, new ArrayList<>());
+        return heapFile;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    /**
+     * Inserts a record into the first page with enough room, allocating a new page if none has.
+     * The change is logged; the page itself is written back later.
+     *
+     * @param txId   The transaction making the change.
+     * @param record The row to insert.
+     * @return The logged change; its record id locates the new record.
+     * @throws IllegalArgumentException if the record is larger than a page.
+     */
+    public synchronized LogRecord insert(long txId, String record) {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Page.MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Record of " + bytes.length + " bytes exceeds the maximum of " + Page.MAX_RECORD_SIZE + ".");
+        }
+
+        while (true) {
+            int pageNo = freeSpaceMap.findPage(bytes.length + SLOT_OVERHEAD);
+            Page page = pageNo > HEADER_PAGE ? bufferPool.fetchPage(pageFile, pageNo) : bufferPool.newPage(pageFile);
+
+            int slot = page.insert(bytes);
+            LogRecord change = null;
+            if (slot >= 0) {
+                change = log.append(LogRecord.insert(txId, tableName, recordId(page.getPageNo(), slot), record));
+                page.setPageLsn(change.lsn());
+            }
+            bufferPool.unpinPage(pageFile, page.getPageNo(), slot >= 0);
+            freeSpaceMap.update(page.getPageNo(), page.getFreeSpace());
+
+            if (change != null) {
+                return change;
+            }
+            // The map overstated the free space; it is corrected now, so search again
+        }
+    }
+
+    /**
+     * Deletes a record, logging its contents so the delete can be undone.
+     *
+     * @param txId     The transaction making the change.
+     * @param recordId The record to delete.
+     * @return The logged change, or null if there is no such record.
+     */
+    public synchronized LogRecord delete(long txId, long recordId) {
+        int pageNo = pageOf(recordId);
+        if (pageNo <= HEADER_PAGE || pageNo >= pageFile.getPageCount()) {
+            return null;
+        }
+
+        Page page = bufferPool.fetchPage(pageFile, pageNo);
+        byte[] record = page.get(slotOf(recordId));
+        LogRecord change = null;
+        if (record != null) {
+            page.delete(slotOf(recordId));
+            change = log.append(LogRecord.delete(txId, tableName, recordId, new String(record, StandardCharsets.UTF_8)));
+            page.setPageLsn(change.lsn());
+        }
+        bufferPool.unpinPage(pageFile, pageNo, change != null);
+        freeSpaceMap.update(pageNo, page.getFreeSpace());
+        return change;
+    }
+
+    /**
+     * Reads a single record, e.g. one located through an index.
+     *
+     * @param recordId The record id.
+     * @return The record, or null if there is no such record.
+     */
+    public synchronized String read(long recordId) {
+        int pageNo = pageOf(recordId);
+        if (pageNo <= HEADER_PAGE || pageNo >= pageFile.getPageCount()) {
+            return null;
+        }
+
+        Page page = bufferPool.fetchPage(pageFile, pageNo);
+        try {
+            byte[] record = page.get(slotOf(recordId));
+            return record == null ? null : new String(record, StandardCharsets.UTF_8);
+        } finally {
+            bufferPool.unpinPage(pageFile, pageNo, false);
+        }
+    }
+
+    /**
+     * Reverses a logged change of this table and logs the reversal as a compensation record.
+     * Changes must be undone newest first, so the slot and space they used are free again.
+     *
+     * @param txId   The transaction being rolled back.
+     * @param change The change to reverse.
+     * @return The logged compensation record.
+     * @throws IllegalStateException if the record cannot be restored in its slot.
+     */
+    synchronized LogRecord undo(long txId, LogRecord change) {
+        int pageNo = pageOf(change.recordId());
+        int slot = slotOf(change.recordId());
+        Page page = bufferPool.fetchPage(pageFile, pageNo);
+        try {
+            LogRecord compensation;
+            if (change.type() == LogRecord.Type.INSERT) {
+                page.delete(slot);
+                compensation = LogRecord.delete(txId, tableName, change.recordId(), change.after()).asCompensation();
+            } else {
+                if (!page.insertAt(slot, change.before().getBytes(StandardCharsets.UTF_8))) {
+                    throw new IllegalStateException("Cannot restore record " + change.recordId() + " of " + tableName + ".");
+                }
+                compensation = LogRecord.insert(txId, tableName, change.recordId(), change.before()).asCompensation();
+            }
+            compensation = log.append(compensation);
+            page.setPageLsn(compensation.lsn());
+            freeSpaceMap.update(pageNo, page.getFreeSpace());
+            return compensation;
+        } finally {
+            bufferPool.unpinPage(pageFile, pageNo, true);
+        }
+    }
+
+    /**
+     * Reapplies a logged change during recovery unless its page already contains it.
+     * The page LSN tells: a page written back after the change carries its LSN or a later one.
+     *
+     * @param change The INSERT or DELETE record (possibly a compensation).
+     * @return True if the change was applied, false if the page already had it.
+     * @throws IllegalStateException if the page does not match the log.
+     */
+    synchronized boolean redo(LogRecord change) {
+        int pageNo = pageOf(change.recordId());
+        while (pageFile.getPageCount() <= pageNo) {
+            // The page was allocated after the file was last written
+            Page page = bufferPool.newPage(pageFile);
+            bufferPool.unpinPage(pageFile, page.getPageNo(), true);
+        }
+
+        Page page = bufferPool.fetchPage(pageFile, pageNo);
+        boolean applied = page.getPageLsn() < change.lsn();
+        try {
+            if (applied) {
+                int slot = slotOf(change.recordId());
+                if (change.type() == LogRecord.Type.INSERT) {
+                    if (!page.insertAt(slot, change.after().getBytes(StandardCharsets.UTF_8))) {
+                        throw new IllegalStateException("Cannot redo insert of record " + change.recordId() + " of " + tableName + ".");
+                    }
+                } else {
+                    page.delete(slot);
+                }
+                page.setPageLsn(change.lsn());
+                freeSpaceMap.update(pageNo, page.getFreeSpace());
+            }
+            return applied;
+        } finally {
+            bufferPool.unpinPage(pageFile, pageNo, applied);
+        }
+    }
+
+    /**
+     * Writes every changed page of the file back to disk and syncs it.
+     * Each page waits for the log to be durable up to its LSN first.
+     *
+     * @throws IOException if the file cannot be synced.
+     */
+    public synchronized void flush() throws IOException {
+        bufferPool.flushFile(pageFile);
+        pageFile.sync();
+    }
+
+    /**
+     * Reads every record in page and slot order.
+     *
+     * @return The records of the table, excluding the schema.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public synchronized List<String> readAll() throws IOException {
+        List<String> records = new ArrayList<>();
+        RecordCursor cursor = openCursor();
+        while (cursor.next()) {
+            records.add(cursor.getRecord());
+        }
+        return records;
+    }
+
+    /**
+     * Opens a cursor that reads the records of the file through a memory mapping.
+     * The cursor copies each page when it reaches it, so it sees every page as it was at that moment;
+     * pages added after the cursor was opened are not read.
+     *
+     * @return A cursor positioned before the first record.
+     */
+    public synchronized RecordCursor openCursor() {
+        return new RecordCursor(pageFile, bufferPool);
+    }
+
+    /**
+     * Opens a cursor over the records of a range of pages, e.g. one part of a parallel scan.
+     *
+     * @param firstPage The first page to read.
+     * @param endPage   The first page past the range.
+     * @return A cursor positioned before the first record of the range.
+     */
+    public synchronized RecordCursor openCursor(int firstPage, int endPage) {
+        return new RecordCursor(pageFile, bufferPool, firstPage, endPage);
+    }
+
+    /**
+     * Returns the number of pages in the file, including the header page.
+     *
+     * @return The page count.
+     */
+    public int getPageCount() {
+        return pageFile.getPageCount();
+    }
+
+    /**
+     * Replaces the whole table with the given schema and records, packing pages sequentially.
+     *
+     * @param schema  The schema row.
+     * @param records The records to store.
+     * @throws IOException if the file cannot be written.
+     */
+    public synchronized void rewrite(String schema, List<String> records) throws IOException {
+        bufferPool.discardFile(pageFile);
+        pageFile.truncate();
+        freeSpaceMap.clear();
+
+        this.schema = schema;
+        writeHeader();
+        freeSpaceMap.update(HEADER_PAGE, 0);
+
+        Page page = null;
+        for (String record : records) {
+            byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > Page.MAX_RECORD_SIZE) {
+                throw new IllegalArgumentException("Record of " + bytes.length + " bytes exceeds the maximum of " + Page.MAX_RECORD_SIZE + ".");
+            }
+            if (page == null || page.insert(bytes) < 0) {
+                if (page != null) writeDataPage(page);
+                page = Page.empty(pageFile.allocatePage());
+                page.insert(bytes);
+            }
+        }
+        if (page != null) writeDataPage(page);
+        pageFile.sync();
+    }
+
+    /**
+     * Packs a page number and slot into a single record id.
+     *
+     * @param pageNo The page number.
+     * @param slot   The slot number.
+     * @return The record id.
+     */
+    public static long recordId(int pageNo, int slot) {
+        return ((long) pageNo << 16) | slot;
+    }
+
+    public static int pageOf(long recordId) {
+        return (int) (recordId >>> 16);
+    }
+
+    public static int slotOf(long recordId) {
+        return (int) (recordId & 0xFFFF);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        bufferPool.flushFile(pageFile);
+        bufferPool.discardFile(pageFile);
+        freeSpaceMap.close();
+        pageFile.close();
+    }
+
+    private void writeDataPage(Page page) throws IOException {
+        pageFile.writePage(page.getPageNo(), page.getData());
+        freeSpaceMap.update(page.getPageNo(), page.getFreeSpace());
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer header = pageFile.readPage(HEADER_PAGE);
+        if (pageFile.getPageCount() == 0 || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a table file: " + pageFile.getFile());
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported table file version " + header.getInt(4) + ": " + pageFile.getFile());
+        }
+        byte[] schemaBytes = new byte[header.getInt(8)];
+        header.get(12, schemaBytes);
+        this.schema = new String(schemaBytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeHeader() throws IOException {
+        byte[] schemaBytes = schema.getBytes(StandardCharsets.UTF_8);
+        if (schemaBytes.length > Page.PAGE_SIZE - 12) {
+            throw new IllegalArgumentException("Schema is too large for the table header.");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(Page.PAGE_SIZE);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, schemaBytes.length);
+        header.put(12, schemaBytes);
+        pageFile.writePage(HEADER_PAGE, header);
+    }
+
+    private void rebuildFreeSpaceMap() throws IOException {
+        freeSpaceMap.clear();
+        freeSpaceMap.update(HEADER_PAGE, 0);
+        for (int pageNo = HEADER_PAGE + 1; pageNo < pageFile.getPageCount(); pageNo++) {
+            Page page = bufferPool.fetchPage(pageFile, pageNo);
+            freeSpaceMap.update(pageNo, page.getFreeSpace());
+            bufferPool.unpinPage(pageFile, pageNo, false);
+        }
+    }
+
+    private static File fsmFileFor(File file) {
+        String path = file.getPath();
+        return new File(path.substring(0, path.lastIndexOf('.')) + ".fsm");
+    }
+}
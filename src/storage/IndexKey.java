@@ -0,0 +1,214 @@
+package storage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encodes column values into byte strings whose unsigned byte order matches the order of the values,
+ * so one B+tree serves keys of every column type, alone or combined.
+ * - INT: 4 bytes big-endian with the sign bit flipped.
+ * - FLOAT: the 8 bytes of the double with the sign bit flipped, or every bit flipped if negative.
+ * - STRING: UTF-8 with 0x00 escaped as 0x00 0xFF, terminated by 0x00 0x00 so a string sorts before
+ *   its extensions even when more columns follow.
+ * Keys over numeric columns only have a fixed width and are written straight into an array of that size.
+ */
+public final class IndexKey {
+
+    private IndexKey() {
+    }
+
+    /**
+     * Encodes the key of a row.
+     *
+     * @param row      The decoded row.
+     * @param ordinals The key columns, in key order.
+     * @return The encoded key, or null if one of the key values is missing.
+     */
+    public static byte[] of(Row row, int[] ordinals) {
+        return of(row, ordinals, false, 0);
+    }
+
+    /**
+     * Encodes the key of a row followed by its record id, 8 bytes big-endian, so rows with equal
+     * values are distinct keys ordered by their position in the table.
+     *
+     * @param row      The decoded row.
+     * @param ordinals The key columns, in key order.
+     * @param recordId The record id of the row.
+     * @return The encoded key, or null if one of the key values is missing.
+     */
+    public static byte[] of(Row row, int[] ordinals, long recordId) {
+        return of(row, ordinals, true, recordId);
+    }
+
+    /**
+     * Returns the width of every key over the given columns.
+     *
+     * @param schema   The table schema.
+     * @param ordinals The key columns.
+     * @return The width in bytes, or 0 if a column is a STRING, whose encoding varies in length.
+     */
+    public static int width(TableSchema schema, int[] ordinals) {
+        int width = 0;
+        for (int ordinal : ordinals) {
+            switch (schema.getColumnType(ordinal)) {
+                case INT -> width += Integer.BYTES;
+                case FLOAT -> width += Long.BYTES;
+                case STRING -> {
+                    return 0;
+                }
+            }
+        }
+        return width;
+    }
+
+    /**
+     * Encodes a key from literal values, e.g. the constants of a query.
+     * Fewer values than key columns give a prefix of the key.
+     *
+     * @param schema   The table schema.
+     * @param ordinals The key columns, in key order.
+     * @param values   The unquoted values of the first key columns.
+     * @return The encoded key.
+     * @throws NumberFormatException if a value does not parse as its column type.
+     */
+    public static byte[] of(TableSchema schema, int[] ordinals, String... values) {
+        ByteArrayOutputStream key = new ByteArrayOutputStream();
+        for (int i = 0; i < values.length; i++) {
+            switch (schema.getColumnType(ordinals[i])) {
+                case INT -> appendInt(key, Integer.parseInt(values[i].trim()));
+                case FLOAT -> appendDouble(key, Double.parseDouble(values[i].trim()));
+                case STRING -> appendString(key, values[i]);
+            }
+        }
+        return key.toByteArray();
+    }
+
+    /**
+     * The keys between two encoded bounds: low inclusive, high exclusive; a null bound is open.
+     */
+    record Range(byte[] low, byte[] high) {
+    }
+
+    /**
+     * Encodes a range of values of the leading key column as a range of keys.
+     * Keys holding a value start with its encoding, so they lie in [prefix, successor of prefix).
+     *
+     * @param schema        The table schema.
+     * @param ordinals      The key columns, in key order.
+     * @param low           The unquoted lower bound, or null for no lower bound.
+     * @param lowInclusive  True if a value equal to the lower bound is included.
+     * @param high          The unquoted upper bound, or null for no upper bound.
+     * @param highInclusive True if a value equal to the upper bound is included.
+     * @return The key range, or null if no key can lie in it.
+     * @throws NumberFormatException if a bound does not parse as the column type.
+     */
+    static Range range(TableSchema schema, int[] ordinals, String low, boolean lowInclusive,
+                       String high, boolean highInclusive) {
+        byte[] lowKey = null;
+        byte[] highKey = null;
+        if (low != null) {
+            byte[] prefix = of(schema, ordinals, low);
+            lowKey = lowInclusive ? prefix : successor(prefix);
+            if (lowKey == null) {
+                return null;
+            }
+        }
+        if (high != null) {
+            byte[] prefix = of(schema, ordinals, high);
+            highKey = highInclusive ? successor(prefix) : prefix;
+        }
+        return new Range(lowKey, highKey);
+    }
+
+    /**
+     * Returns the smallest byte string greater than every string starting with the prefix, so the keys
+     * holding a value lie in [prefix, successor of prefix).
+     *
+     * @param prefix The encoded prefix.
+     * @return The successor, or null if there is none (the prefix is all 0xFF bytes).
+     */
+    static byte[] successor(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xFF) {
+                byte[] next = Arrays.copyOf(prefix, i + 1);
+                next[i]++;
+                return next;
+            }
+        }
+        return null;
+    }
+
+    private static byte[] of(Row row, int[] ordinals, boolean withRecordId, long recordId) {
+        TableSchema schema = row.getSchema();
+        for (int ordinal : ordinals) {
+            if (row.isMissing(ordinal)) {
+                return null;
+            }
+        }
+
+        int width = width(schema, ordinals);
+        if (width > 0) {
+            ByteBuffer key = ByteBuffer.allocate(width + (withRecordId ? Long.BYTES : 0));
+            for (int ordinal : ordinals) {
+                if (schema.getColumnType(ordinal) == TableSchema.ColumnType.INT) {
+                    key.putInt(row.getInt(ordinal) ^ Integer.MIN_VALUE);
+                } else {
+                    key.putLong(sortableBits(row.getDouble(ordinal)));
+                }
+            }
+            if (withRecordId) {
+                key.putLong(recordId);
+            }
+            return key.array();
+        }
+
+        ByteArrayOutputStream key = new ByteArrayOutputStream();
+        for (int ordinal : ordinals) {
+            switch (schema.getColumnType(ordinal)) {
+                case INT -> appendInt(key, row.getInt(ordinal));
+                case FLOAT -> appendDouble(key, row.getDouble(ordinal));
+                case STRING -> appendString(key, row.getString(ordinal));
+            }
+        }
+        if (withRecordId) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                key.write((int) (recordId >>> shift));
+            }
+        }
+        return key.toByteArray();
+    }
+
+    private static void appendInt(ByteArrayOutputStream key, int value) {
+        int flipped = value ^ Integer.MIN_VALUE;
+        key.write(flipped >>> 24);
+        key.write(flipped >>> 16);
+        key.write(flipped >>> 8);
+        key.write(flipped);
+    }
+
+    private static void appendDouble(ByteArrayOutputStream key, double value) {
+        long bits = sortableBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            key.write((int) (bits >>> shift));
+        }
+    }
+
+    private static long sortableBits(double value) {
+        long bits = Double.doubleToLongBits(value + 0.0); // Adding 0.0 folds -0.0 into 0.0
+        return bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+    }
+
+    private static void appendString(ByteArrayOutputStream key, String value) {
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            key.write(b);
+            if (b == 0) {
+                key.write(0xFF);
+            }
+        }
+        key.write(0);
+        key.write(0);
+    }
+}
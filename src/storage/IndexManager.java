@@ -1,125 +1,713 @@
 package storage;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
- * Manages in-memory indexes for optimizing query performance.
- * Supports indexing of table data and efficient retrieval.
+ * Manages the persistent indexes of row-format tables.
+ * - A declared primary key gets a unique index named "primary"; CREATE INDEX adds secondary indexes
+ *   on one or more columns of any type, listed in data/<table>.indexes.
+ * - B-tree indexes are stored in data/<table>.<index>.idx (see TreeIndex); hash and bitmap indexes live
+ *   in memory (see HashIndex, BitmapIndex) and are filled from the table when first used.
+ * - Indexes are opened on first use and kept in step with every insert and delete of their table,
+ *   including rollbacks. A B-tree that was not flushed after its last change is rebuilt from the table.
+ * - Startup opens no index. A table's indexes are opened, and if needed rebuilt, by the first statement
+ *   that uses them; other tables stay available meanwhile.
+ * - A rebuild scans runs of pages in parallel on the fork-join pool, then merges the runs into each index.
+ *   Its progress is available from getBuildProgress while it runs and after it completes.
  */
 public class IndexManager {
-    private final Map<String, TreeMap<Integer, String>> tableIndexes; // Table -> (ID -> Row Data)
+    public static final String PRIMARY_INDEX = "primary";
+
+    private static final String INDEX_EXTENSION = ".idx";
+    private static final String DEFINITIONS_EXTENSION = ".indexes";
+    private static final int PAGES_PER_TASK = 64;    // Pages scanned by each task of a parallel fill
+    private static final Pattern DEFINITION_ENTRY = Pattern.compile("(?i)^(\\w+)\\s*\\((.*)\\)(?:\\s+USING\\s+(\\w+))?$");
+
+    private final String dataDirectory;
+    private final BufferPool bufferPool;
+    private final StorageManager storageManager;
+    private final Map<String, TableIndexes> tables = new HashMap<>(); // Table -> Open indexes
+    private final Map<String, Object> openLocks = new HashMap<>();    // Table -> Lock held while opening its indexes
+    private final AtomicLong definitionVersion = new AtomicLong();    // Bumped whenever an index is created or dropped
+    private final Map<String, Build> builds = new HashMap<>();        // Table -> Latest rebuild of its indexes
 
     /**
-     * Constructor initializes an empty index map.
+     * Describes an index: its name, key columns and structure.
+     *
+     * @param name     The index name, unique within its database.
+     * @param ordinals The key columns, in key order.
+     * @param unique   True for the primary key index.
+     * @param type     The index structure.
      */
-    public IndexManager() {
-        this.tableIndexes = new HashMap<>();
+    public record Definition(String name, int[] ordinals, boolean unique, IndexType type) {
+    }
+
+    private record Index(Definition definition, RecordIndex index) {
     }
 
     /**
-     * Adds an entry to the in-memory index when new data is inserted.
+     * Progress of a rebuild of a table's indexes.
      *
-     * @param tableName The name of the table.
-     * @param id        The primary key ID.
-     * @param rowData   The data to store.
+     * @param pagesScanned The data pages scanned so far.
+     * @param totalPages   The data pages of the table.
+     * @param tasks        The parallel scans the pages were split into.
+     * @param entries      The entries in the rebuilt indexes; 0 until the rebuild completes.
+     * @param millis       The time taken so far, or in total once complete.
+     * @param complete     True once the indexes are filled and flushed.
+     */
+    public record BuildProgress(int pagesScanned, int totalPages, int tasks, long entries, long millis, boolean complete) {
+    }
+
+    /**
+     * A rebuild in progress or completed, updated by its scan tasks.
+     */
+    private static class Build {
+        final long start = System.nanoTime();
+        final int totalPages;
+        final int tasks;
+        final AtomicInteger pagesScanned = new AtomicInteger();
+        volatile long entries;
+        volatile long finish; // 0 until complete
+
+        Build(int totalPages, int tasks) {
+            this.totalPages = totalPages;
+            this.tasks = tasks;
+        }
+
+        BuildProgress progress() {
+            long end = finish;
+            long millis = ((end == 0 ? System.nanoTime() : end) - start) / 1_000_000;
+            return new BuildProgress(pagesScanned.get(), totalPages, tasks, entries, millis, end != 0);
+        }
+    }
+
+    /**
+     * The open indexes of a table. Changes to the table and its indexes are made while holding it,
+     * so a flushed index never misses a logged change.
+     */
+    private static class TableIndexes {
+        final TableSchema schema;
+        final List<Index> indexes = new CopyOnWriteArrayList<>();
+
+        TableIndexes(TableSchema schema) {
+            this.schema = schema;
+        }
+
+        Index find(String name) {
+            for (Index index : indexes) {
+                if (index.definition().name().equalsIgnoreCase(name)) {
+                    return index;
+                }
+            }
+            return null;
+        }
+    }
+
+    IndexManager(String dataDirectory, BufferPool bufferPool, StorageManager storageManager) {
+        this.dataDirectory = dataDirectory;
+        this.bufferPool = bufferPool;
+        this.storageManager = storageManager;
+    }
+
+    /**
+     * Returns the progress of the latest rebuild of a table's indexes, e.g. to monitor a large table
+     * opened by a long-running statement.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @return The progress, or null if the table's indexes have not been rebuilt since startup.
+     */
+    public BuildProgress getBuildProgress(String tableName) {
+        synchronized (tables) {
+            Build build = builds.get(tableName);
+            return build == null ? null : build.progress();
+        }
+    }
+
+    /**
+     * Returns the indexes of a table, the primary key index first.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @return The index definitions; empty if the table has no indexes or is not a row-format table.
+     * @throws IOException if an index or the table cannot be read.
+     */
+    public List<Definition> getIndexes(String tableName) throws IOException {
+        TableIndexes table = getTableIndexes(tableName);
+        List<Definition> definitions = new ArrayList<>();
+        if (table != null) {
+            for (Index index : table.indexes) {
+                definitions.add(index.definition());
+            }
+        }
+        return definitions;
+    }
+
+    /**
+     * Returns a number that changes whenever an index of any table is created or dropped, so query plans
+     * that chose among the indexes of a table can tell when to choose again.
+     *
+     * @return The index definition version.
+     */
+    public long getDefinitionVersion() {
+        return definitionVersion.get();
+    }
+
+    /**
+     * Tells whether a table has an index of the given name, without opening its indexes.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @param indexName The index name.
+     * @return True if the index exists.
+     */
+    public boolean hasIndex(String tableName, String indexName) {
+        synchronized (tables) {
+            TableIndexes table = tables.get(tableName);
+            if (table != null) {
+                return table.find(indexName) != null;
+            }
+        }
+        if (indexName.equalsIgnoreCase(PRIMARY_INDEX)) {
+            TableSchema schema = storageManager.getTableSchema(tableName);
+            return schema != null && schema.getPrimaryKey() >= 0;
+        }
+        return readDefinitions(tableName).keySet().stream().anyMatch(indexName::equalsIgnoreCase);
+    }
+
+    /**
+     * Builds a secondary index over the current records of a table and registers it.
+     * Writers of the table wait until the index is complete.
+     *
+     * @param tableName   The name of the table (e.g., "db.table").
+     * @param indexName   The index name.
+     * @param columnNames The key columns, in key order.
+     * @param type        The index structure.
+     * @throws IOException if the table cannot be read or the index cannot be written.
+     * @throws IllegalArgumentException if the table is not a row-format table, the name is taken, or a column does not exist.
+     */
+    public void createIndex(String tableName, String indexName, List<String> columnNames, IndexType type) throws IOException {
+        TableIndexes table = getTableIndexes(tableName);
+        if (table == null) {
+            throw new IllegalArgumentException("Indexes are supported on row-format tables only.");
+        }
+        if (indexName.equalsIgnoreCase(PRIMARY_INDEX)) {
+            throw new IllegalArgumentException("The index name '" + PRIMARY_INDEX + "' is reserved for primary keys.");
+        }
+        int[] ordinals = resolveColumns(table.schema, columnNames);
+
+        synchronized (table) {
+            if (table.find(indexName) != null) {
+                throw new IllegalArgumentException("Index '" + indexName + "' already exists.");
+            }
+
+            // A file left by a build that did not finish is overwritten
+            Files.deleteIfExists(indexFile(tableName, indexName).toPath());
+            Index index = openIndex(tableName, table.schema, new Definition(indexName, ordinals, false, type));
+            fill(tableName, table.schema, List.of(index));
+
+            table.indexes.add(index);
+            saveDefinitions(tableName, table);
+            definitionVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes a secondary index and deletes its file.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @param indexName The index name.
+     * @return True if the index was dropped, false if the table has no such index.
+     * @throws IOException if the index file cannot be deleted.
+     * @throws IllegalArgumentException if the index is the primary key index.
      */
-    public void addToIndex(String tableName, int id, String rowData) {
-        tableIndexes.computeIfAbsent(tableName, k -> new TreeMap<>());
-        tableIndexes.get(tableName).put(id, rowData);
-        System.out.println("Added to index: Table=" + tableName + ", ID=" + id);
+    public boolean dropIndex(String tableName, String indexName) throws IOException {
+        if (indexName.equalsIgnoreCase(PRIMARY_INDEX)) {
+            throw new IllegalArgumentException("The primary key index cannot be dropped.");
+        }
+        TableIndexes table = getTableIndexes(tableName);
+        if (table == null) {
+            return false;
+        }
+
+        synchronized (table) {
+            Index index = table.find(indexName);
+            if (index == null) {
+                return false;
+            }
+            table.indexes.remove(index);
+            saveDefinitions(tableName, table);
+            definitionVersion.incrementAndGet();
+            index.index().drop();
+            return true;
+        }
     }
 
     /**
-     * Retrieves a record by its ID from the index.
+     * Finds the rows of a bitmap index whose leading key column equals any of the given values, as a set
+     * that can be intersected or united with the sets of other conditions.
      *
-     * @param tableName The table name.
-     * @param id        The primary key.
-     * @return The record if found, otherwise null.
+     * @param tableName The name of the table (e.g., "db.table").
+     * @param indexName The index name.
+     * @param values    The unquoted values, e.g. the list of an IN condition.
+     * @return The record ids, or null if the table has no such bitmap index.
+     * @throws IOException if the index cannot be opened.
+     * @throws NumberFormatException if a value does not parse as the column type.
      */
-    public String getRecordById(String tableName, int id) {
-        if (!tableIndexes.containsKey(tableName)) {
+    public RecordBitmap findBitmap(String tableName, String indexName, List<String> values) throws IOException {
+        TableIndexes table = getTableIndexes(tableName);
+        Index index = table == null ? null : table.find(indexName);
+        if (index == null || !(index.index() instanceof BitmapIndex bitmapIndex)) {
             return null;
         }
-        return tableIndexes.get(tableName).get(id);
+
+        RecordBitmap union = new RecordBitmap();
+        for (String value : values) {
+            union = union.or(bitmapIndex.find(value));
+        }
+        return union;
     }
 
     /**
-     * Deletes an entry from the index.
+     * Finds the record ids whose leading key column lies within a range: in key order for B-tree indexes,
+     * in table order for the others. Hash indexes answer only single-value ranges, i.e. equality.
      *
-     * @param tableName The table name.
-     * @param id        The ID to delete.
+     * @param tableName     The name of the table (e.g., "db.table").
+     * @param indexName     The index name.
+     * @param low           The unquoted lower bound, or null for no lower bound.
+     * @param lowInclusive  True if a value equal to the lower bound is included.
+     * @param high          The unquoted upper bound, or null for no upper bound.
+     * @param highInclusive True if a value equal to the upper bound is included.
+     * @return The record ids, or null if the table has no such index or it cannot answer the range.
+     * @throws IOException if the index cannot be opened.
+     * @throws NumberFormatException if a bound does not parse as the column type.
      */
-    public void deleteFromIndex(String tableName, int id) {
-        if (tableIndexes.containsKey(tableName)) {
-            tableIndexes.get(tableName).remove(id);
-            System.out.println("Removed from index: Table=" + tableName + ", ID=" + id);
+    public LongList find(String tableName, String indexName, String low, boolean lowInclusive,
+                           String high, boolean highInclusive) throws IOException {
+        TableIndexes table = getTableIndexes(tableName);
+        Index index = table == null ? null : table.find(indexName);
+        if (index == null) {
+            return null;
         }
+
+        return index.index().findRange(low, lowInclusive, high, highInclusive);
     }
 
     /**
-     * Updates an entry in the index.
+     * Inserts a record into a table and its indexes, refusing a primary key that is missing or already present.
      *
-     * @param tableName The table name.
-     * @param id        The ID to update.
-     * @param newData   The new data.
+     * @param tableName The name of the table.
+     * @param heapFile  The table.
+     * @param txId      The transaction making the change.
+     * @param record    The record to insert.
+     * @return The logged change.
+     * @throws IOException if the indexes cannot be opened.
+     * @throws IllegalArgumentException if the primary key is missing or taken, or a key is too long.
      */
-    public void updateIndex(String tableName, int id, String newData) {
-        if (tableIndexes.containsKey(tableName)) {
-            if (tableIndexes.get(tableName).containsKey(id)) {
-                tableIndexes.get(tableName).put(id, newData);
-                System.out.println("Updated index: Table=" + tableName + ", ID=" + id);
+    LogRecord insert(String tableName, HeapFile heapFile, long txId, String record) throws IOException {
+        TableIndexes table = getTableIndexes(tableName);
+        if (table == null || table.indexes.isEmpty()) {
+            return heapFile.insert(txId, record);
+        }
+
+        Row row = Row.decode(table.schema, record);
+        synchronized (table) {
+            for (Index index : table.indexes) {
+                index.index().validate(row);
             }
+
+            LogRecord change = heapFile.insert(txId, record);
+            addEntries(table, row, change.recordId());
+            return change;
         }
     }
 
     /**
-     * Retrieves all indexed records from a table.
+     * Deletes a record from a table and its indexes.
      *
-     * @param tableName The table name.
-     * @return List of indexed data.
+     * @param tableName The name of the table.
+     * @param heapFile  The table.
+     * @param txId      The transaction making the change.
+     * @param recordId  The record to delete.
+     * @return The logged change, or null if there is no such record.
+     * @throws IOException if the indexes cannot be opened.
      */
-    public List<String> getAllRecords(String tableName) {
-        if (!tableIndexes.containsKey(tableName)) {
-            return new ArrayList<>();
+    LogRecord delete(String tableName, HeapFile heapFile, long txId, long recordId) throws IOException {
+        TableIndexes table = getTableIndexes(tableName);
+        if (table == null || table.indexes.isEmpty()) {
+            return heapFile.delete(txId, recordId);
+        }
+
+        synchronized (table) {
+            LogRecord change = heapFile.delete(txId, recordId);
+            if (change != null) {
+                removeEntries(table, Row.decode(table.schema, change.before()), recordId);
+            }
+            return change;
         }
-        return new ArrayList<>(tableIndexes.get(tableName).values());
     }
 
     /**
-     * Checks if a table is indexed.
+     * Reverses a change of a rolled back transaction in a table and its indexes.
      *
-     * @param tableName The table name.
-     * @return True if indexed, false otherwise.
+     * @param heapFile The table.
+     * @param txId     The transaction being rolled back.
+     * @param change   The change to reverse.
+     * @throws IOException if the indexes cannot be opened.
      */
-    public boolean isTableIndexed(String tableName) {
-        return tableIndexes.containsKey(tableName) && !tableIndexes.get(tableName).isEmpty();
+    void undo(HeapFile heapFile, long txId, LogRecord change) throws IOException {
+        TableIndexes table = getTableIndexes(change.table());
+        if (table == null || table.indexes.isEmpty()) {
+            heapFile.undo(txId, change);
+            return;
+        }
+
+        synchronized (table) {
+            heapFile.undo(txId, change);
+            if (change.type() == LogRecord.Type.INSERT) {
+                removeEntries(table, Row.decode(table.schema, change.after()), change.recordId());
+            } else {
+                addEntries(table, Row.decode(table.schema, change.before()), change.recordId());
+            }
+        }
     }
 
     /**
-     * Rebuilds the index for a table from the provided data.
+     * Discards the index files of a table after its records were changed without them (e.g. replaced
+     * wholesale or rolled back during recovery). The indexes stay defined and are rebuilt on next use.
      *
-     * @param tableName The table name.
-     * @param data      The table data.
+     * @param tableName The name of the table.
+     * @throws IOException if an index file cannot be deleted.
      */
-    public void rebuildIndex(String tableName, List<String> data) {
-        // Clear existing index for this table
-        tableIndexes.remove(tableName);
-        tableIndexes.put(tableName, new TreeMap<>());
+    void invalidate(String tableName) throws IOException {
+        synchronized (openLock(tableName)) {
+            TableIndexes table;
+            synchronized (tables) {
+                table = tables.remove(tableName);
+            }
+            if (table != null) {
+                synchronized (table) {
+                    for (Index index : table.indexes) {
+                        index.index().drop();
+                    }
+                }
+                return;
+            }
+            deleteIndexFiles(tableName);
+        }
+    }
 
-        // Skip the schema row (index 0)
-        for (int i = 1; i < data.size(); i++) {
-            String row = data.get(i);
-            String[] values = row.split(",");
+    /**
+     * Deletes the index files of a table whose indexes are not open, e.g. while its table file is being
+     * upgraded. The indexes stay defined and are rebuilt on next use.
+     *
+     * @param tableName The name of the table.
+     * @throws IOException if an index file cannot be deleted.
+     */
+    void deleteIndexFiles(String tableName) throws IOException {
+        Files.deleteIfExists(indexFile(tableName, PRIMARY_INDEX).toPath());
+        for (String indexName : readDefinitions(tableName).keySet()) {
+            Files.deleteIfExists(indexFile(tableName, indexName).toPath());
+        }
+    }
+
+    /**
+     * Writes every open index back to disk and marks it clean.
+     * Used by the checkpointer after the tables themselves were written.
+     *
+     * @throws IOException if an index cannot be written.
+     */
+    void flush() throws IOException {
+        List<TableIndexes> open;
+        synchronized (tables) {
+            open = new ArrayList<>(tables.values());
+        }
+        for (TableIndexes table : open) {
+            for (Index index : table.indexes) {
+                index.index().flush();
+            }
+        }
+    }
+
+    /**
+     * Returns the open indexes of a table, opening (and if needed rebuilding) them on first use.
+     *
+     * @return The indexes, or null if the table is not a row-format table.
+     */
+    private TableIndexes getTableIndexes(String tableName) throws IOException {
+        synchronized (tables) {
+            TableIndexes table = tables.get(tableName);
+            if (table != null) {
+                return table;
+            }
+        }
+
+        // Only users of this table wait while its indexes are opened and rebuilt
+        synchronized (openLock(tableName)) {
+            TableIndexes table;
+            synchronized (tables) {
+                table = tables.get(tableName);
+            }
+            if (table != null) {
+                return table;
+            }
+
+            TableSchema schema = storageManager.getTableSchema(tableName);
+            if (schema == null || storageManager.getHeapFile(tableName) == null) {
+                return null;
+            }
 
-            try {
-                int id = Integer.parseInt(values[0].trim());
-                tableIndexes.get(tableName).put(id, row);
-            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
-                // Skip rows that don't have a valid ID in the first column
+            table = new TableIndexes(schema);
+            if (schema.getPrimaryKey() >= 0) {
+                table.indexes.add(openIndex(tableName, schema,
+                        new Definition(PRIMARY_INDEX, new int[]{schema.getPrimaryKey()}, true, IndexType.BTREE)));
             }
+            for (Map.Entry<String, String[]> entry : readDefinitions(tableName).entrySet()) {
+                try {
+                    String[] definition = entry.getValue();
+                    int[] ordinals = resolveColumns(schema, Arrays.asList(definition[0].split(",")));
+                    IndexType type = definition[1] == null ? IndexType.BTREE : IndexType.parse(definition[1]);
+                    table.indexes.add(openIndex(tableName, schema, new Definition(entry.getKey(), ordinals, false, type)));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Warning: Skipping index '" + entry.getKey() + "' of table '" + tableName + "': " + e.getMessage());
+                }
+            }
+
+            List<Index> stale = new ArrayList<>();
+            for (Index index : table.indexes) {
+                if (!index.index().isClean()) {
+                    stale.add(index);
+                }
+            }
+            if (!stale.isEmpty()) {
+                fill(tableName, schema, stale);
+            }
+
+            synchronized (tables) {
+                tables.put(tableName, table);
+            }
+            return table;
+        }
+    }
+
+    private Object openLock(String tableName) {
+        synchronized (tables) {
+            return openLocks.computeIfAbsent(tableName, name -> new Object());
+        }
+    }
+
+    private Index openIndex(String tableName, TableSchema schema, Definition definition) throws IOException {
+        RecordIndex index = switch (definition.type()) {
+            case BTREE -> new TreeIndex(indexFile(tableName, definition.name()), bufferPool, schema,
+                    definition.ordinals(), definition.unique());
+            case HASH -> new HashIndex(schema, definition.ordinals());
+            case BITMAP -> new BitmapIndex(schema, definition.ordinals());
+        };
+        return new Index(definition, index);
+    }
+
+    /**
+     * The entries collected from one run of pages, one builder per index being filled.
+     */
+    private record Run(List<RecordIndex.Builder> builders, long skipped) {
+    }
+
+    /**
+     * Empties indexes and refills them from the records of their table in a single scan.
+     * Tables larger than one run of pages are scanned by parallel tasks, whose runs are merged in table order.
+     */
+    private void fill(String tableName, TableSchema schema, List<Index> indexes) throws IOException {
+        for (Index index : indexes) {
+            index.index().clear();
         }
 
-        System.out.println("Rebuilt index for table " + tableName + " with " +
-                (tableIndexes.get(tableName).size()) + " entries");
+        HeapFile heapFile = storageManager.getHeapFile(tableName);
+        int pageCount = heapFile.getPageCount();
+        int dataPages = Math.max(0, pageCount - 1);
+        List<Run> runs = new ArrayList<>();
+        int tasks = (dataPages + PAGES_PER_TASK - 1) / PAGES_PER_TASK;
+        Build build = new Build(dataPages, Math.max(1, tasks));
+        synchronized (tables) {
+            builds.put(tableName, build);
+        }
+        if (tasks <= 1) {
+            runs.add(scan(heapFile, schema, indexes, 1, pageCount));
+            build.pagesScanned.set(dataPages);
+        } else {
+            List<ForkJoinTask<Run>> scans = new ArrayList<>();
+            for (int first = 1; first < pageCount; first += PAGES_PER_TASK) {
+                int from = first;
+                int to = Math.min(pageCount, first + PAGES_PER_TASK);
+                scans.add(ForkJoinPool.commonPool().submit(() -> {
+                    Run run = scan(heapFile, schema, indexes, from, to);
+                    build.pagesScanned.addAndGet(to - from);
+                    return run;
+                }));
+            }
+            for (ForkJoinTask<Run> scan : scans) {
+                try {
+                    runs.add(scan.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while building the indexes of table '" + tableName + "'.", e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException cause) {
+                        throw cause;
+                    }
+                    if (e.getCause() instanceof RuntimeException cause) {
+                        throw cause;
+                    }
+                    throw new IOException(e.getCause());
+                }
+            }
+        }
+
+        long skipped = 0;
+        for (Run run : runs) {
+            skipped += run.skipped();
+        }
+        for (int i = 0; i < indexes.size(); i++) {
+            List<RecordIndex.Builder> builders = new ArrayList<>();
+            for (Run run : runs) {
+                builders.add(run.builders().get(i));
+            }
+            RecordIndex index = indexes.get(i).index();
+            skipped += index.load(builders);
+            index.flush();
+        }
+
+        long entries = 0;
+        for (Index index : indexes) {
+            entries += index.index().size();
+        }
+        build.entries = entries;
+        build.finish = System.nanoTime();
+        if (skipped > 0) {
+            System.err.println("Warning: " + skipped + " index entries of table '" + tableName + "' were skipped (missing value or duplicate primary key).");
+        }
+    }
+
+    /**
+     * Collects the entries of the records in a range of pages.
+     */
+    private static Run scan(HeapFile heapFile, TableSchema schema, List<Index> indexes, int firstPage, int endPage)
+            throws IOException {
+        List<RecordIndex.Builder> builders = new ArrayList<>();
+        for (Index index : indexes) {
+            builders.add(index.index().newBuilder());
+        }
+
+        long skipped = 0;
+        RecordCursor cursor = heapFile.openCursor(firstPage, endPage);
+        while (cursor.next()) {
+            Row row = Row.decode(schema, cursor.getRecord());
+            for (RecordIndex.Builder builder : builders) {
+                if (!builder.add(row, cursor.getRecordId())) {
+                    skipped++;
+                }
+            }
+        }
+        for (RecordIndex.Builder builder : builders) {
+            builder.finish();
+        }
+        return new Run(builders, skipped);
+    }
+
+    private void addEntries(TableIndexes table, Row row, long recordId) {
+        for (Index index : table.indexes) {
+            if (!index.index().add(row, recordId) && index.definition().unique()) {
+                System.err.println("Warning: Duplicate key restored in index '" + index.definition().name() + "'.");
+            }
+        }
+    }
+
+    private void removeEntries(TableIndexes table, Row row, long recordId) {
+        for (Index index : table.indexes) {
+            index.index().remove(row, recordId);
+        }
+    }
+
+    private static int[] resolveColumns(TableSchema schema, List<String> columnNames) {
+        int[] ordinals = new int[columnNames.size()];
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < ordinals.length; i++) {
+            String columnName = columnNames.get(i).trim();
+            ordinals[i] = schema.indexOf(columnName);
+            if (ordinals[i] < 0) {
+                throw new IllegalArgumentException("Column '" + columnName + "' not found in table.");
+            }
+            if (!seen.add(ordinals[i])) {
+                throw new IllegalArgumentException("Column '" + columnName + "' appears twice in the index.");
+            }
+        }
+        if (ordinals.length == 0) {
+            throw new IllegalArgumentException("An index needs at least one column.");
+        }
+        return ordinals;
+    }
+
+    private File indexFile(String tableName, String indexName) {
+        return new File(dataDirectory + tableName + "." + indexName.toLowerCase() + INDEX_EXTENSION);
+    }
+
+    /**
+     * Reads the secondary index definitions of a table.
+     *
+     * @return Index name -> {comma-separated column names, index type or null}, in creation order.
+     */
+    private Map<String, String[]> readDefinitions(String tableName) {
+        Map<String, String[]> definitions = new LinkedHashMap<>();
+        File file = new File(dataDirectory + tableName + DEFINITIONS_EXTENSION);
+        if (!file.exists()) {
+            return definitions;
+        }
+
+        try {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                Matcher matcher = DEFINITION_ENTRY.matcher(line.trim());
+                if (matcher.matches()) {
+                    definitions.put(matcher.group(1), new String[]{matcher.group(2), matcher.group(3)});
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading indexes of table '" + tableName + "': " + e.getMessage());
+        }
+        return definitions;
+    }
+
+    /**
+     * Writes the secondary index definitions of a table to a temporary file and atomically replaces the old list.
+     */
+    private void saveDefinitions(String tableName, TableIndexes table) throws IOException {
+        File file = new File(dataDirectory + tableName + DEFINITIONS_EXTENSION);
+        File tempFile = new File(file.getPath() + ".tmp");
+
+        try (FileOutputStream out = new FileOutputStream(tempFile);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (Index index : table.indexes) {
+                Definition definition = index.definition();
+                if (definition.unique()) {
+                    continue; // The primary key index is defined by the schema
+                }
+                StringJoiner columns = new StringJoiner(", ");
+                for (int ordinal : definition.ordinals()) {
+                    columns.add(table.schema.getColumnName(ordinal));
+                }
+                writer.write(definition.name() + "(" + columns + ")"
+                        + (definition.type() == IndexType.BTREE ? "" : " USING " + definition.type()) + "\n");
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 }
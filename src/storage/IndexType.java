@@ -0,0 +1,29 @@
+package storage;
+
+/**
+ * Structure of an index, chosen with CREATE INDEX ... USING ....
+ */
+public enum IndexType {
+    /** A persistent B+tree, for equality and range lookups (the default). */
+    BTREE,
+    /** An in-memory hash table, for equality lookups only. */
+    HASH,
+    /** An in-memory bitmap of rows per distinct value, for columns with few distinct values. */
+    BITMAP;
+
+    /**
+     * Parses an index type name.
+     *
+     * @param name The type name (e.g., "hash").
+     * @return The index type.
+     * @throws IllegalArgumentException if the type is not supported.
+     */
+    public static IndexType parse(String name) {
+        return switch (name.trim().toUpperCase()) {
+            case "BTREE", "B-TREE" -> BTREE;
+            case "HASH" -> HASH;
+            case "BITMAP" -> BITMAP;
+            default -> throw new IllegalArgumentException("Unsupported index type '" + name.trim() + "'. Use 'btree', 'hash' or 'bitmap'.");
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package storage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One entry of the write-ahead log.
+ * - INSERT and DELETE describe a change to one record of a row-format table, with the record text
+ *   needed to redo it (after) or undo it (before).
+ * - Compensation records are written while undoing a change; they are redone but never undone themselves.
+ * - COMMIT and ABORT end a transaction; CHECKPOINT marks the position recovery may start from.
+ *
+ * @param lsn          The log position of the record, or 0 before it is appended.
+ * @param txId         The transaction that made the change (0 for checkpoints).
+ * @param type         The kind of record.
+ * @param compensation True if the record undoes an earlier change.
+ * @param table        The table changed (e.g., "db.table"), or null.
+ * @param recordId     The record id changed; for checkpoints, the LSN recovery starts from.
+ * @param before       The record text before the change, or null.
+ * @param after        The record text after the change, or null.
+ */
+public record LogRecord(long lsn, long txId, Type type, boolean compensation,
+                        String table, long recordId, String before, String after) {
+
+    public enum Type {
+        INSERT, DELETE, COMMIT, ABORT, CHECKPOINT
+    }
+
+    public static LogRecord insert(long txId, String table, long recordId, String record) {
+        return new LogRecord(0, txId, Type.INSERT, false, table, recordId, null, record);
+    }
+
+    public static LogRecord delete(long txId, String table, long recordId, String record) {
+        return new LogRecord(0, txId, Type.DELETE, false, table, recordId, record, null);
+    }
+
+    public static LogRecord commit(long txId) {
+        return new LogRecord(0, txId, Type.COMMIT, false, null, 0, null, null);
+    }
+
+    public static LogRecord abort(long txId) {
+        return new LogRecord(0, txId, Type.ABORT, false, null, 0, null, null);
+    }
+
+    public static LogRecord checkpoint(long startLsn) {
+        return new LogRecord(0, 0, Type.CHECKPOINT, false, null, startLsn, null, null);
+    }
+
+    /**
+     * Returns the LSN recovery starts reading from, for CHECKPOINT records.
+     *
+     * @return The start LSN.
+     */
+    public long startLsn() {
+        return recordId;
+    }
+
+    /**
+     * Returns a copy of this record marked as the compensation of an earlier change.
+     *
+     * @return The compensation record.
+     */
+    public LogRecord asCompensation() {
+        return new LogRecord(lsn, txId, type, true, table, recordId, before, after);
+    }
+
+    LogRecord withLsn(long lsn) {
+        return new LogRecord(lsn, txId, type, compensation, table, recordId, before, after);
+    }
+
+    /**
+     * Serializes the record body (everything except the LSN, which is its position in the log).
+     *
+     * @return The encoded body, ready for reading.
+     */
+    ByteBuffer encode() {
+        byte[] tableBytes = bytesOf(table);
+        byte[] beforeBytes = bytesOf(before);
+        byte[] afterBytes = bytesOf(after);
+
+        ByteBuffer body = ByteBuffer.allocate(8 + 1 + 1 + 8 + 12 + length(tableBytes) + length(beforeBytes) + length(afterBytes));
+        body.putLong(txId).put((byte) type.ordinal()).put((byte) (compensation ? 1 : 0)).putLong(recordId);
+        putBytes(body, tableBytes);
+        putBytes(body, beforeBytes);
+        putBytes(body, afterBytes);
+        return body.flip();
+    }
+
+    /**
+     * Reads a record body written by encode.
+     *
+     * @param lsn  The log position the body was read from.
+     * @param body The encoded body.
+     * @return The record.
+     */
+    static LogRecord decode(long lsn, ByteBuffer body) {
+        long txId = body.getLong();
+        Type type = Type.values()[body.get()];
+        boolean compensation = body.get() != 0;
+        long recordId = body.getLong();
+        String table = getString(body);
+        String before = getString(body);
+        String after = getString(body);
+        return new LogRecord(lsn, txId, type, compensation, table, recordId, before, after);
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer body, byte[] bytes) {
+        body.putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) body.put(bytes);
+    }
+
+    private static String getString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
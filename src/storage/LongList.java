@@ -0,0 +1,105 @@
+package storage;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive longs, e.g. record ids, so index code does not box every element.
+ */
+public final class LongList {
+    private long[] elements;
+    private int size;
+
+    public LongList() {
+        this(16);
+    }
+
+    public LongList(int capacity) {
+        this.elements = new long[Math.max(capacity, 1)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return elements[index];
+    }
+
+    public void set(int index, long value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        elements[index] = value;
+    }
+
+    public void add(long value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size++] = value;
+    }
+
+    /**
+     * Inserts a value, shifting later elements right.
+     */
+    public void add(int index, long value) {
+        if (index > size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = value;
+        size++;
+    }
+
+    /**
+     * Appends the elements of another list within [from, to).
+     */
+    public void addAll(LongList other, int from, int to) {
+        int count = to - from;
+        if (size + count > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(size + count, size * 2));
+        }
+        System.arraycopy(other.elements, from, elements, size, count);
+        size += count;
+    }
+
+    /**
+     * Removes a value, shifting later elements left.
+     *
+     * @return The removed value.
+     */
+    public long remove(int index) {
+        long value = get(index);
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        return value;
+    }
+
+    /**
+     * Drops every element from the given index on.
+     */
+    public void truncate(int newSize) {
+        size = Math.min(size, newSize);
+    }
+
+    /**
+     * Sorts the elements in ascending order.
+     */
+    public void sort() {
+        Arrays.sort(elements, 0, size);
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
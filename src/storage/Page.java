@@ -0,0 +1,263 @@
+package storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed-size slotted page used by the binary table format.
+ * Layout: [slot count][record area start][page LSN][slot directory ...] free space [records ...]
+ * The slot directory grows forward from the header while records grow backward from the end of the page.
+ * Each slot stores the record offset and length; a zero length marks a deleted (reusable) slot.
+ * The page LSN is the log position of the last change to the page, see WriteAheadLog.
+ */
+public class Page {
+    public static final int PAGE_SIZE = 4096;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 4;
+
+    /** Largest record that fits on an empty page. */
+    public static final int MAX_RECORD_SIZE = PAGE_SIZE - HEADER_SIZE - SLOT_SIZE;
+
+    private final int pageNo;
+    private final ByteBuffer data;
+
+    /**
+     * Wraps the raw bytes of a page read from disk.
+     *
+     * @param pageNo The page number within its file.
+     * @param data   The page contents (exactly PAGE_SIZE bytes).
+     */
+    public Page(int pageNo, ByteBuffer data) {
+        this.pageNo = pageNo;
+        this.data = data;
+    }
+
+    /**
+     * Creates a new, empty page.
+     *
+     * @param pageNo The page number within its file.
+     * @return An initialized empty page.
+     */
+    public static Page empty(int pageNo) {
+        Page page = new Page(pageNo, ByteBuffer.allocate(PAGE_SIZE));
+        page.setSlotCount(0);
+        page.setRecordStart(PAGE_SIZE);
+        return page;
+    }
+
+    public int getPageNo() {
+        return pageNo;
+    }
+
+    /**
+     * Returns the backing buffer, positioned at zero, for writing the page to disk.
+     *
+     * @return The page contents.
+     */
+    public ByteBuffer getData() {
+        return data.duplicate().clear();
+    }
+
+    public int getSlotCount() {
+        return data.getInt(0);
+    }
+
+    public long getPageLsn() {
+        return data.getLong(8);
+    }
+
+    public void setPageLsn(long lsn) {
+        data.putLong(8, lsn);
+    }
+
+    /**
+     * Inserts a record, reusing a deleted slot when possible and compacting if the free space is fragmented.
+     *
+     * @param record The record bytes.
+     * @return The slot number, or -1 if the page does not have enough free space.
+     */
+    public int insert(byte[] record) {
+        int slot = findFreeSlot();
+        int needed = record.length + (slot == getSlotCount() ? SLOT_SIZE : 0);
+
+        if (needed > getFreeSpace()) {
+            return -1;
+        }
+        if (needed > getContiguousFreeSpace()) {
+            compact();
+        }
+
+        int offset = getRecordStart() - record.length;
+        data.put(offset, record);
+        setRecordStart(offset);
+
+        if (slot == getSlotCount()) {
+            setSlotCount(slot + 1);
+        }
+        setSlot(slot, offset, record.length);
+        return slot;
+    }
+
+    /**
+     * Inserts a record into a specific slot, e.g. to restore a deleted record at its old record id.
+     *
+     * @param slot   The slot number; it must be empty or past the end of the slot directory.
+     * @param record The record bytes.
+     * @return True if the record was placed, false if the slot is in use or the page lacks space.
+     */
+    public boolean insertAt(int slot, byte[] record) {
+        int slotCount = getSlotCount();
+        if (slot < 0 || (slot < slotCount && getSlotLength(slot) != 0)) {
+            return false;
+        }
+
+        int needed = record.length + Math.max(0, slot + 1 - slotCount) * SLOT_SIZE;
+        if (needed > getFreeSpace()) {
+            return false;
+        }
+        if (needed > getContiguousFreeSpace()) {
+            compact();
+        }
+
+        int offset = getRecordStart() - record.length;
+        data.put(offset, record);
+        setRecordStart(offset);
+
+        for (int i = slotCount; i < slot; i++) {
+            setSlot(i, 0, 0); // New slots before the target stay empty
+        }
+        if (slot >= slotCount) {
+            setSlotCount(slot + 1);
+        }
+        setSlot(slot, offset, record.length);
+        return true;
+    }
+
+    /**
+     * Reads a record.
+     *
+     * @param slot The slot number.
+     * @return A copy of the record bytes, or null if the slot is empty.
+     */
+    public byte[] get(int slot) {
+        if (slot < 0 || slot >= getSlotCount()) {
+            return null;
+        }
+        int length = getSlotLength(slot);
+        if (length == 0) {
+            return null;
+        }
+        byte[] record = new byte[length];
+        data.get(getSlotOffset(slot), record);
+        return record;
+    }
+
+    /**
+     * Returns where a record starts within the page, for reading it in place.
+     *
+     * @param slot The slot number.
+     * @return The byte offset of the record, or -1 if the slot is empty.
+     */
+    public int getRecordOffset(int slot) {
+        if (slot < 0 || slot >= getSlotCount() || getSlotLength(slot) == 0) {
+            return -1;
+        }
+        return getSlotOffset(slot);
+    }
+
+    /**
+     * Returns the length of a record.
+     *
+     * @param slot The slot number.
+     * @return The record length in bytes, or 0 if the slot is empty.
+     */
+    public int getRecordLength(int slot) {
+        if (slot < 0 || slot >= getSlotCount()) {
+            return 0;
+        }
+        return getSlotLength(slot);
+    }
+
+    /**
+     * Deletes a record, leaving its slot available for reuse.
+     *
+     * @param slot The slot number.
+     * @return True if a record was deleted.
+     */
+    public boolean delete(int slot) {
+        if (slot < 0 || slot >= getSlotCount() || getSlotLength(slot) == 0) {
+            return false;
+        }
+        setSlot(slot, 0, 0);
+        return true;
+    }
+
+    /**
+     * Returns the free space available to new records, including space reclaimable by compaction.
+     *
+     * @return Free bytes on the page.
+     */
+    public int getFreeSpace() {
+        int used = HEADER_SIZE + getSlotCount() * SLOT_SIZE;
+        for (int i = 0; i < getSlotCount(); i++) {
+            used += getSlotLength(i);
+        }
+        return PAGE_SIZE - used;
+    }
+
+    /**
+     * Moves all live records to the end of the page so the free space is contiguous.
+     */
+    private void compact() {
+        byte[][] records = new byte[getSlotCount()][];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = get(i);
+        }
+
+        int offset = PAGE_SIZE;
+        for (int i = 0; i < records.length; i++) {
+            if (records[i] == null) continue;
+            offset -= records[i].length;
+            data.put(offset, records[i]);
+            setSlot(i, offset, records[i].length);
+        }
+        setRecordStart(offset);
+    }
+
+    private int findFreeSlot() {
+        for (int i = 0; i < getSlotCount(); i++) {
+            if (getSlotLength(i) == 0) {
+                return i;
+            }
+        }
+        return getSlotCount();
+    }
+
+    private int getContiguousFreeSpace() {
+        return getRecordStart() - HEADER_SIZE - getSlotCount() * SLOT_SIZE;
+    }
+
+    private void setSlotCount(int count) {
+        data.putInt(0, count);
+    }
+
+    private int getRecordStart() {
+        return data.getInt(4);
+    }
+
+    private void setRecordStart(int offset) {
+        data.putInt(4, offset);
+    }
+
+    private int getSlotOffset(int slot) {
+        return data.getShort(HEADER_SIZE + slot * SLOT_SIZE) & 0xFFFF;
+    }
+
+    private int getSlotLength(int slot) {
+        return data.getShort(HEADER_SIZE + slot * SLOT_SIZE + 2) & 0xFFFF;
+    }
+
+    private void setSlot(int slot, int offset, int length) {
+        data.putShort(HEADER_SIZE + slot * SLOT_SIZE, (short) offset);
+        data.putShort(HEADER_SIZE + slot * SLOT_SIZE + 2, (short) length);
+    }
+}
@@ -0,0 +1,121 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file made of fixed-size pages, addressed by page number.
+ * Performs raw page I/O only; caching is the responsibility of the BufferPool.
+ */
+public class PageFile implements Closeable {
+    private final File file;
+    private final FileChannel channel;
+    private int pageCount;
+
+    /**
+     * Opens (or creates) a page file.
+     *
+     * @param file The file on disk.
+     * @throws IOException if the file cannot be opened.
+     */
+    public PageFile(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.pageCount = (int) (channel.size() / Page.PAGE_SIZE);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Reserves the next page number at the end of the file.
+     *
+     * @return The new page number.
+     */
+    public synchronized int allocatePage() {
+        return pageCount++;
+    }
+
+    /**
+     * Reads a page from disk.
+     *
+     * @param pageNo The page number.
+     * @return The page contents; pages past the end of the file read as empty pages.
+     * @throws IOException if the read fails.
+     */
+    public synchronized ByteBuffer readPage(int pageNo) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Page.PAGE_SIZE);
+        long position = (long) pageNo * Page.PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) break;
+        }
+        return buffer.clear();
+    }
+
+    /**
+     * Writes a page to disk.
+     *
+     * @param pageNo The page number.
+     * @param data   The page contents.
+     * @throws IOException if the write fails.
+     */
+    public synchronized void writePage(int pageNo, ByteBuffer data) throws IOException {
+        ByteBuffer buffer = data.duplicate().clear();
+        long position = (long) pageNo * Page.PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+        pageCount = Math.max(pageCount, pageNo + 1);
+    }
+
+    /**
+     * Maps a range of pages read-only into memory.
+     * Only pages already written to the file can be mapped.
+     *
+     * @param firstPage The first page to map.
+     * @param pageCount The number of pages to map.
+     * @return The mapped pages, starting at offset zero.
+     * @throws IOException if the mapping fails.
+     */
+    public MappedByteBuffer map(int firstPage, int pageCount) throws IOException {
+        long position = (long) firstPage * Page.PAGE_SIZE;
+        long size = Math.min((long) pageCount * Page.PAGE_SIZE, Math.max(0, channel.size() - position));
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     * Discards every page, leaving an empty file.
+     *
+     * @throws IOException if the file cannot be truncated.
+     */
+    public synchronized void truncate() throws IOException {
+        channel.truncate(0);
+        pageCount = 0;
+    }
+
+    /**
+     * Forces written pages to the storage device.
+     *
+     * @throws IOException if the sync fails.
+     */
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
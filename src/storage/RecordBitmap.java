@@ -0,0 +1,369 @@
+package storage;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of record ids, in the manner of a roaring bitmap.
+ * - A record id is split into its page number (the high part) and its slot (the low 16 bits). Each page
+ *   with members has one container holding its slots.
+ * - A container with at most 4096 slots is a sorted char array; a fuller one is a 65536-bit bitmap.
+ * - Intersections and unions combine matching containers directly, so AND and OR of the rows of several
+ *   values cost time in proportion to the containers, not the rows.
+ * Record ids iterate in ascending order, i.e. in table order.
+ */
+public final class RecordBitmap {
+    private static final int ARRAY_LIMIT = 4096; // Containers with more slots are bitmaps
+
+    private int[] pages = new int[4];              // Sorted page numbers
+    private Container[] containers = new Container[4];
+    private int size;                              // Number of containers in use
+
+    /**
+     * The slots of one page.
+     */
+    private interface Container {
+        Container add(char slot);
+
+        Container remove(char slot);
+
+        boolean contains(char slot);
+
+        int cardinality();
+
+        void appendTo(LongList recordIds, long page);
+    }
+
+    /**
+     * A sorted array of slots.
+     */
+    private static final class ArrayContainer implements Container {
+        char[] slots;
+        int cardinality;
+
+        ArrayContainer(char[] slots, int cardinality) {
+            this.slots = slots;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public Container add(char slot) {
+            int position = Arrays.binarySearch(slots, 0, cardinality, slot);
+            if (position >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                return toBitmap().add(slot);
+            }
+            position = -position - 1;
+            if (cardinality == slots.length) {
+                slots = Arrays.copyOf(slots, Math.min(ARRAY_LIMIT, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(slots, position, slots, position + 1, cardinality - position);
+            slots[position] = slot;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        public Container remove(char slot) {
+            int position = Arrays.binarySearch(slots, 0, cardinality, slot);
+            if (position >= 0) {
+                System.arraycopy(slots, position + 1, slots, position, cardinality - position - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean contains(char slot) {
+            return Arrays.binarySearch(slots, 0, cardinality, slot) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public void appendTo(LongList recordIds, long page) {
+            for (int i = 0; i < cardinality; i++) {
+                recordIds.add(page << 16 | slots[i]);
+            }
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.words[slots[i] >>> 6] |= 1L << slots[i];
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+    }
+
+    /**
+     * One bit per slot of the page.
+     */
+    private static final class BitmapContainer implements Container {
+        final long[] words = new long[1024];
+        int cardinality;
+
+        @Override
+        public Container add(char slot) {
+            long word = words[slot >>> 6];
+            long updated = word | 1L << slot;
+            if (updated != word) {
+                words[slot >>> 6] = updated;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public Container remove(char slot) {
+            long word = words[slot >>> 6];
+            long updated = word & ~(1L << slot);
+            if (updated != word) {
+                words[slot >>> 6] = updated;
+                cardinality--;
+            }
+            return cardinality <= ARRAY_LIMIT ? toArray() : this;
+        }
+
+        @Override
+        public boolean contains(char slot) {
+            return (words[slot >>> 6] & 1L << slot) != 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public void appendTo(LongList recordIds, long page) {
+            for (int i = 0; i < words.length; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    recordIds.add(page << 16 | (i << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+
+        ArrayContainer toArray() {
+            char[] slots = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    slots[count++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(slots, count);
+        }
+    }
+
+    /**
+     * Adds a record id.
+     *
+     * @param recordId The record id.
+     */
+    public void add(long recordId) {
+        int page = (int) (recordId >>> 16);
+        int position = find(page);
+        if (position < 0) {
+            position = -position - 1;
+            insertContainer(position, page, new ArrayContainer(new char[4], 0));
+        }
+        containers[position] = containers[position].add((char) recordId);
+    }
+
+    /**
+     * Removes a record id, if present.
+     *
+     * @param recordId The record id.
+     */
+    public void remove(long recordId) {
+        int position = find((int) (recordId >>> 16));
+        if (position < 0) {
+            return;
+        }
+        containers[position] = containers[position].remove((char) recordId);
+        if (containers[position].cardinality() == 0) {
+            System.arraycopy(pages, position + 1, pages, position, size - position - 1);
+            System.arraycopy(containers, position + 1, containers, position, size - position - 1);
+            containers[--size] = null;
+        }
+    }
+
+    public boolean contains(long recordId) {
+        int position = find((int) (recordId >>> 16));
+        return position >= 0 && containers[position].contains((char) recordId);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of record ids in the set.
+     *
+     * @return The cardinality.
+     */
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns the record ids in both sets.
+     *
+     * @param other The other set.
+     * @return A new set.
+     */
+    public RecordBitmap and(RecordBitmap other) {
+        RecordBitmap result = new RecordBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (pages[i] < other.pages[j]) {
+                i++;
+            } else if (pages[i] > other.pages[j]) {
+                j++;
+            } else {
+                Container container = and(containers[i], other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.insertContainer(result.size, pages[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the record ids in either set.
+     *
+     * @param other The other set.
+     * @return A new set.
+     */
+    public RecordBitmap or(RecordBitmap other) {
+        RecordBitmap result = new RecordBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && pages[i] < other.pages[j])) {
+                result.insertContainer(result.size, pages[i], copy(containers[i]));
+                i++;
+            } else if (i == size || pages[i] > other.pages[j]) {
+                result.insertContainer(result.size, other.pages[j], copy(other.containers[j]));
+                j++;
+            } else {
+                result.insertContainer(result.size, pages[i], or(containers[i], other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lists the record ids in ascending order.
+     *
+     * @return The record ids.
+     */
+    public LongList toList() {
+        LongList recordIds = new LongList((int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, cardinality())));
+        for (int i = 0; i < size; i++) {
+            containers[i].appendTo(recordIds, pages[i]);
+        }
+        return recordIds;
+    }
+
+    private int find(int page) {
+        return Arrays.binarySearch(pages, 0, size, page);
+    }
+
+    private void insertContainer(int position, int page, Container container) {
+        if (size == pages.length) {
+            pages = Arrays.copyOf(pages, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(pages, position, pages, position + 1, size - position);
+        System.arraycopy(containers, position, containers, position + 1, size - position);
+        pages[position] = page;
+        containers[position] = container;
+        size++;
+    }
+
+    private static Container copy(Container container) {
+        if (container instanceof ArrayContainer array) {
+            return new ArrayContainer(Arrays.copyOf(array.slots, array.cardinality), array.cardinality);
+        }
+        BitmapContainer bitmap = new BitmapContainer();
+        System.arraycopy(((BitmapContainer) container).words, 0, bitmap.words, 0, bitmap.words.length);
+        bitmap.cardinality = container.cardinality();
+        return bitmap;
+    }
+
+    private static Container and(Container left, Container right) {
+        if (left instanceof BitmapContainer a && right instanceof BitmapContainer b) {
+            BitmapContainer result = new BitmapContainer();
+            for (int i = 0; i < result.words.length; i++) {
+                result.words[i] = a.words[i] & b.words[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result.cardinality <= ARRAY_LIMIT ? result.toArray() : result;
+        }
+
+        // At least one side is an array: keep its slots that the other side contains
+        ArrayContainer array = left instanceof ArrayContainer a ? a : (ArrayContainer) right;
+        Container other = array == left ? right : left;
+        char[] slots = new char[array.cardinality];
+        int count = 0;
+        for (int i = 0; i < array.cardinality; i++) {
+            if (other.contains(array.slots[i])) {
+                slots[count++] = array.slots[i];
+            }
+        }
+        return new ArrayContainer(slots, count);
+    }
+
+    private static Container or(Container left, Container right) {
+        if (left instanceof ArrayContainer a && right instanceof ArrayContainer b
+                && a.cardinality + b.cardinality <= ARRAY_LIMIT) {
+            char[] slots = new char[a.cardinality + b.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < a.cardinality || j < b.cardinality) {
+                if (j == b.cardinality || (i < a.cardinality && a.slots[i] < b.slots[j])) {
+                    slots[count++] = a.slots[i++];
+                } else if (i == a.cardinality || a.slots[i] > b.slots[j]) {
+                    slots[count++] = b.slots[j++];
+                } else {
+                    slots[count++] = a.slots[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(slots, count);
+        }
+
+        BitmapContainer result = left instanceof ArrayContainer a ? a.toBitmap() : (BitmapContainer) copy(left);
+        if (right instanceof ArrayContainer b) {
+            for (int i = 0; i < b.cardinality; i++) {
+                result.add(b.slots[i]);
+            }
+        } else {
+            long[] words = ((BitmapContainer) right).words;
+            result.cardinality = 0;
+            for (int i = 0; i < result.words.length; i++) {
+                result.words[i] |= words[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+        }
+        return result.cardinality <= ARRAY_LIMIT ? result.toArray() : result;
+    }
+}
@@ -0,0 +1,262 @@
+package storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Forward-only cursor over the records of a heap file, read through a memory mapping of the file.
+ * - Pages are mapped in windows and copied one at a time as the cursor reaches them, so the cursor never
+ *   reads the whole file onto the heap, and a page written back while it is being read cannot change under it.
+ * - Pages with changes still in the buffer pool are copied from the pool instead of the mapping.
+ * - Fields are located and decoded only when asked for, so a filter touches just the bytes it compares.
+ */
+public class RecordCursor {
+    private static final int WINDOW_PAGES = 16384; // 64 MB per mapping
+    private static final int FIRST_DATA_PAGE = 1;
+
+    private final PageFile pageFile;
+    private final BufferPool bufferPool;
+    private final int endPage; // First page past the cursor's range
+
+    private MappedByteBuffer window;
+    private int windowStart = -1;
+    private Page page;
+    private ByteBuffer pageData;
+    private int pageNo;
+    private int slot = -1;
+
+    // Location of the current record and of its fields (found lazily, reused across records)
+    private int recordOffset;
+    private int recordEnd;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private boolean[] fieldQuoted = new boolean[16]; // Quoted values may hold doubled quotes to undo
+    private int fieldsFound;
+    private int scanPosition; // Start of the next field to locate, or -1 past the last field
+
+    /**
+     * Creates a cursor positioned before the first record.
+     *
+     * @param pageFile   The heap file's pages.
+     * @param bufferPool The buffer pool holding pages not yet written back.
+     */
+    RecordCursor(PageFile pageFile, BufferPool bufferPool) {
+        this(pageFile, bufferPool, FIRST_DATA_PAGE, pageFile.getPageCount());
+    }
+
+    /**
+     * Creates a cursor over the records of a range of pages, so several cursors can read one file in parallel.
+     *
+     * @param pageFile   The heap file's pages.
+     * @param bufferPool The buffer pool holding pages not yet written back.
+     * @param firstPage  The first page to read; the header page is always skipped.
+     * @param endPage    The first page past the range.
+     */
+    RecordCursor(PageFile pageFile, BufferPool bufferPool, int firstPage, int endPage) {
+        this.pageFile = pageFile;
+        this.bufferPool = bufferPool;
+        this.pageNo = Math.max(firstPage, FIRST_DATA_PAGE) - 1;
+        this.endPage = Math.min(endPage, pageFile.getPageCount());
+    }
+
+    /**
+     * Advances to the next record.
+     *
+     * @return True if there is a current record, false at the end of the file.
+     * @throws IOException if a page cannot be mapped.
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (page != null) {
+                while (++slot < page.getSlotCount()) {
+                    int offset = page.getRecordOffset(slot);
+                    if (offset >= 0) {
+                        recordOffset = offset;
+                        recordEnd = offset + page.getRecordLength(slot);
+                        fieldsFound = 0;
+                        scanPosition = offset;
+                        return true;
+                    }
+                }
+            }
+
+            if (++pageNo >= endPage) {
+                page = null;
+                return false;
+            }
+            loadPage(pageNo);
+        }
+    }
+
+    /**
+     * Returns the id (page and slot) of the current record.
+     *
+     * @return The record id.
+     */
+    public long getRecordId() {
+        return HeapFile.recordId(pageNo, slot);
+    }
+
+    /**
+     * Decodes the whole current record.
+     *
+     * @return The record text.
+     */
+    public String getRecord() {
+        return decode(recordOffset, recordEnd);
+    }
+
+    /**
+     * Checks whether the current record has a value for a column.
+     *
+     * @param ordinal The column ordinal.
+     * @return True if the record has at least ordinal + 1 fields.
+     */
+    public boolean hasField(int ordinal) {
+        return locateField(ordinal);
+    }
+
+    /**
+     * Decodes one field of the current record, trimmed and unquoted.
+     *
+     * @param ordinal The column ordinal.
+     * @return The value, or null if the record has no such field.
+     */
+    public String getField(int ordinal) {
+        if (!locateField(ordinal)) {
+            return null;
+        }
+        String value = decode(fieldStarts[ordinal], fieldEnds[ordinal]);
+        return fieldQuoted[ordinal] ? value.replace("''", "'") : value;
+    }
+
+    /**
+     * Parses one field of the current record as a number of a numeric column, accepting exactly the values
+     * {@link Row#parseNumber} accepts. Plain integers are parsed directly from the page bytes without
+     * creating a String.
+     *
+     * @param ordinal The column ordinal.
+     * @param type    The column type, INT or FLOAT.
+     * @return The numeric value.
+     * @throws NumberFormatException if the field is missing or not a number of the column type.
+     */
+    public double getNumber(int ordinal, TableSchema.ColumnType type) {
+        if (!locateField(ordinal)) {
+            throw new NumberFormatException("Missing value for column " + ordinal);
+        }
+
+        int start = fieldStarts[ordinal];
+        int end = fieldEnds[ordinal];
+        boolean negative = start < end && pageData.get(start) == '-';
+        int position = negative ? start + 1 : start;
+        long value = 0;
+
+        if (position == end || end - position > 18) {
+            return Row.parseNumber(type, decode(start, end));
+        }
+        for (; position < end; position++) {
+            byte digit = pageData.get(position);
+            if (digit < '0' || digit > '9') {
+                return Row.parseNumber(type, decode(start, end)); // Not a plain integer
+            }
+            value = value * 10 + (digit - '0');
+        }
+        if (type == TableSchema.ColumnType.INT) {
+            long signed = negative ? -value : value;
+            if (signed != (int) signed) {
+                throw new NumberFormatException("Value out of INT range for column " + ordinal);
+            }
+            return signed;
+        }
+        return negative ? -(double) value : value; // "-0" is -0.0, as Double.parseDouble reads it
+    }
+
+    /**
+     * Finds the bounds of fields up to the requested one, trimming spaces and single quotes.
+     * Commas inside a quoted value do not end the field, as in {@link Row#fieldEnd}.
+     */
+    private boolean locateField(int ordinal) {
+        while (fieldsFound <= ordinal) {
+            if (scanPosition < 0) {
+                return false;
+            }
+
+            int end = fieldEnd(scanPosition);
+            int start = scanPosition;
+            int stop = end;
+            while (start < stop && pageData.get(start) == ' ') start++;
+            while (stop > start && pageData.get(stop - 1) == ' ') stop--;
+            boolean quoted = stop - start >= 2 && pageData.get(start) == '\'' && pageData.get(stop - 1) == '\'';
+            if (start < stop && pageData.get(start) == '\'') start++;
+            if (stop > start && pageData.get(stop - 1) == '\'') stop--;
+
+            if (fieldsFound == fieldStarts.length) {
+                fieldStarts = Arrays.copyOf(fieldStarts, fieldsFound * 2);
+                fieldEnds = Arrays.copyOf(fieldEnds, fieldsFound * 2);
+                fieldQuoted = Arrays.copyOf(fieldQuoted, fieldsFound * 2);
+            }
+            fieldStarts[fieldsFound] = start;
+            fieldEnds[fieldsFound] = stop;
+            fieldQuoted[fieldsFound] = quoted;
+            fieldsFound++;
+            scanPosition = end < recordEnd ? end + 1 : -1;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the comma that ends the field starting at a position, or the end of the record.
+     */
+    private int fieldEnd(int start) {
+        int position = start;
+        while (position < recordEnd && pageData.get(position) == ' ') {
+            position++;
+        }
+
+        if (position < recordEnd && pageData.get(position) == '\'') {
+            for (int i = position + 1; i < recordEnd; i++) {
+                if (pageData.get(i) != '\'') {
+                    continue;
+                }
+                if (i + 1 < recordEnd && pageData.get(i + 1) == '\'') {
+                    i++; // A doubled quote
+                    continue;
+                }
+                int next = i + 1;
+                while (next < recordEnd && pageData.get(next) == ' ') {
+                    next++;
+                }
+                if (next == recordEnd || pageData.get(next) == ',') {
+                    return next;
+                }
+            }
+        }
+
+        int end = start;
+        while (end < recordEnd && pageData.get(end) != ',') {
+            end++;
+        }
+        return end;
+    }
+
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        pageData.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void loadPage(int pageNo) throws IOException {
+        slot = -1;
+        if (windowStart < 0 || pageNo >= windowStart + WINDOW_PAGES) {
+            windowStart = pageNo;
+            window = pageFile.map(pageNo, Math.min(WINDOW_PAGES, endPage - pageNo));
+        }
+        int offset = (pageNo - windowStart) * Page.PAGE_SIZE;
+        ByteBuffer mapped = offset + Page.PAGE_SIZE > window.limit() ? null : window.slice(offset, Page.PAGE_SIZE);
+        page = bufferPool.copyPage(pageFile, pageNo, mapped);
+        pageData = page.getData();
+    }
+}
@@ -0,0 +1,130 @@
+package storage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * An index over the records of one table, mapping key column values to record ids.
+ * The IndexManager keeps each index in step with its table, and fills an empty index from runs of
+ * rows collected in parallel (see Builder).
+ */
+interface RecordIndex {
+
+    /**
+     * Collects the entries of one run of rows for a bulk fill. Each builder is used by a single thread.
+     */
+    interface Builder {
+        /**
+         * Collects the entry of a row.
+         *
+         * @param row      The row.
+         * @param recordId The record id of the row.
+         * @return False if a key value is missing.
+         */
+        boolean add(Row row, long recordId);
+
+        /**
+         * Prepares the collected entries for loading, e.g. sorts them, on the thread that collected them.
+         */
+        void finish();
+    }
+
+    /**
+     * Checks that a row can be added before the table is changed, e.g. that a unique key is not taken.
+     *
+     * @param row The row about to be inserted.
+     * @throws IllegalArgumentException if the row cannot be added.
+     */
+    void validate(Row row);
+
+    /**
+     * Adds the entry of a row.
+     *
+     * @param row      The row.
+     * @param recordId The record id of the row.
+     * @return True if added, false if a key value is missing or a unique key is already present.
+     */
+    boolean add(Row row, long recordId);
+
+    /**
+     * Removes the entry of a row.
+     *
+     * @param row      The row, as it was added.
+     * @param recordId The record id of the row.
+     */
+    void remove(Row row, long recordId);
+
+    /**
+     * Finds the rows whose leading key columns equal the given values.
+     *
+     * @param values The unquoted values of the first key columns.
+     * @return The record ids.
+     * @throws NumberFormatException if a value does not parse as its column type.
+     * @throws IllegalArgumentException if the index cannot look up that many columns.
+     */
+    LongList findEqual(String... values);
+
+    /**
+     * Finds the rows whose leading key column lies within a range.
+     *
+     * @param low           The unquoted lower bound, or null for no lower bound.
+     * @param lowInclusive  True if a value equal to the lower bound is included.
+     * @param high          The unquoted upper bound, or null for no upper bound.
+     * @param highInclusive True if a value equal to the upper bound is included.
+     * @return The record ids, or null if the index cannot answer the range.
+     * @throws NumberFormatException if a bound does not parse as the column type.
+     */
+    LongList findRange(String low, boolean lowInclusive, String high, boolean highInclusive);
+
+    /**
+     * Starts collecting the entries of a run of rows.
+     *
+     * @return An empty builder.
+     */
+    Builder newBuilder();
+
+    /**
+     * Fills the empty index from the builders of consecutive runs of rows.
+     *
+     * @param builders The finished builders, in table order.
+     * @return The number of rows left out because their unique key was already taken.
+     * @throws IOException if the index cannot be written.
+     * @throws IllegalArgumentException if a key does not fit the index.
+     */
+    long load(List<Builder> builders) throws IOException;
+
+    /**
+     * Tells whether the index holds an entry for every row of its table and can be used as it is.
+     *
+     * @return False if the index must be refilled from its table.
+     */
+    boolean isClean();
+
+    /**
+     * Removes every entry before the index is refilled from its table.
+     *
+     * @throws IOException if the index cannot be rewritten.
+     */
+    void clear() throws IOException;
+
+    /**
+     * Makes the index durable, if it is stored, and marks it clean.
+     *
+     * @throws IOException if the index cannot be written.
+     */
+    void flush() throws IOException;
+
+    /**
+     * Releases the index and deletes its storage.
+     *
+     * @throws IOException if the index file cannot be deleted.
+     */
+    void drop() throws IOException;
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The entry count.
+     */
+    long size();
+}
@@ -0,0 +1,109 @@
+package storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Brings row-format tables back to a consistent state at startup after a crash (a simplified ARIES).
+ * - Analysis: reads the log and finds the transactions that neither committed nor aborted (the losers).
+ * - Redo: starting at the last checkpoint, repeats every logged change, compensations included,
+ *   on pages whose LSN shows they were not written back after it.
+ * - Undo: rolls back the losers' changes newest first, logging a compensation record for each
+ *   and an ABORT per loser, so a crash during recovery is recovered the same way.
+ * Indexes are not logged: those of tables with rolled back changes are discarded and rebuilt on next use.
+ * The checkpointer discards the log before each checkpoint, so recovery reads only the log written
+ * since the last checkpoint, however large the tables are.
+ */
+class RecoveryManager {
+    private final WriteAheadLog log;
+    private final StorageManager storageManager;
+
+    /**
+     * The changes of an unfinished transaction, and how many of them it already undid before the crash.
+     */
+    private static class Loser {
+        final List<LogRecord> changes = new ArrayList<>();
+        int compensated;
+    }
+
+    RecoveryManager(WriteAheadLog log, StorageManager storageManager) {
+        this.log = log;
+        this.storageManager = storageManager;
+    }
+
+    /**
+     * Runs analysis, redo and undo over the log.
+     *
+     * @return True if any page was changed, false if the tables were already consistent.
+     * @throws IOException if the log or a table cannot be read or written.
+     */
+    boolean recover() throws IOException {
+        List<LogRecord> records = new ArrayList<>();
+        log.forEach(0, records::add);
+
+        // Analysis: redo starts where the last checkpoint says; every transaction's outcome is known
+        long redoLsn = 0;
+        Map<Long, Loser> losers = new HashMap<>();
+        for (LogRecord record : records) {
+            switch (record.type()) {
+                case CHECKPOINT -> redoLsn = record.startLsn();
+                case COMMIT, ABORT -> losers.remove(record.txId());
+                case INSERT, DELETE -> {
+                    Loser loser = losers.computeIfAbsent(record.txId(), id -> new Loser());
+                    if (record.compensation()) {
+                        loser.compensated++;
+                    } else {
+                        loser.changes.add(record);
+                    }
+                }
+            }
+        }
+
+        // Redo: repeat history, so pages look as they did at the crash
+        int redone = 0;
+        for (LogRecord record : records) {
+            if (record.lsn() < redoLsn || (record.type() != LogRecord.Type.INSERT && record.type() != LogRecord.Type.DELETE)) {
+                continue;
+            }
+            HeapFile heapFile = storageManager.getHeapFile(record.table());
+            if (heapFile != null && heapFile.redo(record)) {
+                redone++;
+            }
+        }
+
+        // Undo: compensations undo a loser's changes from the newest, so skip the ones already undone
+        List<LogRecord> undo = new ArrayList<>();
+        for (Loser loser : losers.values()) {
+            undo.addAll(loser.changes.subList(0, Math.max(0, loser.changes.size() - loser.compensated)));
+        }
+        undo.sort(Comparator.comparingLong(LogRecord::lsn).reversed());
+        Set<String> undoneTables = new HashSet<>();
+        for (LogRecord change : undo) {
+            HeapFile heapFile = storageManager.getHeapFile(change.table());
+            if (heapFile != null) {
+                heapFile.undo(change.txId(), change);
+                undoneTables.add(change.table());
+            }
+        }
+        for (String table : undoneTables) {
+            storageManager.getIndexManager().invalidate(table);
+        }
+        for (long txId : losers.keySet()) {
+            log.append(LogRecord.abort(txId));
+        }
+        log.flush();
+
+        if (redone > 0 || !losers.isEmpty()) {
+            System.out.println("Recovered from the log: " + redone + " changes redone, "
+                    + losers.size() + " unfinished transactions rolled back.");
+            return true;
+        }
+        return false;
+    }
+}
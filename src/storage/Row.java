@@ -0,0 +1,259 @@
+package storage;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A table record decoded into typed values.
+ * Rows are decoded once when a table is loaded: INT and FLOAT columns are parsed into primitive
+ * arrays and STRING columns are unquoted, so scans compare values without re-splitting or re-parsing.
+ * The original record text is kept as well, so records are output exactly as stored; a row therefore
+ * takes more memory than its text alone, in exchange for scans that never decode.
+ * Records store values separated by commas; STRING values are quoted, so they may contain commas, and a
+ * quote inside a value is doubled ('O''Brien').
+ */
+public final class Row {
+    private final TableSchema schema;
+    private final String raw;
+    private final int[] ints;
+    private final double[] doubles;
+    private final String[] strings;
+    private final BitSet missing; // Ordinals without a valid value; null if every value is present
+
+    private Row(TableSchema schema, String raw, int[] ints, double[] doubles, String[] strings, BitSet missing) {
+        this.schema = schema;
+        this.raw = raw;
+        this.ints = ints;
+        this.doubles = doubles;
+        this.strings = strings;
+        this.missing = missing;
+    }
+
+    /**
+     * Decodes a stored record according to a schema.
+     * Values that are absent or do not parse as their column type are marked missing.
+     *
+     * @param schema The table schema.
+     * @param raw    The record text (comma-separated values).
+     * @return The decoded row.
+     */
+    public static Row decode(TableSchema schema, String raw) {
+        int[] ints = new int[schema.getColumnCount(TableSchema.ColumnType.INT)];
+        double[] doubles = new double[schema.getColumnCount(TableSchema.ColumnType.FLOAT)];
+        String[] strings = new String[schema.getColumnCount(TableSchema.ColumnType.STRING)];
+        BitSet missing = null;
+
+        String[] values = split(raw);
+        for (int ordinal = 0; ordinal < schema.getColumnCount(); ordinal++) {
+            if (ordinal >= values.length) {
+                if (missing == null) missing = new BitSet();
+                missing.set(ordinal);
+                continue;
+            }
+
+            String value = values[ordinal];
+            int slot = schema.getSlot(ordinal);
+            try {
+                switch (schema.getColumnType(ordinal)) {
+                    case INT -> ints[slot] = (int) parseNumber(TableSchema.ColumnType.INT, value);
+                    case FLOAT -> doubles[slot] = parseNumber(TableSchema.ColumnType.FLOAT, value);
+                    case STRING -> strings[slot] = value;
+                }
+            } catch (NumberFormatException e) {
+                if (missing == null) missing = new BitSet();
+                missing.set(ordinal);
+            }
+        }
+
+        return new Row(schema, raw, ints, doubles, strings, missing);
+    }
+
+    /**
+     * Parses a stored value of a numeric column: INT values must be whole numbers within the int range,
+     * FLOAT values any number. Decoded rows, cursors and record text all parse numbers this way, so a
+     * condition matches the same rows whichever way a table is scanned.
+     *
+     * @param type  The column type, INT or FLOAT.
+     * @param value The value, trimmed and unquoted.
+     * @return The number.
+     * @throws NumberFormatException if the value is not a number of the column type.
+     */
+    public static double parseNumber(TableSchema.ColumnType type, String value) {
+        return type == TableSchema.ColumnType.INT ? Integer.parseInt(value) : Double.parseDouble(value);
+    }
+
+    /**
+     * Splits a record into its values, trimmed and unquoted.
+     *
+     * @param record The record text (comma-separated values).
+     * @return The values, in column order.
+     */
+    public static String[] split(String record) {
+        List<String> values = new ArrayList<>();
+        int start = 0;
+        while (true) {
+            int end = fieldEnd(record, start);
+            values.add(unquote(record.substring(start, end)));
+            if (end == record.length()) {
+                return values.toArray(new String[0]);
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Removes surrounding whitespace and single quotes from a value, turning doubled quotes inside a quoted
+     * value back into single ones.
+     *
+     * @param value The raw value.
+     * @return The cleaned value.
+     */
+    public static String unquote(String value) {
+        String trimmed = value.trim();
+        if (trimmed.length() >= 2 && trimmed.startsWith("'") && trimmed.endsWith("'")) {
+            return trimmed.substring(1, trimmed.length() - 1).replace("''", "'");
+        }
+        return trimmed.replaceAll("^'|'$", "");
+    }
+
+    /**
+     * Quotes a STRING value for storage in a record, doubling any quote inside it.
+     *
+     * @param value The value.
+     * @return The quoted value.
+     */
+    public static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    /**
+     * Extracts one field of a stored record without decoding the others.
+     *
+     * @param record  The record text (comma-separated values).
+     * @param ordinal The column ordinal.
+     * @return The value as stored, trimmed and unquoted, or null if the record has no such field.
+     */
+    public static String field(String record, int ordinal) {
+        int start = 0;
+        for (int i = 0; i < ordinal; i++) {
+            int end = fieldEnd(record, start);
+            if (end == record.length()) {
+                return null;
+            }
+            start = end + 1;
+        }
+        return unquote(record.substring(start, fieldEnd(record, start)));
+    }
+
+    /**
+     * Finds the comma that ends a field, skipping commas inside a quoted value.
+     * A quote closes the value only where a comma or the end of the record follows it; a value whose
+     * quote is never closed that way ends at its first comma, as records written before quoting did.
+     *
+     * @param record The record text.
+     * @param start  The start of the field.
+     * @return The position of the comma, or the record length for the last field.
+     */
+    static int fieldEnd(String record, int start) {
+        int length = record.length();
+        int position = start;
+        while (position < length && record.charAt(position) == ' ') {
+            position++;
+        }
+
+        if (position < length && record.charAt(position) == '\'') {
+            for (int i = position + 1; i < length; i++) {
+                if (record.charAt(i) != '\'') {
+                    continue;
+                }
+                if (i + 1 < length && record.charAt(i + 1) == '\'') {
+                    i++; // A doubled quote
+                    continue;
+                }
+                int next = i + 1;
+                while (next < length && record.charAt(next) == ' ') {
+                    next++;
+                }
+                if (next == length || record.charAt(next) == ',') {
+                    return next;
+                }
+            }
+        }
+
+        int comma = record.indexOf(',', start);
+        return comma < 0 ? length : comma;
+    }
+
+    /**
+     * Returns the text of one field as stored, e.g. to output it unchanged.
+     *
+     * @param ordinal The column ordinal.
+     * @return The value, trimmed and unquoted, or null if the record has no such field.
+     */
+    public String getField(int ordinal) {
+        return field(raw, ordinal);
+    }
+
+    /**
+     * Returns the record as it was stored.
+     *
+     * @return The record text.
+     */
+    public String getRaw() {
+        return raw;
+    }
+
+    public TableSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Checks whether a column has no valid value in this row.
+     *
+     * @param ordinal The column ordinal.
+     * @return True if the value is absent or failed to parse.
+     */
+    public boolean isMissing(int ordinal) {
+        return missing != null && missing.get(ordinal);
+    }
+
+    /**
+     * Returns the value of an INT column.
+     *
+     * @param ordinal The column ordinal.
+     * @return The value.
+     */
+    public int getInt(int ordinal) {
+        return ints[schema.getSlot(ordinal)];
+    }
+
+    /**
+     * Returns the value of a numeric column, widening INT values.
+     *
+     * @param ordinal The column ordinal.
+     * @return The value.
+     */
+    public double getDouble(int ordinal) {
+        int slot = schema.getSlot(ordinal);
+        return schema.getColumnType(ordinal) == TableSchema.ColumnType.INT ? ints[slot] : doubles[slot];
+    }
+
+    /**
+     * Returns the value of any column as text (unquoted for STRING columns).
+     *
+     * @param ordinal The column ordinal.
+     * @return The value, or null if it is missing.
+     */
+    public String getString(int ordinal) {
+        if (isMissing(ordinal)) {
+            return null;
+        }
+        int slot = schema.getSlot(ordinal);
+        return switch (schema.getColumnType(ordinal)) {
+            case INT -> Integer.toString(ints[slot]);
+            case FLOAT -> Double.toString(doubles[slot]);
+            case STRING -> strings[slot];
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package storage;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The decoded rows of a cached table, in fixed-size chunks that are never moved once filled.
+ * Rows are only appended, so a snapshot is just the chunks and the size at the time it was taken:
+ * later appends land past its end, and taking one copies nothing however large the table is.
+ * Appends and snapshots must be made under the same lock.
+ */
+final class RowList {
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // 1024 rows per chunk
+
+    private Row[][] chunks = new Row[4][];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void add(Row row) {
+        int chunk = size >>> CHUNK_SHIFT;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunk * 2); // Copies chunk references only; snapshots keep the old array
+        }
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Row[CHUNK_SIZE];
+        }
+        chunks[chunk][size & (CHUNK_SIZE - 1)] = row;
+        size++;
+    }
+
+    /**
+     * Returns a read-only view of the rows present now.
+     *
+     * @return The view, which rows appended later do not change.
+     */
+    List<Row> snapshot() {
+        return new Snapshot(chunks, size);
+    }
+
+    private static final class Snapshot extends AbstractList<Row> implements RandomAccess {
+        private final Row[][] chunks;
+        private final int size;
+
+        Snapshot(Row[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        @Override
+        public Row get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+            }
+            return chunks[index >>> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -2,68 +2,105 @@ package storage;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages persistent storage for the lightweight DBMS.
- * Stores data in JSON format with a custom delimiter for organization.
+ * The database catalog is kept in memory and persisted in JSON format; table data is
+ * stored in binary slotted-page files accessed through a shared buffer pool.
+ * Changes to row-format tables are made in transactions recorded in a write-ahead log; a commit
+ * only syncs the log, and a background checkpointer writes the changed pages back.
  */
 public class StorageManager {
     private static final String DATABASE_FILE = "data/database.json";
     private static final String DATA_DIRECTORY = "data/";
+    private static final String LOG_FILE = "data/wal.log";
     private static final String DELIMITER = " | ";
+    private static final String TABLE_EXTENSION = ".tbl";
+    private static final String COLUMNAR_EXTENSION = ".col";
+    private static final String LEGACY_TABLE_EXTENSION = ".json";
+    private static final String LEGACY_LOG_EXTENSION = ".log";
+
+    private final Catalog catalog = new Catalog(new File(DATABASE_FILE));
+    private final WriteAheadLog log;
+    private final BufferPool bufferPool;
+    private final Checkpointer checkpointer;
+    private final IndexManager indexManager;
+    private final Map<String, HeapFile> openTables = new HashMap<>(); // Table -> Open heap file
+    private final Map<String, ColumnarTable> columnarTables = new HashMap<>(); // Table -> Open columnar table
+
+    // Decoded rows of recently used tables, evicted least-recently-used beyond ROW_CACHE_LIMIT rows.
+    // Tables larger than ROW_CACHE_MAX_TABLE_PAGES are scanned through a RecordCursor instead of cached.
+    private static final int ROW_CACHE_LIMIT = 1_000_000;
+    private static final int ROW_CACHE_MAX_TABLE_PAGES = 16384; // 64 MB
+    private final LinkedHashMap<String, RowList> rowCache = new LinkedHashMap<>(16, 0.75f, true);
+    private int cachedRowCount = 0;
+
+    // Transactions in progress and the changes to undo if they roll back
+    private final AtomicLong nextTxId;
+    private final Map<Long, ActiveTransaction> activeTransactions = new ConcurrentHashMap<>();
 
     /**
-     * Creates a new database if it does not already exist.
-     *
-     * @param dbName The name of the database to create.
+     * A transaction in progress.
      */
-    public void createDatabase(String dbName) {
-        Map<String, List<String>> database = loadDatabase();
+    private static class ActiveTransaction {
+        final long firstLsn; // No record of the transaction is logged before this LSN
+        final List<LogRecord> changes = new ArrayList<>();
 
-        if (database.containsKey(dbName)) {
-            System.out.println("Error: Database '" + dbName + "' already exists.");
-            return;
+        ActiveTransaction(long firstLsn) {
+            this.firstLsn = firstLsn;
         }
-
-        // Add a new database entry with no tables
-        database.put(dbName, new ArrayList<>());
-
-        saveDatabase(database);
-        System.out.println("Database '" + dbName + "' created successfully.");
     }
 
     /**
-     * Saves the entire database structure to a JSON file.
-     *
-     * @param database The database structure to save.
+     * Opens the write-ahead log, recovers the tables from it after a crash and starts the background checkpointer.
      */
-    public void saveDatabase(Map<String, List<String>> database) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(DATABASE_FILE))) {
-            writer.write("{\n");
-            int dbCount = 0;
-
-            for (Map.Entry<String, List<String>> dbEntry : database.entrySet()) {
-                writer.write("  \"" + dbEntry.getKey() + "\": [");
+    public StorageManager() {
+        File dataDir = new File(DATA_DIRECTORY);
+        if (!dataDir.exists()) {
+            dataDir.mkdirs();
+        }
 
-                List<String> tables = dbEntry.getValue();
-                for (int i = 0; i < tables.size(); i++) {
-                    writer.write("\"" + tables.get(i) + "\"");
-                    if (i < tables.size() - 1) writer.write(", ");
-                }
+        try {
+            this.log = WriteAheadLog.open(new File(LOG_FILE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the write-ahead log: " + e.getMessage(), e);
+        }
+        this.bufferPool = new BufferPool(BufferPool.DEFAULT_CAPACITY, log);
+        this.nextTxId = new AtomicLong(log.getMaxTransactionId());
+        this.checkpointer = new Checkpointer(log, this);
+        this.indexManager = new IndexManager(DATA_DIRECTORY, bufferPool, this);
 
-                writer.write("]");
-                if (++dbCount < database.size()) writer.write(",");
-                writer.write("\n");
+        try {
+            // Checkpoint right after recovery so the next restart does not replay the same log
+            if (new RecoveryManager(log, this).recover()) {
+                checkpointer.checkpoint();
             }
-            writer.write("}");
-        } catch (IOException e) {
-            System.err.println("Error saving database: " + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Could not recover the tables from the write-ahead log: " + e.getMessage(), e);
+        }
+        checkpointer.start();
+    }
+
+    /**
+     * Creates a new database if it does not already exist.
+     *
+     * @param dbName The name of the database to create.
+     */
+    public void createDatabase(String dbName) {
+        // Add a new database entry with no tables
+        if (!catalog.addDatabase(dbName)) {
+            System.out.println("Error: Database '" + dbName + "' already exists.");
+            return;
         }
+
+        System.out.println("Database '" + dbName + "' created successfully.");
     }
 
     /**
-     * Saves data into a JSON file with a custom delimiter system.
-     * Supports storing multiple tables and their records.
+     * Saves the complete contents of a table, replacing what was stored before.
+     * The first entry of the data is the schema row; the rest are records packed into pages.
      *
      * @param tableName The name of the table being stored.
      * @param data The list of records to be stored.
@@ -73,104 +110,683 @@ public class StorageManager {
         String dbName = tableName.contains(".") ? tableName.split("\\.")[0] : "mydb";
         String tableNameOnly = tableName.contains(".") ? tableName.split("\\.")[1] : tableName;
 
+        if (data.isEmpty()) {
+            System.err.println("Error saving table '" + tableNameOnly + "': missing schema.");
+            return;
+        }
+
         // Ensure data directory exists
         File dataDir = new File(DATA_DIRECTORY);
         if (!dataDir.exists()) {
             dataDir.mkdirs();
         }
 
-        // Update database structure
-        Map<String, List<String>> database = loadDatabase();
-        if (!database.containsKey(dbName)) {
-            database.put(dbName, new ArrayList<>());
+        // Update database structure (only written to disk when the table is new)
+        catalog.addTable(dbName, tableNameOnly);
+
+        // Now save the actual table data to its page file (or column segments)
+        try {
+            ColumnarTable columnarTable = getColumnarTable(tableName);
+            if (columnarTable != null) {
+                columnarTable.rewrite(data.subList(1, data.size()));
+                invalidateRows(tableName);
+                System.out.println("Table '" + tableNameOnly + "' successfully saved.");
+                return;
+            }
+
+            HeapFile heapFile = getHeapFile(tableName);
+            boolean replaced = heapFile != null;
+            if (heapFile == null) {
+                heapFile = HeapFile.create(tableName, new File(DATA_DIRECTORY + tableName + TABLE_EXTENSION), data.get(0), bufferPool, log);
+                synchronized (openTables) {
+                    openTables.put(tableName, heapFile);
+                }
+            }
+            heapFile.rewrite(data.get(0), data.subList(1, data.size()));
+            invalidateRows(tableName);
+            indexManager.invalidate(tableName);
+            cacheSchema(tableName, data.get(0));
+
+            // The rewrite bypasses the log, so earlier log records of the table must never be replayed
+            if (replaced) {
+                checkpointer.checkpoint();
+            }
+
+            System.out.println("Table '" + tableNameOnly + "' successfully saved.");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error saving table '" + tableNameOnly + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the index manager, which holds the persistent indexes of row-format tables.
+     *
+     * @return The index manager.
+     */
+    public IndexManager getIndexManager() {
+        return indexManager;
+    }
+
+    /**
+     * Finds the records of a table whose value in the leading column of an index lies within a range.
+     *
+     * @param tableName     The name of the table (e.g., "db.table").
+     * @param indexName     The index to read (e.g., "primary").
+     * @param low           The unquoted lower bound, or null for no lower bound.
+     * @param lowInclusive  True if a value equal to the lower bound is included.
+     * @param high          The unquoted upper bound, or null for no upper bound.
+     * @param highInclusive True if a value equal to the upper bound is included.
+     * @return The records in index order, or null if the table has no such index.
+     * @throws IOException if the index or the table cannot be read.
+     * @throws NumberFormatException if a bound does not parse as the column type.
+     */
+    public List<String> findByIndex(String tableName, String indexName, String low, boolean lowInclusive,
+                                    String high, boolean highInclusive) throws IOException {
+        LongList recordIds = indexManager.find(tableName, indexName, low, lowInclusive, high, highInclusive);
+        return recordIds == null ? null : readRecords(tableName, recordIds);
+    }
+
+    /**
+     * Reads records of a row-format table by record id, e.g. the ids an index lookup returned.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @param recordIds The record ids, in the order to return the records.
+     * @return The records; ids whose record no longer exists are skipped.
+     * @throws IOException if the table cannot be read.
+     */
+    public List<String> readRecords(String tableName, LongList recordIds) throws IOException {
+        HeapFile heapFile = getHeapFile(tableName);
+        List<String> records = new ArrayList<>(recordIds.size());
+        for (int i = 0; i < recordIds.size(); i++) {
+            String record = heapFile.read(recordIds.get(i));
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Reads one record of a row-format table by record id.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @param recordId  The record id.
+     * @return The record, or null if it no longer exists or the table does not.
+     * @throws IOException if the table cannot be read.
+     */
+    public String readRecord(String tableName, long recordId) throws IOException {
+        HeapFile heapFile = getHeapFile(tableName);
+        return heapFile == null ? null : heapFile.read(recordId);
+    }
+
+    /**
+     * Finds the table of a database that has an index of the given name.
+     *
+     * @param dbName    The database name.
+     * @param indexName The index name.
+     * @return The full table name (e.g., "db.table"), or null if no table has such an index.
+     */
+    public String findIndexTable(String dbName, String indexName) {
+        for (String table : catalog.getTables(dbName)) {
+            if (indexManager.hasIndex(dbName + "." + table, indexName)) {
+                return dbName + "." + table;
+            }
         }
+        return null;
+    }
 
-        List<String> tables = database.get(dbName);
-        if (!tables.contains(tableNameOnly)) {
-            tables.add(tableNameOnly);
-            saveDatabase(database);
+    /**
+     * Returns the directory holding the table, index and log files, e.g. for temporary files of large sorts.
+     *
+     * @return The data directory.
+     */
+    public File getDataDirectory() {
+        return new File(DATA_DIRECTORY);
+    }
+
+    /**
+     * Returns the in-memory catalog of databases, tables and schemas.
+     *
+     * @return The catalog.
+     */
+    public Catalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Loads table data from its page file.
+     *
+     * @param tableName The name of the table to load.
+     * @return A list of records from the table, starting with the schema row.
+     */
+    public List<String> loadTableData(String tableName) {
+        List<String> tableData = new ArrayList<>();
+
+        try {
+            HeapFile heapFile = getHeapFile(tableName);
+            ColumnarTable columnarTable = heapFile == null ? getColumnarTable(tableName) : null;
+            if (heapFile != null) {
+                tableData.add(heapFile.getSchema());
+                tableData.addAll(heapFile.readAll());
+            } else if (columnarTable != null) {
+                tableData.add(columnarTable.getSchema().getDefinition());
+                for (int row = 0; row < columnarTable.getRowCount(); row++) {
+                    tableData.add(columnarTable.getRecord(row));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reading table data: " + e.getMessage());
         }
 
-        // Now save the actual table data to a separate file
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(DATA_DIRECTORY + tableName + ".json"))) {
-            writer.write("[\n");
-            for (int i = 0; i < data.size(); i++) {
-                writer.write("  \"" + data.get(i).replace("\"", "\\\"") + "\"");
-                if (i < data.size() - 1) writer.write(",");
-                writer.write("\n");
+        return tableData;
+    }
+
+    /**
+     * Loads the records of a table decoded into typed rows.
+     * Rows are decoded once and kept in memory, so repeated scans neither re-read nor re-parse them.
+     * The caller gets a snapshot: a read-only view of the rows cached at the time of the call, which rows
+     * inserted later do not change, so it can be read for as long as a scan lasts, from any thread.
+     * Taking it copies nothing (see {@link RowList}).
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @return A snapshot of the rows (excluding the schema), or null if the table does not exist.
+     */
+    public List<Row> loadRows(String tableName) {
+        synchronized (rowCache) {
+            RowList rows = rowCache.get(tableName);
+            if (rows != null) {
+                return rows.snapshot();
             }
-            writer.write("]");
+        }
 
-            System.out.println("Table '" + tableNameOnly + "' successfully saved.");
+        TableSchema schema = getTableSchema(tableName);
+        if (schema == null) {
+            return null;
+        }
+
+        RowList rows = new RowList();
+        try {
+            RecordCursor cursor = openCursor(tableName);
+            if (cursor != null) {
+                while (cursor.next()) {
+                    rows.add(Row.decode(schema, cursor.getRecord()));
+                }
+            } else {
+                List<String> tableData = loadTableData(tableName);
+                if (tableData.isEmpty()) {
+                    return null;
+                }
+                for (int i = 1; i < tableData.size(); i++) { // Skip schema row
+                    rows.add(Row.decode(schema, tableData.get(i)));
+                }
+            }
         } catch (IOException e) {
-            System.err.println("Error saving table '" + tableNameOnly + "': " + e.getMessage());
+            System.err.println("Error reading table data: " + e.getMessage());
+            return null;
+        }
+
+        synchronized (rowCache) {
+            invalidateRows(tableName);
+            rowCache.put(tableName, rows);
+            cachedRowCount += rows.size();
+
+            // Evict the least recently used tables, but never the one just loaded
+            Iterator<Map.Entry<String, RowList>> iterator = rowCache.entrySet().iterator();
+            while (cachedRowCount > ROW_CACHE_LIMIT && iterator.hasNext()) {
+                Map.Entry<String, RowList> eldest = iterator.next();
+                if (eldest.getKey().equals(tableName)) break;
+                cachedRowCount -= eldest.getValue().size();
+                iterator.remove();
+            }
+            return rows.snapshot(); // Inserts append to the cached rows under this lock
         }
     }
 
     /**
-     * Loads the entire database from the JSON file.
-     * Parses table names and records while preserving the custom delimiter system.
+     * Opens a memory-mapped cursor over the records of a row-format table.
      *
-     * @return A map containing table names and their respective data records.
+     * @param tableName The name of the table (e.g., "db.table").
+     * @return The cursor, or null if the table does not exist or is not stored in row format.
+     * @throws IOException if the table cannot be opened.
      */
-    public Map<String, List<String>> loadDatabase() {
-        File file = new File(DATABASE_FILE);
-        Map<String, List<String>> database = new HashMap<>();
+    public RecordCursor openCursor(String tableName) throws IOException {
+        HeapFile heapFile = getHeapFile(tableName);
+        return heapFile == null ? null : heapFile.openCursor();
+    }
 
-        if (!file.exists() || file.length() == 0) {
-            System.out.println("No database found. Initializing a new database.");
-            return database;
+    /**
+     * Opens a memory-mapped cursor over the records of a range of pages of a row-format table, e.g. one
+     * part of a parallel scan.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @param firstPage The first page to read; the header page is always skipped.
+     * @param endPage   The first page past the range.
+     * @return The cursor, or null if the table does not exist or is not stored in row format.
+     * @throws IOException if the table cannot be opened.
+     */
+    public RecordCursor openCursor(String tableName, int firstPage, int endPage) throws IOException {
+        HeapFile heapFile = getHeapFile(tableName);
+        return heapFile == null ? null : heapFile.openCursor(firstPage, endPage);
+    }
+
+    /**
+     * Returns the number of pages of a row-format table, including the header page.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @return The page count, or 0 if the table does not exist or is not stored in row format.
+     * @throws IOException if the table cannot be opened.
+     */
+    public int getPageCount(String tableName) throws IOException {
+        HeapFile heapFile = getHeapFile(tableName);
+        return heapFile == null ? 0 : heapFile.getPageCount();
+    }
+
+    /**
+     * Decides whether a scan should stream records from the table file rather than use decoded rows.
+     * True for row-format tables that are too large to keep decoded in memory and are not cached already.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @return True if the table should be scanned with a RecordCursor.
+     */
+    public boolean shouldStreamScan(String tableName) {
+        synchronized (rowCache) {
+            if (rowCache.containsKey(tableName)) {
+                return false;
+            }
         }
+        try {
+            HeapFile heapFile = getHeapFile(tableName);
+            return heapFile != null && heapFile.getPageCount() > ROW_CACHE_MAX_TABLE_PAGES;
+        } catch (IOException e) {
+            return false;
+        }
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            StringBuilder content = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line.trim());
+    /**
+     * Drops the decoded rows of a table after its contents were replaced.
+     *
+     * @param tableName The name of the table.
+     */
+    private void invalidateRows(String tableName) {
+        synchronized (rowCache) {
+            RowList rows = rowCache.remove(tableName);
+            if (rows != null) {
+                cachedRowCount -= rows.size();
             }
+        }
+    }
 
-            // Parse the JSON structure properly
-            String json = content.toString();
-            if (json.startsWith("{") && json.endsWith("}")) {
-                json = json.substring(1, json.length() - 1).trim();
+    /**
+     * Loads only the schema row of a table without reading its records.
+     *
+     * @param tableName The name of the table.
+     * @return The schema row (e.g., "SCHEMA: id INT, name STRING"), or null if the table does not exist.
+     */
+    public String loadTableSchema(String tableName) {
+        TableSchema schema = catalog.getSchema(tableName);
+        if (schema != null) {
+            return schema.getDefinition();
+        }
 
-                if (!json.isEmpty()) {
-                    String[] dbEntries = json.split("\",\\s*\"|\",\"");
+        try {
+            HeapFile heapFile = getHeapFile(tableName);
+            if (heapFile != null) {
+                return heapFile.getSchema();
+            }
+            ColumnarTable columnarTable = getColumnarTable(tableName);
+            return columnarTable == null ? null : columnarTable.getSchema().getDefinition();
+        } catch (IOException e) {
+            System.err.println("Error reading table schema: " + e.getMessage());
+            return null;
+        }
+    }
 
-                    for (String dbEntry : dbEntries) {
-                        String[] parts = dbEntry.split("\":\\s*\\[|\":\\[");
-                        if (parts.length < 2) continue;
+    /**
+     * Returns the parsed schema of a table, served from the catalog after the first use.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @return The schema, or null if the table does not exist or its schema cannot be parsed.
+     */
+    public TableSchema getTableSchema(String tableName) {
+        TableSchema schema = catalog.getSchema(tableName);
+        if (schema == null) {
+            loadTableSchema(tableName); // Opening the table caches its schema
+            schema = catalog.getSchema(tableName);
+        }
+        return schema;
+    }
 
-                        String dbName = parts[0].replace("\"", "").trim();
-                        String tableList = parts[1].replace("]", "").trim();
+    /**
+     * Creates a new, empty table with an already parsed schema.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @param schema    The table schema.
+     * @param format    The storage layout of the table.
+     */
+    public void createTable(String tableName, TableSchema schema, TableFormat format) {
+        catalog.putSchema(tableName, schema);
 
-                        List<String> tables = new ArrayList<>();
-                        if (!tableList.isEmpty()) {
-                            String[] tableNames = tableList.split(",");
-                            for (String tableName : tableNames) {
-                                tables.add(tableName.replace("\"", "").trim());
-                            }
-                        }
+        if (format == TableFormat.COLUMNAR) {
+            String[] nameParts = tableName.split("\\.");
+            try {
+                ColumnarTable columnarTable = ColumnarTable.create(new File(DATA_DIRECTORY + tableName + COLUMNAR_EXTENSION), schema);
+                synchronized (openTables) {
+                    columnarTables.put(tableName, columnarTable);
+                }
+                catalog.addTable(nameParts[0], nameParts[nameParts.length - 1]);
+                System.out.println("Table '" + nameParts[nameParts.length - 1] + "' successfully saved.");
+            } catch (IOException e) {
+                System.err.println("Error saving table '" + nameParts[nameParts.length - 1] + "': " + e.getMessage());
+            }
+            return;
+        }
 
-                        database.put(dbName, tables);
-                    }
+        List<String> tableData = new ArrayList<>();
+        tableData.add(schema.getDefinition());
+        saveTable(tableName, tableData);
+    }
+
+    /**
+     * Returns the open columnar table, opening it on first use.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @return The columnar table, or null if the table is not stored in columnar format.
+     * @throws IOException if the table cannot be opened.
+     */
+    public ColumnarTable getColumnarTable(String tableName) throws IOException {
+        synchronized (openTables) {
+            ColumnarTable columnarTable = columnarTables.get(tableName);
+            if (columnarTable != null) {
+                return columnarTable;
+            }
+
+            File directory = new File(DATA_DIRECTORY + tableName + COLUMNAR_EXTENSION);
+            if (!directory.isDirectory()) {
+                return null;
+            }
+            columnarTable = ColumnarTable.open(directory);
+            columnarTables.put(tableName, columnarTable);
+            if (catalog.getSchema(tableName) == null) {
+                catalog.putSchema(tableName, columnarTable.getSchema());
+            }
+            return columnarTable;
+        }
+    }
+
+    /**
+     * Appends a single record to a table in a transaction of its own.
+     * The record is placed on a page with free space and the insert is logged; the commit
+     * syncs only the log, so an insert costs no page write regardless of table size.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @param row       The record to append.
+     * @return True if the record was committed, false otherwise.
+     */
+    public boolean appendRow(String tableName, String row) {
+        long txId = beginTransaction();
+        if (!insertRow(txId, tableName, row)) {
+            abortTransaction(txId);
+            return false;
+        }
+        return commitTransaction(txId);
+    }
+
+    /**
+     * Starts a transaction. Its changes to row-format tables are logged and can be rolled back
+     * until it commits; columnar tables are written directly and are not part of the transaction.
+     *
+     * @return The transaction id.
+     */
+    public long beginTransaction() {
+        long txId = nextTxId.incrementAndGet();
+        activeTransactions.put(txId, new ActiveTransaction(log.getEndLsn()));
+        return txId;
+    }
+
+    /**
+     * Inserts a record into a table as part of a transaction.
+     * The record is checked against the schema first, so every write path stores only valid records.
+     *
+     * @param txId      The transaction id.
+     * @param tableName The name of the table (e.g., "db.table").
+     * @param row       The record to insert.
+     * @return True if the record was inserted, false otherwise.
+     */
+    public boolean insertRow(long txId, String tableName, String row) {
+        TableSchema schema = getTableSchema(tableName);
+        if (schema == null) {
+            System.err.println("Error: Table '" + tableName + "' does not exist.");
+            return false;
+        }
+        String error = schema.validate(Row.split(row));
+        if (error != null) {
+            System.err.println("Error: " + error);
+            return false;
+        }
+
+        try {
+            HeapFile heapFile = getHeapFile(tableName);
+            ColumnarTable columnarTable = heapFile == null ? getColumnarTable(tableName) : null;
+            if (heapFile != null) {
+                getTransaction(txId).changes.add(indexManager.insert(tableName, heapFile, txId, row));
+            } else if (columnarTable != null) {
+                columnarTable.append(row);
+            } else {
+                System.err.println("Error: Table '" + tableName + "' does not exist.");
+                return false;
+            }
+            synchronized (rowCache) {
+                RowList rows = rowCache.get(tableName);
+                if (rows != null) {
+                    rows.add(Row.decode(schema, row));
+                    cachedRowCount++;
                 }
             }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error appending to table '" + tableName + "': " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Deletes a record of a row-format table as part of a transaction.
+     *
+     * @param txId      The transaction id.
+     * @param tableName The name of the table (e.g., "db.table").
+     * @param recordId  The record id, as reported by a RecordCursor.
+     * @return True if the record was deleted, false if it did not exist.
+     */
+    public boolean deleteRecord(long txId, String tableName, long recordId) {
+        try {
+            HeapFile heapFile = getHeapFile(tableName);
+            LogRecord change = heapFile == null ? null : indexManager.delete(tableName, heapFile, txId, recordId);
+            if (change == null) {
+                return false;
+            }
+            getTransaction(txId).changes.add(change);
+            invalidateRows(tableName);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error deleting from table '" + tableName + "': " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Commits a transaction by logging its COMMIT record and waiting until the log is durable.
+     * Concurrent commits share one log sync; the changed pages are written back later by the checkpointer.
+     * If the log cannot be written, the transaction is rolled back.
+     *
+     * @param txId The transaction id.
+     * @return True if the transaction committed, false if it was rolled back.
+     */
+    public boolean commitTransaction(long txId) {
+        ActiveTransaction transaction = getTransaction(txId);
+        try {
+            if (!transaction.changes.isEmpty()) {
+                LogRecord commit = log.append(LogRecord.commit(txId));
+                log.flush(commit.lsn());
+            }
+            activeTransactions.remove(txId);
+            return true;
         } catch (IOException e) {
-            System.err.println("Error reading database: " + e.getMessage());
+            System.err.println("Error writing the transaction log: " + e.getMessage());
+            abortTransaction(txId);
+            return false;
         }
-        return database;
     }
 
     /**
-     * Loads table data from a JSON file.
+     * Rolls back a transaction, undoing its logged changes newest first.
      *
-     * @param tableName The name of the table to load.
-     * @return A list of records from the table.
+     * @param txId The transaction id.
      */
-    public List<String> loadTableData(String tableName) {
+    public void abortTransaction(long txId) {
+        ActiveTransaction transaction = getTransaction(txId);
+        try {
+            for (int i = transaction.changes.size() - 1; i >= 0; i--) {
+                LogRecord change = transaction.changes.get(i);
+                indexManager.undo(getHeapFile(change.table()), txId, change);
+                invalidateRows(change.table());
+            }
+            if (!transaction.changes.isEmpty()) {
+                log.append(LogRecord.abort(txId));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error rolling back transaction " + txId + ": " + e.getMessage());
+        } finally {
+            activeTransactions.remove(txId);
+        }
+    }
+
+    /**
+     * Writes every changed page of the open row-format tables and their indexes back to disk.
+     * Used by the checkpointer.
+     *
+     * @throws IOException if a table or index file cannot be written.
+     */
+    void flushTables() throws IOException {
+        List<HeapFile> heapFiles;
+        synchronized (openTables) {
+            heapFiles = new ArrayList<>(openTables.values());
+        }
+        for (HeapFile heapFile : heapFiles) {
+            heapFile.flush();
+        }
+        indexManager.flush();
+    }
+
+    /**
+     * Returns the LSN before which no running transaction has logged anything.
+     *
+     * @return The LSN, or Long.MAX_VALUE if no transaction is running.
+     */
+    long getOldestActiveLsn() {
+        long oldest = Long.MAX_VALUE;
+        for (ActiveTransaction transaction : activeTransactions.values()) {
+            oldest = Math.min(oldest, transaction.firstLsn);
+        }
+        return oldest;
+    }
+
+    private ActiveTransaction getTransaction(long txId) {
+        ActiveTransaction transaction = activeTransactions.get(txId);
+        if (transaction == null) {
+            throw new IllegalStateException("Transaction " + txId + " is not active.");
+        }
+        return transaction;
+    }
+
+    /**
+     * Returns the open heap file of a table, opening it on first use.
+     * Tables still stored in the old JSON format are converted to page files here, and table files of
+     * format version 1 are upgraded to the current format.
+     *
+     * @param tableName The name of the table (e.g., "db.table").
+     * @return The heap file, or null if the table does not exist.
+     * @throws IOException if the table file cannot be opened.
+     */
+    HeapFile getHeapFile(String tableName) throws IOException {
+        synchronized (openTables) {
+            HeapFile heapFile = openTables.get(tableName);
+            if (heapFile != null) {
+                return heapFile;
+            }
+
+            File file = new File(DATA_DIRECTORY + tableName + TABLE_EXTENSION);
+            if (file.exists() && file.length() > 0) {
+                if (HeapFile.upgrade(file)) {
+                    // Indexes cannot be open before the table file is, so only their files need to go
+                    indexManager.deleteIndexFiles(tableName);
+                }
+                heapFile = HeapFile.open(tableName, file, bufferPool, log);
+            } else {
+                heapFile = migrateLegacyTable(tableName, file);
+            }
+
+            if (heapFile != null) {
+                openTables.put(tableName, heapFile);
+                cacheSchema(tableName, heapFile.getSchema());
+            }
+            return heapFile;
+        }
+    }
+
+    /**
+     * Parses a schema row into the catalog unless the same definition is already cached.
+     *
+     * @param tableName The name of the table.
+     * @param definition The schema row.
+     */
+    private void cacheSchema(String tableName, String definition) {
+        TableSchema cached = catalog.getSchema(tableName);
+        if (cached != null && cached.getDefinition().equals(definition)) {
+            return;
+        }
+
+        try {
+            catalog.putSchema(tableName, TableSchema.parse(definition));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Warning: Invalid schema for table '" + tableName + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Converts a table stored as a JSON array (plus its append log) into a page file.
+     *
+     * @param tableName The name of the table.
+     * @param file      The page file to create.
+     * @return The new heap file, or null if there is no legacy table to convert.
+     * @throws IOException if the conversion fails.
+     */
+    private HeapFile migrateLegacyTable(String tableName, File file) throws IOException {
+        File legacyFile = new File(DATA_DIRECTORY + tableName + LEGACY_TABLE_EXTENSION);
+        File legacyLog = new File(DATA_DIRECTORY + tableName + LEGACY_LOG_EXTENSION);
+
+        List<String> tableData = loadLegacyTableData(legacyFile, legacyLog);
+        if (tableData.isEmpty()) {
+            return null;
+        }
+
+        HeapFile heapFile = HeapFile.create(tableName, file, tableData.get(0), bufferPool, log);
+        heapFile.rewrite(tableData.get(0), tableData.subList(1, tableData.size()));
+
+        if (!legacyFile.delete() || (legacyLog.exists() && !legacyLog.delete())) {
+            System.err.println("Warning: Could not remove old table files for '" + tableName + "'.");
+        }
+        return heapFile;
+    }
+
+    /**
+     * Loads a table stored in the old JSON array format, followed by any rows in its append log.
+     *
+     * @param file    The JSON table file.
+     * @param logFile The append-only record log.
+     * @return A list of records from the table, or an empty list if the table does not exist.
+     */
+    private List<String> loadLegacyTableData(File file, File logFile) {
         List<String> tableData = new ArrayList<>();
-        File file = new File(DATA_DIRECTORY + tableName + ".json");
 
         if (!file.exists() || file.length() == 0) {
             return tableData;
@@ -198,6 +814,20 @@ public class StorageManager {
             System.err.println("Error reading table data: " + e.getMessage());
         }
 
+        // Replay rows appended since the last full save
+        if (!tableData.isEmpty() && logFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(logFile))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        tableData.add(line);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading table record log: " + e.getMessage());
+            }
+        }
+
         return tableData;
     }
 }
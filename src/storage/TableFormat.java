@@ -0,0 +1,26 @@
+package storage;
+
+/**
+ * Physical storage layout of a table, chosen with CREATE TABLE ... WITH (format=...).
+ */
+public enum TableFormat {
+    /** Whole records in slotted pages (the default). */
+    ROW,
+    /** One segment per column, for scans over a few columns of many rows. */
+    COLUMNAR;
+
+    /**
+     * Parses a format name.
+     *
+     * @param name The format name (e.g., "columnar").
+     * @return The table format.
+     * @throws IllegalArgumentException if the format is not supported.
+     */
+    public static TableFormat parse(String name) {
+        return switch (name.trim().toUpperCase()) {
+            case "ROW" -> ROW;
+            case "COLUMNAR", "COLUMN" -> COLUMNAR;
+            default -> throw new IllegalArgumentException("Unsupported table format '" + name.trim() + "'. Use 'row' or 'columnar'.");
+        };
+    }
+}
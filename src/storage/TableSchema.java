@@ -0,0 +1,193 @@
+package storage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parsed, typed schema of a table.
+ * Built once from the schema definition (e.g., "SCHEMA: (id INT, name STRING)") and cached in the Catalog,
+ * so queries resolve columns by ordinal instead of re-splitting the schema row.
+ * A column may be declared the table's primary key (e.g., "id INT PRIMARY KEY").
+ */
+public class TableSchema {
+
+    /**
+     * Supported column types.
+     */
+    public enum ColumnType {
+        INT, FLOAT, STRING;
+
+        /**
+         * Parses a declared column type, accepting common aliases.
+         *
+         * @param type The declared type (e.g., "INT", "VARCHAR").
+         * @return The column type.
+         * @throws IllegalArgumentException if the type is not supported.
+         */
+        public static ColumnType parse(String type) {
+            return switch (type.toUpperCase()) {
+                case "INT", "INTEGER" -> INT;
+                case "FLOAT", "DOUBLE", "DECIMAL" -> FLOAT;
+                case "STRING", "VARCHAR", "TEXT", "CHAR" -> STRING;
+                default -> throw new IllegalArgumentException("Unsupported column type '" + type + "'. Use INT, FLOAT or STRING.");
+            };
+        }
+
+        public boolean isNumeric() {
+            return this != STRING;
+        }
+    }
+
+    private final String definition;
+    private final String[] columnNames;
+    private final ColumnType[] columnTypes;
+    private final Map<String, Integer> ordinals = new HashMap<>(); // Column name -> Ordinal
+    private final int[] slots; // Ordinal -> Position within the typed arrays of a Row
+    private final int[] slotCounts = new int[ColumnType.values().length]; // Type -> Number of columns
+    private final int primaryKey; // Ordinal of the primary key column, or -1
+
+    private TableSchema(String definition, String[] columnNames, ColumnType[] columnTypes, int primaryKey) {
+        this.definition = definition;
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+        this.primaryKey = primaryKey;
+        this.slots = new int[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            ordinals.put(columnNames[i], i);
+            slots[i] = slotCounts[columnTypes[i].ordinal()]++;
+        }
+    }
+
+    /**
+     * Parses a schema definition.
+     *
+     * @param definition The schema row (e.g., "SCHEMA: (id INT, name STRING)") or a bare column list.
+     * @return The parsed schema.
+     * @throws IllegalArgumentException if a column is malformed, duplicated or has an unsupported type,
+     *                                  or more than one column is declared the primary key.
+     */
+    public static TableSchema parse(String definition) {
+        String columns = definition.trim();
+        if (columns.toUpperCase().startsWith("SCHEMA:")) {
+            columns = columns.substring(columns.indexOf(':') + 1).trim();
+        }
+        if (columns.startsWith("(") && columns.endsWith(")")) {
+            columns = columns.substring(1, columns.length() - 1).trim();
+        }
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("A table needs at least one column.");
+        }
+
+        String[] columnDefs = columns.split(",");
+        String[] names = new String[columnDefs.length];
+        ColumnType[] types = new ColumnType[columnDefs.length];
+        Map<String, Integer> seen = new HashMap<>();
+        int primaryKey = -1;
+
+        for (int i = 0; i < columnDefs.length; i++) {
+            String[] parts = columnDefs[i].trim().split("\\s+");
+            boolean isPrimaryKey = parts.length == 4 && parts[2].equalsIgnoreCase("PRIMARY") && parts[3].equalsIgnoreCase("KEY");
+            if (parts.length < 2 || (parts.length > 2 && !isPrimaryKey)) {
+                throw new IllegalArgumentException("Invalid column definition '" + columnDefs[i].trim() + "'. Use 'name TYPE [PRIMARY KEY]'.");
+            }
+            names[i] = parts[0];
+            types[i] = ColumnType.parse(parts[1]);
+            if (seen.put(names[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate column '" + names[i] + "'.");
+            }
+            if (isPrimaryKey) {
+                if (primaryKey >= 0) {
+                    throw new IllegalArgumentException("A table can have only one primary key.");
+                }
+                primaryKey = i;
+            }
+        }
+
+        return new TableSchema(definition, names, types, primaryKey);
+    }
+
+    /**
+     * Returns the schema row exactly as stored with the table.
+     *
+     * @return The schema definition.
+     */
+    public String getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Returns the column declared as the primary key.
+     *
+     * @return The ordinal of the primary key column, or -1 if the table has none.
+     */
+    public int getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    public String getColumnName(int ordinal) {
+        return columnNames[ordinal];
+    }
+
+    public ColumnType getColumnType(int ordinal) {
+        return columnTypes[ordinal];
+    }
+
+    /**
+     * Returns the position of a column within the array that holds its type in a Row.
+     *
+     * @param ordinal The column ordinal.
+     * @return The slot within the int, double or string values.
+     */
+    public int getSlot(int ordinal) {
+        return slots[ordinal];
+    }
+
+    /**
+     * Returns how many columns of a type the schema has.
+     *
+     * @param type The column type.
+     * @return The number of columns of that type.
+     */
+    public int getColumnCount(ColumnType type) {
+        return slotCounts[type.ordinal()];
+    }
+
+    /**
+     * Resolves a column name to its ordinal.
+     *
+     * @param columnName The column name.
+     * @return The ordinal, or -1 if the column does not exist.
+     */
+    public int indexOf(String columnName) {
+        Integer ordinal = ordinals.get(columnName);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Validates the values of a record against the schema.
+     *
+     * @param values The values, in column order, already unquoted (see {@link Row#split}).
+     * @return An error message, or null if the values are valid.
+     */
+    public String validate(String[] values) {
+        if (values.length != columnNames.length) {
+            return "Column mismatch: expected " + columnNames.length + " values but got " + values.length + ".";
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+            try {
+                if (columnTypes[i].isNumeric()) {
+                    Row.parseNumber(columnTypes[i], value);
+                }
+            } catch (NumberFormatException e) {
+                return "Invalid " + columnTypes[i] + " value '" + value + "' for column '" + columnNames[i] + "'.";
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,200 @@
+package storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A B+tree index stored in its own file, for equality and range lookups.
+ * Keys are the encoded column values (see IndexKey); keys of non-unique indexes end with the record id,
+ * so rows with equal values are distinct entries. Keys over numeric columns have a fixed width, which
+ * the tree stores as a sorted array per node.
+ * A bulk fill sorts each run of rows on its own thread, then merges the runs into the tree bottom up.
+ */
+class TreeIndex implements RecordIndex {
+    private final BPlusTree tree;
+    private final TableSchema schema;
+    private final int[] ordinals;
+    private final boolean unique;
+
+    /**
+     * Opens (or creates) a tree index.
+     *
+     * @param file       The index file.
+     * @param bufferPool The shared buffer pool.
+     * @param schema     The table schema.
+     * @param ordinals   The key columns, in key order.
+     * @param unique     True for the primary key index.
+     * @throws IOException if the file cannot be read.
+     */
+    TreeIndex(File file, BufferPool bufferPool, TableSchema schema, int[] ordinals, boolean unique) throws IOException {
+        int width = IndexKey.width(schema, ordinals);
+        this.tree = BPlusTree.open(file, bufferPool, width > 0 && !unique ? width + Long.BYTES : width);
+        this.schema = schema;
+        this.ordinals = ordinals;
+        this.unique = unique;
+    }
+
+    @Override
+    public void validate(Row row) {
+        byte[] key = IndexKey.of(row, ordinals);
+        if (unique) {
+            if (key == null) {
+                throw new IllegalArgumentException("Missing value for primary key '" + schema.getColumnName(ordinals[0]) + "'.");
+            }
+            if (tree.search(key) >= 0) {
+                throw new IllegalArgumentException("Duplicate primary key '" + row.getString(ordinals[0]) + "'.");
+            }
+        }
+        if (key != null && key.length + (unique ? 0 : Long.BYTES) > BPlusTree.MAX_KEY_SIZE) {
+            throw new IllegalArgumentException("Index key exceeds " + BPlusTree.MAX_KEY_SIZE + " bytes.");
+        }
+    }
+
+    @Override
+    public boolean add(Row row, long recordId) {
+        byte[] key = keyOf(row, recordId);
+        return key != null && tree.insert(key, recordId);
+    }
+
+    @Override
+    public void remove(Row row, long recordId) {
+        byte[] key = keyOf(row, recordId);
+        if (key != null) {
+            tree.delete(key);
+        }
+    }
+
+    @Override
+    public LongList findEqual(String... values) {
+        byte[] prefix = IndexKey.of(schema, ordinals, values);
+        return tree.range(prefix, true, IndexKey.successor(prefix), false);
+    }
+
+    /**
+     * Finds the rows whose leading key column lies within a range, in key order.
+     */
+    @Override
+    public LongList findRange(String low, boolean lowInclusive, String high, boolean highInclusive) {
+        IndexKey.Range range = IndexKey.range(schema, ordinals, low, lowInclusive, high, highInclusive);
+        return range == null ? new LongList() : tree.range(range.low(), true, range.high(), false);
+    }
+
+    /**
+     * Collects the keys of a run of rows, each followed by its record id.
+     */
+    private final class TreeBuilder implements Builder {
+        private final List<byte[]> entries = new ArrayList<>();
+        private byte[][] sorted;
+
+        @Override
+        public boolean add(Row row, long recordId) {
+            byte[] entry = IndexKey.of(row, ordinals, recordId);
+            if (entry == null) {
+                return false;
+            }
+            entries.add(entry);
+            return true;
+        }
+
+        @Override
+        public void finish() {
+            sorted = entries.toArray(new byte[0][]);
+            entries.clear();
+            Arrays.sort(sorted, Arrays::compareUnsigned);
+        }
+    }
+
+    /**
+     * The position of a merge within one sorted run.
+     */
+    private static final class Run {
+        final byte[][] entries;
+        int position;
+
+        Run(byte[][] entries) {
+            this.entries = entries;
+        }
+
+        byte[] head() {
+            return entries[position];
+        }
+    }
+
+    @Override
+    public Builder newBuilder() {
+        return new TreeBuilder();
+    }
+
+    @Override
+    public long load(List<Builder> builders) throws IOException {
+        PriorityQueue<Run> runs = new PriorityQueue<>(Comparator.comparing(Run::head, Arrays::compareUnsigned));
+        for (Builder builder : builders) {
+            byte[][] sorted = ((TreeBuilder) builder).sorted;
+            if (sorted.length > 0) {
+                runs.add(new Run(sorted));
+            }
+        }
+
+        long skipped = 0;
+        byte[] previous = null;
+        BPlusTree.Loader loader = tree.load();
+        while (!runs.isEmpty()) {
+            Run run = runs.poll();
+            byte[] entry = run.entries[run.position++];
+            if (run.position < run.entries.length) {
+                runs.add(run);
+            }
+
+            long recordId = ByteBuffer.wrap(entry, entry.length - Long.BYTES, Long.BYTES).getLong();
+            byte[] key = unique ? Arrays.copyOf(entry, entry.length - Long.BYTES) : entry;
+            if (unique && Arrays.equals(key, previous)) {
+                skipped++; // Equal keys arrive in table order: the first row keeps the key
+                continue;
+            }
+            loader.add(key, recordId);
+            previous = key;
+        }
+        loader.finish();
+        return skipped;
+    }
+
+    @Override
+    public boolean isClean() {
+        return tree.isClean();
+    }
+
+    @Override
+    public void clear() throws IOException {
+        tree.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        tree.flush();
+    }
+
+    @Override
+    public void drop() throws IOException {
+        tree.drop();
+    }
+
+    @Override
+    public long size() {
+        return tree.getEntryCount();
+    }
+
+    /**
+     * Builds the tree key of a row: the encoded column values, followed by the record id unless unique.
+     *
+     * @return The key, or null if a key column has no value.
+     */
+    private byte[] keyOf(Row row, long recordId) {
+        return unique ? IndexKey.of(row, ordinals) : IndexKey.of(row, ordinals, recordId);
+    }
+}
@@ -0,0 +1,334 @@
+package storage;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of every change made to row-format tables.
+ * - A change is appended before its page may be written back; each page remembers the LSN of its last change.
+ * - Committing appends a COMMIT record and waits until the log is durable up to it. One committer at a
+ *   time writes and syncs everything appended so far, so commits that arrive during a sync share the next one.
+ * - An LSN is the byte position of a record in the log. The header keeps the LSN of the first byte of the
+ *   file and of the last checkpoint, so LSNs keep growing after the start of the log is discarded.
+ * - Records carry a CRC; a torn record at the end of the log (from a crash mid-write) is dropped on open.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final int MAGIC = 0x43444257; // "CDBW"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32; // Magic, version, base LSN, checkpoint LSN, reserved
+    private static final int RECORD_HEADER_SIZE = 8; // Body length, CRC-32 of the body
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private FileChannel channel;
+    private long baseLsn;       // LSN of file offset 0
+    private long checkpointLsn; // LSN of the last checkpoint record, or 0
+    private long endLsn;        // LSN the next record gets
+    private long flushedLsn;    // Everything below this LSN is durable
+    private long maxTxId;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE); // Appended but not yet written
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean flushing;
+
+    private WriteAheadLog(File file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens (or creates) the log, discarding a partially written record at its end.
+     *
+     * @param file The log file (e.g., data/wal.log).
+     * @return The opened log, positioned after its last complete record.
+     * @throws IOException if the file cannot be read or is not a log file.
+     */
+    public static WriteAheadLog open(File file) throws IOException {
+        WriteAheadLog log = new WriteAheadLog(file, FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+
+        if (log.channel.size() < HEADER_SIZE) {
+            writeHeader(log.channel, 0, 0);
+            log.channel.truncate(HEADER_SIZE);
+            log.channel.force(true);
+            log.endLsn = HEADER_SIZE;
+        } else {
+            log.readHeader();
+            log.endLsn = log.scan(log.baseLsn + HEADER_SIZE, record -> log.maxTxId = Math.max(log.maxTxId, record.txId()));
+            log.channel.truncate(log.endLsn - log.baseLsn);
+        }
+        log.flushedLsn = log.endLsn;
+        return log;
+    }
+
+    /**
+     * Appends a record to the log buffer. The record is durable only after a flush covering its LSN.
+     *
+     * @param record The record to append.
+     * @return The record with its assigned LSN.
+     */
+    public synchronized LogRecord append(LogRecord record) {
+        ByteBuffer body = record.encode();
+        int size = RECORD_HEADER_SIZE + body.remaining();
+        if (buffer.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+            buffer = larger.put(buffer.flip());
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        buffer.putInt(body.remaining()).putInt((int) crc.getValue()).put(body);
+
+        long lsn = endLsn;
+        endLsn += size;
+        maxTxId = Math.max(maxTxId, record.txId());
+        return record.withLsn(lsn);
+    }
+
+    /**
+     * Makes the log durable up to and including the record at the given LSN.
+     * If another thread is already syncing, waits for it and only syncs again if still needed,
+     * so concurrent committers share a single write and fsync.
+     *
+     * @param lsn The LSN of the record that must be durable.
+     * @throws IOException if the log cannot be written.
+     */
+    public void flush(long lsn) throws IOException {
+        ByteBuffer pending;
+        long position;
+        long target;
+
+        synchronized (this) {
+            while (flushing && flushedLsn <= lsn) {
+                waitForFlush();
+            }
+            if (flushedLsn > lsn) {
+                return;
+            }
+
+            // Take everything appended so far, including records of commits still waiting
+            flushing = true;
+            pending = buffer.flip();
+            buffer = spare.clear();
+            spare = pending;
+            position = flushedLsn - baseLsn;
+            target = endLsn;
+        }
+
+        boolean written = false;
+        try {
+            while (pending.hasRemaining()) {
+                position += channel.write(pending, position);
+            }
+            channel.force(false);
+            written = true;
+        } finally {
+            synchronized (this) {
+                if (written) {
+                    flushedLsn = target;
+                } else {
+                    // Keep the unwritten records in front of those appended since
+                    pending.rewind();
+                    ByteBuffer merged = ByteBuffer.allocate(pending.remaining() + buffer.position() + BUFFER_SIZE);
+                    buffer = merged.put(pending).put(buffer.flip());
+                    spare = ByteBuffer.allocate(BUFFER_SIZE);
+                }
+                flushing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Makes every record appended so far durable.
+     *
+     * @throws IOException if the log cannot be written.
+     */
+    public void flush() throws IOException {
+        flush(getEndLsn() - 1);
+    }
+
+    /**
+     * Checks whether the record at an LSN is already durable, without waiting for a flush.
+     *
+     * @param lsn The LSN of the record.
+     * @return True if a flush has covered the record.
+     */
+    public synchronized boolean isFlushed(long lsn) {
+        return flushedLsn > lsn;
+    }
+
+    public synchronized long getEndLsn() {
+        return endLsn;
+    }
+
+    public synchronized long getCheckpointLsn() {
+        return checkpointLsn;
+    }
+
+    /**
+     * Returns the highest transaction id found in or appended to the log.
+     *
+     * @return The transaction id, or 0 if the log has no transactions.
+     */
+    public synchronized long getMaxTransactionId() {
+        return maxTxId;
+    }
+
+    /**
+     * Records the LSN of the latest checkpoint in the log header.
+     * The checkpoint record itself must already be durable.
+     *
+     * @param lsn The LSN of the checkpoint record.
+     * @throws IOException if the header cannot be written.
+     */
+    public synchronized void setCheckpoint(long lsn) throws IOException {
+        writeHeader(channel, baseLsn, lsn);
+        channel.force(false);
+        checkpointLsn = lsn;
+    }
+
+    /**
+     * Discards the durable part of the log before an LSN by copying the rest to a new file.
+     * LSNs of the remaining records do not change.
+     *
+     * @param lsn The first LSN to keep; it must not be past the last checkpoint.
+     * @throws IOException if the log cannot be rewritten.
+     */
+    public synchronized void truncateBefore(long lsn) throws IOException {
+        while (flushing) {
+            waitForFlush();
+        }
+        long offset = lsn - baseLsn;
+        if (offset <= HEADER_SIZE || lsn > flushedLsn) {
+            return;
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        long newBase = lsn - HEADER_SIZE;
+        try (FileChannel target = FileChannel.open(temp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(target, newBase, checkpointLsn);
+            target.position(HEADER_SIZE);
+            long length = flushedLsn - lsn;
+            for (long copied = 0; copied < length; ) {
+                copied += channel.transferTo(offset + copied, length - copied, target);
+            }
+            target.force(true);
+        }
+
+        channel.close();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        baseLsn = newBase;
+    }
+
+    /**
+     * Reads the durable records from an LSN onwards, in log order.
+     *
+     * @param fromLsn The LSN of the first record to read.
+     * @param action  Called for every record.
+     * @throws IOException if the log cannot be read.
+     */
+    public void forEach(long fromLsn, Consumer<LogRecord> action) throws IOException {
+        flush();
+        long limit;
+        synchronized (this) {
+            limit = flushedLsn;
+        }
+        scan(Math.max(fromLsn, baseLsn + HEADER_SIZE), record -> {
+            if (record.lsn() < limit) action.accept(record);
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        synchronized (this) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads records from an LSN until the end of the file or the first incomplete or corrupt record.
+     *
+     * @return The LSN just after the last valid record.
+     */
+    private long scan(long fromLsn, Consumer<LogRecord> action) throws IOException {
+        long lsn = fromLsn;
+        long fileSize = channel.size();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(fromLsn - baseLsn)), BUFFER_SIZE));
+        CRC32 crc = new CRC32();
+
+        while (true) {
+            byte[] body;
+            int checksum;
+            try {
+                int length = in.readInt();
+                checksum = in.readInt();
+                if (length < 0 || lsn - baseLsn + RECORD_HEADER_SIZE + length > fileSize) {
+                    break;
+                }
+                body = new byte[length];
+                in.readFully(body);
+            } catch (EOFException e) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            action.accept(LogRecord.decode(lsn, ByteBuffer.wrap(body)));
+            lsn += RECORD_HEADER_SIZE + body.length;
+        }
+        return lsn;
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) { }
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a log file: " + file);
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported log file version " + header.getInt(4) + ": " + file);
+        }
+        baseLsn = header.getLong(8);
+        checkpointLsn = header.getLong(16);
+    }
+
+    private static void writeHeader(FileChannel channel, long baseLsn, long checkpointLsn) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putLong(8, baseLsn);
+        header.putLong(16, checkpointLsn);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private void waitForFlush() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the log to be written.");
+        }
+    }
+}
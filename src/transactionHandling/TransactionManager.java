@@ -1,13 +1,17 @@
 package transactionHandling;
 
 import concurrencyControl.LockManager;
+import java.io.IOException;
 import java.util.*;
+import storage.RecordCursor;
 import storage.StorageManager;
 
 /**
  * Manages transactions with concurrency control using Read-Write locks.
  * - Supports BEGIN TRANSACTION, COMMIT, and ROLLBACK dynamically.
  * - Allows multiple read operations but restricts concurrent writes.
+ * - On COMMIT the queued operations run as one storage transaction: their changes are logged,
+ *   and the commit is durable once the log is synced, or is undone as a whole if an operation fails.
  */
 public class TransactionManager {
     private boolean transactionActive = false;
@@ -72,17 +76,26 @@ public class TransactionManager {
             return;
         }
 
+        long txId = storageManager.beginTransaction();
         try {
             for (String operation : transactionLog) {
-                executeOperation(operation, activeDatabase);
+                executeOperation(operation, activeDatabase, txId);
             }
+        } catch (Exception e) {
+            System.out.println("Error during commit: " + e.getMessage());
+            storageManager.abortTransaction(txId);
             transactionLog.clear();
             transactionActive = false;
+            System.out.println("Transaction rolled back.");
+            return;
+        }
+
+        transactionLog.clear();
+        transactionActive = false;
+        if (storageManager.commitTransaction(txId)) {
             System.out.println("Transaction committed successfully.");
-        } catch (Exception e) {
-            System.out.println("Error during commit: " + e.getMessage());
-            // Consider rolling back on error
-            // rollback();
+        } else {
+            System.out.println("Error: Could not commit the transaction; it was rolled back.");
         }
     }
 
@@ -106,8 +119,10 @@ public class TransactionManager {
      *
      * @param operation The SQL-like operation.
      * @param activeDatabase The currently active database
+     * @param txId The storage transaction the operation belongs to.
+     * @throws IOException if the table cannot be read.
      */
-    private void executeOperation(String operation, String activeDatabase) {
+    private void executeOperation(String operation, String activeDatabase, long txId) throws IOException {
         String[] tokens = operation.trim().split("\\s+");
 
         if (tokens.length < 3) {
@@ -123,7 +138,7 @@ public class TransactionManager {
             case "INSERT", "UPDATE", "DELETE" -> {
                 if (lockManager.acquireWriteLock(fullTableName)) {
                     try {
-                        processWriteOperation(command, fullTableName, operation);
+                        processWriteOperation(command, fullTableName, operation, txId);
                     } finally {
                         lockManager.releaseWriteLock();
                     }
@@ -175,11 +190,11 @@ public class TransactionManager {
      * @param command      The SQL command.
      * @param fullTableName The full table name including database prefix.
      * @param operation    The SQL operation string.
+     * @param txId         The storage transaction the operation belongs to.
+     * @throws IOException if the table cannot be read.
      */
-    private void processWriteOperation(String command, String fullTableName, String operation) {
-        List<String> tableData = storageManager.loadTableData(fullTableName);
-        
-        if (tableData.isEmpty()) {
+    private void processWriteOperation(String command, String fullTableName, String operation, long txId) throws IOException {
+        if (storageManager.loadTableSchema(fullTableName) == null) {
             System.out.println("Error: Table not found.");
             return;
         }
@@ -187,30 +202,60 @@ public class TransactionManager {
         switch (command) {
             case "INSERT" -> {
                 int valuesIndex = operation.toUpperCase().indexOf("VALUES");
-                if (valuesIndex > 0) {
-                    String values = operation.substring(valuesIndex + 6).trim().replaceAll("[()]", "");
-                    tableData.add(values);
-                    storageManager.saveTable(fullTableName, tableData);
-                    System.out.println("Committed: " + operation);
+                int open = valuesIndex > 0 ? operation.indexOf('(', valuesIndex) : -1;
+                int close = operation.lastIndexOf(')');
+                if (open > 0 && close > open) {
+                    // Only the enclosing parentheses; quoted values may contain their own
+                    String values = operation.substring(open + 1, close).trim();
+                    if (storageManager.insertRow(txId, fullTableName, values)) {
+                        System.out.println("Committed: " + operation);
+                    } else {
+                        throw new IllegalStateException("Could not commit: " + operation);
+                    }
                 } else {
                     System.out.println("Error: Invalid INSERT syntax in transaction.");
                 }
             }
 
-            case "UPDATE" -> updateTableData(fullTableName, operation, tableData);
+            case "UPDATE" -> updateTableData(fullTableName, operation, txId);
 
-            case "DELETE" -> deleteTableData(fullTableName, operation, tableData);
+            case "DELETE" -> deleteTableData(fullTableName, operation, txId);
         }
     }
 
+    /**
+     * Finds the records of a row-format table that contain a condition string.
+     *
+     * @param fullTableName The full table name including database prefix.
+     * @param condition     The text to look for; an empty condition matches every record.
+     * @return The record ids of the matching records, or null if the table is not stored in row format.
+     * @throws IOException if the table cannot be read.
+     */
+    private List<Long> findRecords(String fullTableName, String condition) throws IOException {
+        RecordCursor cursor = storageManager.openCursor(fullTableName);
+        if (cursor == null) {
+            return null;
+        }
+
+        List<Long> recordIds = new ArrayList<>();
+        while (cursor.next()) {
+            if (cursor.getRecord().contains(condition)) {
+                recordIds.add(cursor.getRecordId());
+            }
+        }
+        return recordIds;
+    }
+
     /**
      * Updates table data dynamically.
+     * Row-format tables replace each matching record through the transaction; other tables are rewritten.
      *
      * @param fullTableName The full table name including database prefix.
      * @param operation The UPDATE statement.
-     * @param tableData The current table data.
+     * @param txId The storage transaction the operation belongs to.
+     * @throws IOException if the table cannot be read.
      */
-    private void updateTableData(String fullTableName, String operation, List<String> tableData) {
+    private void updateTableData(String fullTableName, String operation, long txId) throws IOException {
         String[] parts = operation.split("WHERE");
         if (parts.length < 2) {
             System.out.println("Error: Missing WHERE condition in UPDATE statement.");
@@ -220,6 +265,23 @@ public class TransactionManager {
         String setClause = parts[0].split("SET")[1].trim();
         String whereCondition = parts[1].trim();
 
+        List<Long> recordIds = findRecords(fullTableName, whereCondition);
+        if (recordIds != null) {
+            for (long recordId : recordIds) {
+                if (!storageManager.deleteRecord(txId, fullTableName, recordId)
+                        || !storageManager.insertRow(txId, fullTableName, setClause)) {
+                    throw new IllegalStateException("Could not commit: " + operation);
+                }
+            }
+            if (recordIds.isEmpty()) {
+                System.out.println("No records matched the condition for update.");
+            } else {
+                System.out.println("Committed: " + operation);
+            }
+            return;
+        }
+
+        List<String> tableData = storageManager.loadTableData(fullTableName);
         boolean updated = false;
         for (int i = 1; i < tableData.size(); i++) { // Skip schema row
             if (tableData.get(i).contains(whereCondition)) {
@@ -238,14 +300,28 @@ public class TransactionManager {
 
     /**
      * Deletes table data dynamically based on condition.
+     * Row-format tables delete each matching record through the transaction; other tables are rewritten.
      *
      * @param fullTableName The full table name including database prefix.
      * @param operation The DELETE statement.
-     * @param tableData The current table data.
+     * @param txId The storage transaction the operation belongs to.
+     * @throws IOException if the table cannot be read.
      */
-    private void deleteTableData(String fullTableName, String operation, List<String> tableData) {
+    private void deleteTableData(String fullTableName, String operation, long txId) throws IOException {
         String condition = operation.contains("WHERE") ? operation.split("WHERE")[1].trim() : "";
-        
+
+        List<Long> recordIds = findRecords(fullTableName, condition);
+        if (recordIds != null) {
+            for (long recordId : recordIds) {
+                if (!storageManager.deleteRecord(txId, fullTableName, recordId)) {
+                    throw new IllegalStateException("Could not commit: " + operation);
+                }
+            }
+            System.out.println("Committed: " + operation + " (" + recordIds.size() + " rows affected)");
+            return;
+        }
+
+        List<String> tableData = storageManager.loadTableData(fullTableName);
         int initialSize = tableData.size();
         if (condition.isEmpty()) {
             // Keep only the schema row